@@ -0,0 +1,10 @@
+package com.example.backend.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Bật @Scheduled cho các tác vụ nền (flush like dồn lô, ...); số luồng: spring.task.scheduling.pool.size
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -43,7 +43,8 @@ public class SecurityConfig {
                     "/api/auth/register/verify-otp",
                     "/api/users/*",
                     "/api/users/*/password",
-                    "/api/users/*/posts"
+                    "/api/users/*/posts",
+                    "/api/users/avatar/**"
                 ).permitAll()
                 .anyRequest().authenticated()
             )
@@ -2,11 +2,17 @@ package com.example.backend.controller;
 
 import com.example.backend.dto.common.ApiResponseDTO;
 import com.example.backend.dto.request.CommentCreateRequestDTO;
+import com.example.backend.dto.response.CommentNodeDTO;
 import com.example.backend.service.CommentService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -17,6 +23,9 @@ public class CommentController {
     @Autowired
     private CommentService commentService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @PostMapping
     public ResponseEntity<ApiResponseDTO> addComment(@RequestBody CommentCreateRequestDTO request) {
         ApiResponseDTO response = commentService.addComment(request);
@@ -78,4 +87,86 @@ public class CommentController {
         HttpStatus status = response.isSuccess() ? HttpStatus.OK : HttpStatus.BAD_REQUEST;
         return ResponseEntity.status(status).body(response);
     }
+
+    // Phân trang bình luận gốc theo cursor, mỗi bình luận kèm vài reply đầu tiên
+    @GetMapping("/tree/page")
+    public ResponseEntity<ApiResponseDTO> getCommentsPage(
+            @RequestParam Long postId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(defaultValue = "3") int replyLimit,
+            @RequestParam(required = false) Long userId
+    ) {
+        ApiResponseDTO response = commentService.getCommentsPage(postId, cursor, limit, replyLimit, userId);
+        HttpStatus status = response.isSuccess() ? HttpStatus.OK : HttpStatus.BAD_REQUEST;
+        return ResponseEntity.status(status).body(response);
+    }
+
+    // Tải thêm reply của một bình luận (dùng replies_cursor / next_cursor)
+    @GetMapping("/{parentId}/replies")
+    public ResponseEntity<ApiResponseDTO> getReplies(
+            @PathVariable Long parentId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(required = false) Long userId
+    ) {
+        ApiResponseDTO response = commentService.getReplies(parentId, cursor, limit, userId);
+        HttpStatus status = response.isSuccess() ? HttpStatus.OK : HttpStatus.BAD_REQUEST;
+        return ResponseEntity.status(status).body(response);
+    }
+
+    // Cây bình luận dựng sẵn ở server, ghi thẳng ra response bằng Jackson streaming (không tạo Map trung gian)
+    @GetMapping("/tree/nested")
+    public ResponseEntity<?> getCommentsTreeNested(
+            @RequestParam Long postId,
+            @RequestParam(required = false) Long userId
+    ) {
+        ApiResponseDTO response = commentService.getCommentsTreeNested(postId, userId);
+        if (!response.isSuccess()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+        @SuppressWarnings("unchecked")
+        List<CommentNodeDTO> roots = (List<CommentNodeDTO>) response.getData();
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator gen = objectMapper.getFactory().createGenerator(outputStream)) {
+                gen.writeStartObject();
+                gen.writeBooleanField("success", true);
+                gen.writeStringField("message", response.getMessage());
+                gen.writeArrayFieldStart("data");
+                for (CommentNodeDTO node : roots) {
+                    writeCommentNode(gen, node);
+                }
+                gen.writeEndArray();
+                gen.writeNullField("errors");
+                gen.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    // Giữ nguyên tên field như /tree để FE dùng chung kiểu dữ liệu, thêm mảng replies
+    private void writeCommentNode(JsonGenerator gen, CommentNodeDTO node) throws IOException {
+        gen.writeStartObject();
+        gen.writeNumberField("id", node.id());
+        gen.writeNumberField("post_id", node.postId());
+        gen.writeNumberField("author_id", node.authorId());
+        gen.writeFieldName("parent_id");
+        gen.writeObject(node.parentId());
+        gen.writeNumberField("level", node.level());
+        gen.writeStringField("content", node.content());
+        gen.writeNumberField("likes_count", node.likesCount());
+        gen.writeFieldName("created_at");
+        gen.writeObject(node.createdAt());
+        gen.writeFieldName("mention_user_id");
+        gen.writeObject(node.mentionUserId());
+        gen.writeStringField("author_name", node.authorName());
+        gen.writeStringField("author_avatar", node.authorAvatar());
+        gen.writeBooleanField("is_liked", node.liked());
+        gen.writeArrayFieldStart("replies");
+        for (CommentNodeDTO reply : node.replies()) {
+            writeCommentNode(gen, reply);
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
 }
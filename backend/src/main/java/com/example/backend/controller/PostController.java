@@ -2,15 +2,21 @@ package com.example.backend.controller;
 
 import com.example.backend.dto.request.PostCreateRequestDTO;
 import com.example.backend.dto.common.ApiResponseDTO;
-import com.example.backend.dto.response.PostImageDTO;
-import com.example.backend.dto.response.PostFileDTO;
+import com.example.backend.dto.response.AttachmentContentDTO;
+import com.example.backend.search.SuggestService;
+import com.example.backend.search.VietnameseAnalyzer;
 import com.example.backend.service.PostService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
-import java.text.Normalizer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 @RestController
@@ -21,6 +27,9 @@ public class PostController {
     @Autowired
     private PostService postService;
 
+    @Autowired
+    private SuggestService suggestService;
+
     @PostMapping
     public ResponseEntity<ApiResponseDTO> createPost(@RequestBody PostCreateRequestDTO request) {
         ApiResponseDTO response = postService.createPost(request);
@@ -49,10 +58,13 @@ public class PostController {
             @RequestParam String categoryPath,
             @RequestParam(defaultValue = "10") int limit,
             @RequestParam(defaultValue = "0") int offset,
-            @RequestParam(required = false) Long userId // truyền userId để kiểm tra is_liked, is_saved
+            @RequestParam(required = false) Long userId, // truyền userId để kiểm tra is_liked, is_saved
+            @RequestParam(required = false) String cursor // có cursor (kể cả rỗng) => phân trang keyset, trả về { items, next_cursor }
     ) {
         // categoryPath là code hoặc path FE (ví dụ: /general, /general/intro, dev, web, ...)
-        ApiResponseDTO response = postService.getPostsByCategory(categoryPath, limit, offset, userId);
+        ApiResponseDTO response = cursor != null
+                ? postService.getPostsByCategoryPage(categoryPath, cursor, limit, userId)
+                : postService.getPostsByCategory(categoryPath, limit, offset, userId);
         HttpStatus status = response.isSuccess() ? HttpStatus.OK : HttpStatus.BAD_REQUEST;
         return ResponseEntity.status(status).body(response);
     }
@@ -94,9 +106,23 @@ public class PostController {
             @RequestParam String keyword,
             @RequestParam(defaultValue = "10") Integer limit,
             @RequestParam(defaultValue = "0") Integer offset,
-            @RequestParam Long userId
+            @RequestParam Long userId,
+            @RequestParam(required = false) String cursor
+    ) {
+        ApiResponseDTO response = cursor != null
+                ? postService.searchPostsPage(keyword, cursor, limit, userId)
+                : postService.searchPosts(keyword, limit, offset, userId);
+        HttpStatus status = response.isSuccess() ? HttpStatus.OK : HttpStatus.BAD_REQUEST;
+        return ResponseEntity.status(status).body(response);
+    }
+
+    // Gợi ý khi đang gõ ô tìm kiếm: tag, từ khóa phổ biến, tiêu đề bài viết
+    @GetMapping("/suggest")
+    public ResponseEntity<ApiResponseDTO> suggest(
+            @RequestParam(value = "q", defaultValue = "") String prefix,
+            @RequestParam(defaultValue = "8") Integer limit
     ) {
-        ApiResponseDTO response = postService.searchPosts(keyword, limit, offset, userId);
+        ApiResponseDTO response = suggestService.suggest(prefix, limit);
         HttpStatus status = response.isSuccess() ? HttpStatus.OK : HttpStatus.BAD_REQUEST;
         return ResponseEntity.status(status).body(response);
     }
@@ -140,6 +166,29 @@ public ResponseEntity<ApiResponseDTO> uploadImage(
     }
 }
 
+    // Upload nhiều ảnh/file cho post trong 1 request (mỗi file tối đa 5MB)
+    @PostMapping("/{id}/attachments")
+    public ResponseEntity<ApiResponseDTO> uploadAttachments(
+            @PathVariable Long id,
+            @RequestParam(value = "images", required = false) List<MultipartFile> images,
+            @RequestParam(value = "files", required = false) List<MultipartFile> files
+    ) {
+        try {
+            ApiResponseDTO response = postService.saveAttachments(id, images, files);
+            if (!response.isSuccess()) {
+                System.err.println("UPLOAD ATTACHMENTS ERROR: " + response.getMessage());
+            }
+            HttpStatus status = response.isSuccess() ? HttpStatus.OK : HttpStatus.BAD_REQUEST;
+            return ResponseEntity.status(status).body(response);
+        } catch (Exception ex) {
+            String msg = extractRootCauseMessage(ex);
+            System.err.println("UPLOAD ATTACHMENTS EXCEPTION: " + msg);
+            return ResponseEntity.badRequest().body(
+                new ApiResponseDTO(false, msg != null ? msg : ex.getMessage(), null, "UPLOAD_ATTACHMENTS_ERROR")
+            );
+        }
+    }
+
     // Helper để lấy message nghiệp vụ từ exception (copy từ service)
     private String extractRootCauseMessage(Throwable ex) {
         Throwable cause = ex;
@@ -161,8 +210,8 @@ public ResponseEntity<ApiResponseDTO> uploadImage(
     }
 
     private String toAsciiFileName(String fileName) {
-        String normalized = Normalizer.normalize(fileName, Normalizer.Form.NFD);
-        String ascii = normalized.replaceAll("[^\\p{ASCII}]", "");
+        // Bỏ dấu tiếng Việt (kể cả đ/Đ, vốn không tách được bằng NFD) rồi mới loại ký tự ngoài ASCII
+        String ascii = VietnameseAnalyzer.fold(fileName).replaceAll("[^\\p{ASCII}]", "");
         // Loại bỏ ký tự không hợp lệ cho tên file nếu cần
         ascii = ascii.replaceAll("[\\\\/:*?\"<>|]", "_");
         return ascii;
@@ -181,20 +230,18 @@ public ResponseEntity<ApiResponseDTO> uploadImage(
         }
     }
 
-    // API trả ảnh cho frontend (trả về ApiResponseDTO, FE sẽ lấy dữ liệu base64 hoặc binary từ trường data)
+    // API trả ảnh cho frontend: stream nội dung, không nạp cả ảnh vào heap; ?w=160|480|1080 lấy ảnh thu nhỏ
     @GetMapping("/image/{imageId}")
-    public ResponseEntity<byte[]> getPostImage(@PathVariable Long imageId) {
-        ApiResponseDTO response = postService.getPostImageById(imageId);
+    public ResponseEntity<Resource> getPostImage(
+            @PathVariable Long imageId,
+            @RequestParam(value = "w", required = false) Integer width,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
+        ApiResponseDTO response = postService.getPostImageById(imageId, width, ifNoneMatch);
         if (!response.isSuccess() || response.getData() == null) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         }
-        PostImageDTO dto = (PostImageDTO) response.getData();
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.parseMediaType(dto.getImageType()));
-        // Dùng filename* để hỗ trợ Unicode
-        headers.add(HttpHeaders.CONTENT_DISPOSITION,
-            "inline; filename=\"" + toAsciiFileName(dto.getImageName()) + "\"; filename*=UTF-8''" + java.net.URLEncoder.encode(dto.getImageName(), java.nio.charset.StandardCharsets.UTF_8).replaceAll("\\+", "%20"));
-        return new ResponseEntity<>(dto.getImageData(), headers, HttpStatus.OK);
+        return attachmentResponse((AttachmentContentDTO) response.getData(), "inline");
     }
 
     // Upload file cho post (max 5MB)
@@ -219,20 +266,39 @@ public ResponseEntity<ApiResponseDTO> uploadImage(
         }
     }
 
-    // API trả file cho frontend (trả về file binary, giống như ảnh)
+    // API trả file cho frontend (stream, hỗ trợ header Range)
     @GetMapping("/file/{fileId}")
-    public ResponseEntity<byte[]> getPostFile(@PathVariable Long fileId) {
-        ApiResponseDTO response = postService.getPostFileById(fileId);
+    public ResponseEntity<Resource> getPostFile(
+            @PathVariable Long fileId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
+        ApiResponseDTO response = postService.getPostFileById(fileId, ifNoneMatch);
         if (!response.isSuccess() || response.getData() == null) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         }
-        PostFileDTO dto = (PostFileDTO) response.getData();
+        return attachmentResponse((AttachmentContentDTO) response.getData(), "attachment");
+    }
+
+    // Body là Resource: Spring tự trả 206 cho request có Range (trừ InputStreamResource của dữ liệu nén).
+    // Ảnh/file không bao giờ đổi sau khi upload => cache 1 năm, immutable; body null => 304 chỉ từ metadata.
+    // Nội dung tạm (ảnh gốc thay cho ảnh thu nhỏ chưa có) chỉ cache 60 giây rồi hỏi lại bằng ETag
+    private ResponseEntity<Resource> attachmentResponse(AttachmentContentDTO content, String disposition) {
         HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.parseMediaType(dto.getFileType()));
+        headers.setETag(content.etag());
+        headers.setCacheControl(content.immutable()
+                ? CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable()
+                : CacheControl.maxAge(60, TimeUnit.SECONDS).cachePublic().mustRevalidate());
+        if (content.body() == null) {
+            return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+        }
+        headers.setContentType(MediaType.parseMediaType(content.contentType()));
         // Dùng filename* để hỗ trợ Unicode
         headers.add(HttpHeaders.CONTENT_DISPOSITION,
-            "attachment; filename=\"" + toAsciiFileName(dto.getFileName()) + "\"; filename*=UTF-8''" + java.net.URLEncoder.encode(dto.getFileName(), java.nio.charset.StandardCharsets.UTF_8).replaceAll("\\+", "%20"));
-        return new ResponseEntity<>(dto.getFileData(), headers, HttpStatus.OK);
+            disposition + "; filename=\"" + toAsciiFileName(content.name()) + "\"; filename*=" + toContentDispositionFilename(content.name()));
+        if (content.contentLength() != null && content.body() instanceof InputStreamResource) {
+            headers.setContentLength(content.contentLength());
+        }
+        return new ResponseEntity<>(content.body(), headers, HttpStatus.OK);
     }
 
     @PostMapping("/{id}/save")
@@ -261,9 +327,12 @@ public ResponseEntity<ApiResponseDTO> uploadImage(
             @PathVariable Long userId,
             @RequestParam(defaultValue = "10") int limit,
             @RequestParam(defaultValue = "0") int offset,
-            @RequestParam(required = false) Long viewerId // user đang xem (để kiểm tra is_liked, is_saved)
+            @RequestParam(required = false) Long viewerId, // user đang xem (để kiểm tra is_liked, is_saved)
+            @RequestParam(required = false) String cursor
     ) {
-        ApiResponseDTO response = postService.getPostsByUser(userId, limit, offset, viewerId);
+        ApiResponseDTO response = cursor != null
+                ? postService.getPostsByUserPage(userId, cursor, limit, viewerId)
+                : postService.getPostsByUser(userId, limit, offset, viewerId);
         HttpStatus status = response.isSuccess() ? HttpStatus.OK : HttpStatus.BAD_REQUEST;
         return ResponseEntity.status(status).body(response);
     }
@@ -315,12 +384,24 @@ public ResponseEntity<ApiResponseDTO> uploadImage(
     public ResponseEntity<ApiResponseDTO> getRecommendedPosts(
             @RequestParam(required = false) Long userId,
             @RequestParam(defaultValue = "5") int limit,
-            @RequestParam(defaultValue = "0") int offset
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(required = false) String cursor
     ) {
         ApiResponseDTO response;
         if (userId == null) {
             // Nếu chưa đăng nhập, trả về bài viết phổ biến (popular)
-            response = postService.getPostsByCategory("/popular", limit, offset, null);
+            response = cursor != null
+                    ? postService.getPostsByCategoryPage("/popular", cursor, limit, null)
+                    : postService.getPostsByCategory("/popular", limit, offset, null);
+        } else if (cursor != null) {
+            // SP đề xuất luôn trả tối đa 5 bài => một trang duy nhất, không có trang tiếp
+            response = postService.getRecommendedPosts(userId, limit, offset);
+            if (response.isSuccess()) {
+                Map<String, Object> page = new HashMap<>();
+                page.put("items", response.getData());
+                page.put("next_cursor", null);
+                response.setData(page);
+            }
         } else {
             // SP sẽ luôn trả về tối đa 5 bài viết mới nhất
             response = postService.getRecommendedPosts(userId, limit, offset);
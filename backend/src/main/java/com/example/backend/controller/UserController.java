@@ -3,17 +3,30 @@ package com.example.backend.controller;
 import com.example.backend.dto.common.ApiResponseDTO;
 import com.example.backend.dto.request.ChangePasswordRequestDTO;
 import com.example.backend.dto.request.UpdateUserRequestDTO;
+import com.example.backend.dto.response.AttachmentContentDTO;
 import com.example.backend.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
 @RestController
 @RequestMapping("/api/users")
 @CrossOrigin(origins = "*") // For development, in production restrict to your frontend domain
 public class UserController {
     
+    // Thuộc tính request của Tomcat cho sendfile (giống DefaultServlet)
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     @Autowired
     private UserService userService;
     
@@ -56,5 +69,47 @@ public class UserController {
         ApiResponseDTO response = userService.updateUser(id, request);
         return ResponseEntity.status(response.isSuccess() ? HttpStatus.OK : HttpStatus.BAD_REQUEST).body(response);
     }
+
+    // Cập nhật kèm upload avatar (multipart/form-data, field "avatar"); JSON không mang được file
+    @PutMapping(value = "/{id}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ApiResponseDTO> updateUserWithAvatar(
+            @PathVariable Long id,
+            @ModelAttribute UpdateUserRequestDTO request
+    ) {
+        ApiResponseDTO response = userService.updateUser(id, request);
+        return ResponseEntity.status(response.isSuccess() ? HttpStatus.OK : HttpStatus.BAD_REQUEST).body(response);
+    }
+
+    // Avatar đã chuẩn hóa (size=64|128|256). Nội dung của một key không bao giờ đổi => cache 1 năm, immutable.
+    // Trên Tomcat dùng sendfile: kernel chép thẳng file ra socket (zero-copy), không qua heap/buffer của JVM
+    @GetMapping("/avatar/{key}")
+    public ResponseEntity<Resource> getAvatar(
+            @PathVariable String key,
+            @RequestParam(value = "size", required = false) Integer size,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            HttpServletRequest request
+    ) throws IOException {
+        ApiResponseDTO response = userService.getAvatar(key, size, ifNoneMatch);
+        if (!response.isSuccess() || response.getData() == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        AttachmentContentDTO content = (AttachmentContentDTO) response.getData();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(content.etag());
+        headers.setCacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable());
+        if (content.body() == null) {
+            return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+        }
+        headers.setContentType(MediaType.parseMediaType(content.contentType()));
+        headers.setContentLength(content.contentLength());
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT)) && content.body() instanceof FileSystemResource file) {
+            // Không ghi body: Tomcat tự gửi file sau khi commit header
+            request.setAttribute(SENDFILE_FILENAME, file.getFile().getAbsolutePath());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, content.contentLength());
+            return new ResponseEntity<>(headers, HttpStatus.OK);
+        }
+        return new ResponseEntity<>(content.body(), headers, HttpStatus.OK);
+    }
 }
 
@@ -1,6 +1,7 @@
 package com.example.backend.dto.common;
 
 import com.example.backend.entity.User;
+import com.example.backend.util.AvatarUrls;
 
 import java.time.LocalDate;
 
@@ -28,7 +29,7 @@ public class UserDTO {
         this.phone = user.getPhoneNumber();
         this.gender = user.getGender();
         this.dateOfBirth = user.getDateOfBirth();
-        this.avatar = user.getAvatar();
+        this.avatar = AvatarUrls.of(user.getAvatar(), AvatarUrls.PROFILE_SIZE);
         this.created_at = user.getCreatedAt();
     }
 
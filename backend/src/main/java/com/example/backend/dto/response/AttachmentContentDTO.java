@@ -0,0 +1,23 @@
+package com.example.backend.dto.response;
+
+import org.springframework.core.io.Resource;
+
+// Nội dung ảnh/file trả về dạng stream (không nạp toàn bộ vào heap).
+// contentLength: kích thước nội dung gốc, null nếu không biết (dữ liệu cũ); body = null: client đã có bản mới nhất (304).
+// immutable = false: nội dung dưới URL này có thể đổi (ảnh gốc trả tạm khi ảnh thu nhỏ chưa tạo xong) => không cache lâu
+public record AttachmentContentDTO(
+        String name,
+        String contentType,
+        Long contentLength,
+        String etag,
+        Resource body,
+        boolean immutable
+) {
+    public AttachmentContentDTO(String name, String contentType, Long contentLength, String etag, Resource body) {
+        this(name, contentType, contentLength, etag, body, true);
+    }
+
+    public AttachmentContentDTO revalidatable() {
+        return new AttachmentContentDTO(name, contentType, contentLength, etag, body, false);
+    }
+}
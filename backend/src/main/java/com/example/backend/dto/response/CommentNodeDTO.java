@@ -0,0 +1,21 @@
+package com.example.backend.dto.response;
+
+import java.util.List;
+
+// Một nút trong cây bình luận dựng sẵn ở server (thay cho HashMap mỗi dòng)
+public record CommentNodeDTO(
+        long id,
+        long postId,
+        long authorId,
+        Long parentId,
+        int level,
+        String content,
+        long likesCount,
+        Object createdAt,
+        Long mentionUserId,
+        String authorName,
+        String authorAvatar,
+        boolean liked,
+        List<CommentNodeDTO> replies
+) {
+}
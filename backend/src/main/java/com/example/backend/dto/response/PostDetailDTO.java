@@ -0,0 +1,31 @@
+package com.example.backend.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+// Chi tiết bài viết (thay cho HashMap lồng nhau); tên field JSON giữ nguyên như response cũ
+public record PostDetailDTO(
+        long id,
+        String title,
+        String content,
+        @JsonProperty("author_id") long authorId,
+        @JsonProperty("created_at") Object createdAt,
+        @JsonProperty("updated_at") Object updatedAt,
+        @JsonProperty("likes_count") long likesCount,
+        @JsonProperty("comment_count") long commentCount,
+        Author author,
+        @JsonProperty("parent_tags") List<String> parentTags,
+        @JsonProperty("child_tags") List<String> childTags,
+        List<Attachment> images,
+        List<Attachment> files,
+        @JsonProperty("is_liked") boolean liked,
+        @JsonProperty("is_saved") boolean saved
+) {
+
+    public record Author(long id, String name, String avatar) {
+    }
+
+    public record Attachment(long id, String name, String type) {
+    }
+}
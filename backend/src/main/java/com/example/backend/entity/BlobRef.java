@@ -0,0 +1,27 @@
+package com.example.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+// Số tham chiếu tới mỗi blob (ảnh/file/ảnh thu nhỏ cùng nội dung chỉ lưu một lần trong blob store).
+// ref_count = 0 quá thời gian chờ => BlobRefService xóa dòng này và file blob
+@Entity
+@Table(name = "blob_refs",
+       indexes = @Index(name = "idx_blob_refs_count_updated", columnList = "ref_count, updated_at"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BlobRef {
+    @Id
+    @Column(name = "storage_key", length = 64)
+    private String storageKey;
+
+    @Column(name = "ref_count", nullable = false)
+    private Long refCount;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
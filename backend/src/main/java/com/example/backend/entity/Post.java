@@ -8,7 +8,11 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "posts")
+@Table(name = "posts", indexes = {
+        // Phục vụ phân trang keyset (ORDER BY created_at DESC, id DESC / likes_count DESC, id DESC)
+        @Index(name = "idx_posts_created_at_id", columnList = "created_at, id"),
+        @Index(name = "idx_posts_likes_count_id", columnList = "likes_count, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
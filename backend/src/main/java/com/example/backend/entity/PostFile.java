@@ -20,7 +20,8 @@ public class PostFile {
     private Post post;
 
     @Lob
-    @Column(columnDefinition = "LONGBLOB", name = "file_data", nullable = false)
+    // Chỉ còn dùng cho dữ liệu cũ chưa chuyển sang blob store
+    @Column(columnDefinition = "LONGBLOB", name = "file_data")
     private byte[] fileData;
 
     @Column(name = "file_name", nullable = false, length = 255)
@@ -28,4 +29,16 @@ public class PostFile {
 
     @Column(name = "file_type", nullable = false, columnDefinition = "TEXT")
     private String fileType;
+
+    // SHA-256 của dữ liệu đã lưu trong blob store (null: dữ liệu còn nằm trong cột LONGBLOB)
+    @Column(name = "storage_key", length = 64)
+    private String storageKey;
+
+    // Kích thước nội dung gốc trả về cho client (byte)
+    @Column(name = "content_length")
+    private Long contentLength;
+
+    // Cách lưu dữ liệu: "store" (nguyên bản) hoặc "deflate"; null là dòng cũ (ảnh: deflate, file: store)
+    @Column(name = "codec", length = 16)
+    private String codec;
 }
@@ -20,7 +20,8 @@ public class PostImage {
     private Post post;
 
     @Lob
-    @Column(columnDefinition = "LONGBLOB",name = "image_data", nullable = false)
+    // Chỉ còn dùng cho dữ liệu cũ chưa chuyển sang blob store
+    @Column(columnDefinition = "LONGBLOB", name = "image_data")
     private byte[] imageData;
 
     @Column(name = "image_name", nullable = false, length = 255)
@@ -29,4 +30,15 @@ public class PostImage {
     @Column(name = "image_type", nullable = false, columnDefinition = "TEXT")
     private String imageType;
 
+    // SHA-256 của dữ liệu đã lưu trong blob store (null: dữ liệu còn nằm trong cột LONGBLOB)
+    @Column(name = "storage_key", length = 64)
+    private String storageKey;
+
+    // Kích thước nội dung gốc trả về cho client (byte)
+    @Column(name = "content_length")
+    private Long contentLength;
+
+    // Cách lưu dữ liệu: "store" (nguyên bản) hoặc "deflate"; null là dòng cũ (ảnh: deflate, file: store)
+    @Column(name = "codec", length = 16)
+    private String codec;
 }
@@ -0,0 +1,38 @@
+package com.example.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Bản thu nhỏ của ảnh bài viết (160/480/1080px chiều rộng), dữ liệu nằm trong blob store.
+// Không khai báo khóa ngoại tới posts_image để sp_delete_post không bị chặn; PostService xóa variant trước khi xóa bài
+@Entity
+@Table(name = "posts_image_variant",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"image_id", "width"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PostImageVariant {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "image_id", nullable = false)
+    private Long imageId;
+
+    @Column(name = "width", nullable = false)
+    private Integer width;
+
+    @Column(name = "height", nullable = false)
+    private Integer height;
+
+    @Column(name = "content_type", nullable = false, length = 64)
+    private String contentType;
+
+    @Column(name = "storage_key", nullable = false, length = 64)
+    private String storageKey;
+
+    @Column(name = "content_length", nullable = false)
+    private Long contentLength;
+}
@@ -0,0 +1,319 @@
+package com.example.backend.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Chỉ mục đảo trong bộ nhớ cho bài viết.
+// - Mỗi bài viết là một doc (số thứ tự tăng dần); postings của mỗi term là dãy varint (khoảng cách doc, tần suất)
+//   nên chỉ tốn ~2 byte cho mỗi cặp (term, doc)
+// - Sửa bài = đánh dấu xóa doc cũ + thêm doc mới; khi doc đã xóa chiếm > 1/4 thì nén lại toàn bộ postings
+// - Tìm kiếm: mọi term bắt buộc phải xuất hiện (AND), duyệt song song các postings từ term hiếm nhất, chấm điểm BM25
+//   (term tùy chọn chỉ cộng điểm), giữ top-K bằng min-heap và đếm tổng số kết quả trong cùng một lượt duyệt
+public class InvertedIndex {
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    // Term trong tiêu đề được tính gấp đôi
+    private static final int TITLE_WEIGHT = 2;
+    private static final int COMPACT_MIN_DELETED = 1000;
+    private static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    public record Hits(List<Long> postIds, int total) {
+    }
+
+    private final Map<String, Postings> postingsByTerm = new HashMap<>();
+    private final Map<Long, Integer> docByPost = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+    private long[] postIdByDoc = new long[1024];
+    private int[] docLengths = new int[1024];
+    // Số doc đã cấp (kể cả doc đã xóa)
+    private int docCount;
+    private int deletedCount;
+    private long liveLength;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Thêm hoặc thay thế nội dung đã lập chỉ mục của bài viết
+    public void add(long postId, List<String> titleTokens, List<String> contentTokens) {
+        Map<String, int[]> freqs = new HashMap<>();
+        for (String token : titleTokens) {
+            freqs.computeIfAbsent(token, t -> new int[1])[0] += TITLE_WEIGHT;
+        }
+        for (String token : contentTokens) {
+            freqs.computeIfAbsent(token, t -> new int[1])[0]++;
+        }
+        int length = TITLE_WEIGHT * titleTokens.size() + contentTokens.size();
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(postId);
+            int doc = docCount++;
+            if (doc == postIdByDoc.length) {
+                postIdByDoc = Arrays.copyOf(postIdByDoc, doc * 2);
+                docLengths = Arrays.copyOf(docLengths, doc * 2);
+            }
+            postIdByDoc[doc] = postId;
+            docLengths[doc] = length;
+            docByPost.put(postId, doc);
+            liveLength += length;
+            for (Map.Entry<String, int[]> entry : freqs.entrySet()) {
+                postingsByTerm.computeIfAbsent(entry.getKey(), t -> new Postings()).add(doc, entry.getValue()[0]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long postId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(postId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docCount - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // topK = 0: chỉ đếm, không chấm điểm
+    public Hits search(Collection<String> terms, int topK) {
+        return search(terms, List.of(), topK);
+    }
+
+    // optionalTerms: không bắt buộc, doc nào có thì được cộng điểm BM25 của term đó
+    public Hits search(Collection<String> terms, Collection<String> optionalTerms, int topK) {
+        List<String> uniqueTerms = new ArrayList<>(new LinkedHashSet<>(terms));
+        if (uniqueTerms.isEmpty()) {
+            return new Hits(List.of(), 0);
+        }
+        lock.readLock().lock();
+        try {
+            int liveDocs = docCount - deletedCount;
+            if (liveDocs == 0) {
+                return new Hits(List.of(), 0);
+            }
+            Cursor[] cursors = new Cursor[uniqueTerms.size()];
+            for (int i = 0; i < cursors.length; i++) {
+                Postings postings = postingsByTerm.get(uniqueTerms.get(i));
+                if (postings == null) {
+                    return new Hits(List.of(), 0);
+                }
+                cursors[i] = new Cursor(postings, idf(Math.min(postings.docFreq, liveDocs), liveDocs));
+            }
+            // Term hiếm nhất dẫn đầu: số doc phải xét không vượt quá postings ngắn nhất
+            Arrays.sort(cursors, Comparator.comparingInt(c -> c.postings.docFreq));
+            List<Cursor> optionalCursors = new ArrayList<>();
+            if (topK > 0) {
+                for (String term : new LinkedHashSet<>(optionalTerms)) {
+                    Postings postings = postingsByTerm.get(term);
+                    if (postings != null && !uniqueTerms.contains(term)) {
+                        optionalCursors.add(new Cursor(postings, idf(Math.min(postings.docFreq, liveDocs), liveDocs)));
+                    }
+                }
+            }
+            float avgLength = Math.max(1f, (float) liveLength / liveDocs);
+
+            // Không bao giờ giữ nhiều hơn số doc đang sống: topK lớn (offset sâu) không làm cấp phát mảng khổng lồ
+            PriorityQueue<Hit> heap = new PriorityQueue<>(Math.max(1, Math.min(topK, liveDocs)), Hit.WORST_FIRST);
+            int total = 0;
+            Cursor lead = cursors[0];
+            int doc = lead.nextDoc();
+            outer:
+            while (doc != NO_MORE_DOCS) {
+                for (int i = 1; i < cursors.length; i++) {
+                    int other = cursors[i].advance(doc);
+                    if (other == NO_MORE_DOCS) {
+                        break outer;
+                    }
+                    if (other != doc) {
+                        doc = lead.advance(other);
+                        continue outer;
+                    }
+                }
+                if (!deleted.get(doc)) {
+                    total++;
+                    if (topK > 0) {
+                        float score = score(cursors, optionalCursors, doc, docLengths[doc], avgLength);
+                        Hit hit = new Hit(score, postIdByDoc[doc]);
+                        if (heap.size() < topK) {
+                            heap.add(hit);
+                        } else if (Hit.WORST_FIRST.compare(hit, heap.peek()) > 0) {
+                            heap.poll();
+                            heap.add(hit);
+                        }
+                    }
+                }
+                doc = lead.nextDoc();
+            }
+
+            Long[] ranked = new Long[heap.size()];
+            for (int i = ranked.length - 1; i >= 0; i--) {
+                ranked[i] = heap.poll().postId();
+            }
+            return new Hits(Arrays.asList(ranked), total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeLocked(long postId) {
+        Integer doc = docByPost.remove(postId);
+        if (doc == null) {
+            return;
+        }
+        deleted.set(doc);
+        deletedCount++;
+        liveLength -= docLengths[doc];
+        if (deletedCount >= COMPACT_MIN_DELETED && deletedCount * 4 > docCount) {
+            compact();
+        }
+    }
+
+    // Đánh số lại các doc còn sống (giữ thứ tự) và mã hóa lại postings, bỏ term không còn doc nào
+    private void compact() {
+        int[] remap = new int[docCount];
+        int live = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            remap[doc] = deleted.get(doc) ? -1 : live++;
+        }
+        Iterator<Map.Entry<String, Postings>> it = postingsByTerm.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Postings> entry = it.next();
+            Postings compacted = new Postings();
+            Cursor cursor = new Cursor(entry.getValue(), 0f);
+            for (int doc = cursor.nextDoc(); doc != NO_MORE_DOCS; doc = cursor.nextDoc()) {
+                if (remap[doc] >= 0) {
+                    compacted.add(remap[doc], cursor.freq);
+                }
+            }
+            if (compacted.docFreq == 0) {
+                it.remove();
+            } else {
+                entry.setValue(compacted);
+            }
+        }
+        long[] newPostIds = new long[Math.max(1024, live * 2)];
+        int[] newLengths = new int[newPostIds.length];
+        for (int doc = 0; doc < docCount; doc++) {
+            if (remap[doc] >= 0) {
+                newPostIds[remap[doc]] = postIdByDoc[doc];
+                newLengths[remap[doc]] = docLengths[doc];
+                docByPost.put(postIdByDoc[doc], remap[doc]);
+            }
+        }
+        postIdByDoc = newPostIds;
+        docLengths = newLengths;
+        docCount = live;
+        deletedCount = 0;
+        deleted.clear();
+    }
+
+    private static float idf(int docFreq, int liveDocs) {
+        return (float) Math.log(1 + (liveDocs - docFreq + 0.5) / (docFreq + 0.5));
+    }
+
+    private static float score(Cursor[] cursors, List<Cursor> optionalCursors, int doc, int docLength, float avgLength) {
+        float norm = K1 * (1 - B + B * docLength / avgLength);
+        float score = 0f;
+        for (Cursor cursor : cursors) {
+            score += cursor.idf * (cursor.freq * (K1 + 1)) / (cursor.freq + norm);
+        }
+        for (Cursor cursor : optionalCursors) {
+            if (cursor.advance(doc) == doc) {
+                score += cursor.idf * (cursor.freq * (K1 + 1)) / (cursor.freq + norm);
+            }
+        }
+        return score;
+    }
+
+    // Điểm bằng nhau => bài mới hơn (id lớn hơn) xếp trước
+    private record Hit(float score, long postId) {
+        static final Comparator<Hit> WORST_FIRST = Comparator.comparingDouble(Hit::score).thenComparingLong(Hit::postId);
+    }
+
+    // Dãy varint (doc - doc trước, tần suất), chỉ ghi thêm vào cuối vì doc luôn tăng
+    private static final class Postings {
+        private byte[] data = new byte[8];
+        private int length;
+        private int docFreq;
+        private int lastDoc = -1;
+
+        void add(int doc, int freq) {
+            writeVarint(doc - lastDoc);
+            writeVarint(freq);
+            lastDoc = doc;
+            docFreq++;
+        }
+
+        private void writeVarint(int value) {
+            if (length + 5 > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + 5));
+            }
+            while ((value & ~0x7F) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+    }
+
+    private static final class Cursor {
+        private final Postings postings;
+        private final float idf;
+        private int position;
+        private int doc = -1;
+        private int freq;
+
+        Cursor(Postings postings, float idf) {
+            this.postings = postings;
+            this.idf = idf;
+        }
+
+        int nextDoc() {
+            if (position >= postings.length) {
+                doc = NO_MORE_DOCS;
+                return doc;
+            }
+            doc += readVarint();
+            freq = readVarint();
+            return doc;
+        }
+
+        // Doc đầu tiên >= target
+        int advance(int target) {
+            while (doc < target) {
+                nextDoc();
+            }
+            return doc;
+        }
+
+        private int readVarint() {
+            byte[] data = postings.data;
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+}
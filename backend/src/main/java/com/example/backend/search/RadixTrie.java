@@ -0,0 +1,121 @@
+package com.example.backend.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Radix trie bất biến cho gợi ý tìm kiếm: cạnh mang cả chuỗi (nén các nút chỉ có một con),
+// mỗi nút giữ sẵn top-K gợi ý có trọng số cao nhất trong cây con của nó.
+// Tra cứu = đi theo tiền tố (O(độ dài tiền tố)) rồi trả danh sách có sẵn, không duyệt cây con
+public final class RadixTrie<T> {
+
+    public record Entry<T>(String key, long weight, T value) {
+    }
+
+    private static final class Node<T> {
+        private final String label;
+        private final char[] firstChars;
+        private final Node<T>[] children;
+        private final Entry<T>[] top;
+
+        Node(String label, char[] firstChars, Node<T>[] children, Entry<T>[] top) {
+            this.label = label;
+            this.firstChars = firstChars;
+            this.children = children;
+            this.top = top;
+        }
+    }
+
+    private final Node<T> root;
+    private final int size;
+
+    private RadixTrie(Node<T> root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Các gợi ý có key bắt đầu bằng prefix, trọng số giảm dần
+    public List<Entry<T>> lookup(String prefix, int limit) {
+        Node<T> node = root;
+        int matched = 0;
+        while (matched < prefix.length()) {
+            int index = Arrays.binarySearch(node.firstChars, prefix.charAt(matched));
+            if (index < 0) {
+                return List.of();
+            }
+            Node<T> child = node.children[index];
+            int length = Math.min(child.label.length(), prefix.length() - matched);
+            if (!prefix.regionMatches(matched, child.label, 0, length)) {
+                return List.of();
+            }
+            matched += length;
+            node = child;
+        }
+        int count = Math.min(limit, node.top.length);
+        return Arrays.asList(node.top).subList(0, count);
+    }
+
+    // Key trùng nhau: giữ entry có trọng số cao hơn
+    public static <T> RadixTrie<T> build(List<Entry<T>> entries, int topK) {
+        TreeMap<String, Entry<T>> byKey = new TreeMap<>();
+        for (Entry<T> entry : entries) {
+            if (entry.key().isEmpty()) {
+                continue;
+            }
+            byKey.merge(entry.key(), entry, (a, b) -> a.weight() >= b.weight() ? a : b);
+        }
+        List<Entry<T>> sorted = new ArrayList<>(byKey.size());
+        for (Map.Entry<String, Entry<T>> e : byKey.entrySet()) {
+            sorted.add(e.getValue());
+        }
+        Node<T> root = buildNode(sorted, 0, sorted.size(), 0, "", topK);
+        return new RadixTrie<>(root, sorted.size());
+    }
+
+    // sorted[from, to) có chung tiền tố độ dài depth; nút hiện tại kết thúc tại depth
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> Node<T> buildNode(List<Entry<T>> sorted, int from, int to, int depth, String label, int topK) {
+        List<Entry<T>> candidates = new ArrayList<>();
+        int start = from;
+        if (start < to && sorted.get(start).key().length() == depth) {
+            candidates.add(sorted.get(start));
+            start++;
+        }
+        List<Node<T>> children = new ArrayList<>();
+        int i = start;
+        while (i < to) {
+            char c = sorted.get(i).key().charAt(depth);
+            int j = i + 1;
+            while (j < to && sorted.get(j).key().charAt(depth) == c) {
+                j++;
+            }
+            // Nhóm [i, j) cùng ký tự đầu: cạnh dài bằng tiền tố chung dài nhất của nhóm (khóa đã sắp xếp
+            // nên chỉ cần so khóa đầu và khóa cuối)
+            String firstKey = sorted.get(i).key();
+            String lastKey = sorted.get(j - 1).key();
+            int end = depth + 1;
+            int limit = Math.min(firstKey.length(), lastKey.length());
+            while (end < limit && firstKey.charAt(end) == lastKey.charAt(end)) {
+                end++;
+            }
+            Node<T> child = buildNode(sorted, i, j, end, firstKey.substring(depth, end), topK);
+            children.add(child);
+            candidates.addAll(Arrays.asList(child.top));
+            i = j;
+        }
+        candidates.sort(Comparator.comparingLong((Entry<T> e) -> e.weight()).reversed());
+        Entry<T>[] top = candidates.subList(0, Math.min(topK, candidates.size())).toArray(new Entry[0]);
+        char[] firstChars = new char[children.size()];
+        for (int k = 0; k < firstChars.length; k++) {
+            firstChars[k] = children.get(k).label.charAt(0);
+        }
+        return new Node<>(label, firstChars, children.toArray(new Node[0]), top);
+    }
+}
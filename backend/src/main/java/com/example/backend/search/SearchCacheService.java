@@ -0,0 +1,218 @@
+package com.example.backend.search;
+
+import com.example.backend.util.LongHashSet;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Predicate;
+
+// Cache kết quả tìm kiếm theo từ khóa đã chuẩn hóa: MAX_CACHED_RESULTS id bài viết xếp hạng đầu + tổng số kết quả.
+// Chỉ lưu id (không chứa cờ của người xem, không chứa likes/comment_count): caller đọc lại bài theo id rồi gắn cờ.
+// Loại bỏ theo LRU; bị xóa khi bài viết mới/sửa khớp từ khóa đã cache (tiêu đề, nội dung, tên tag) hoặc khi bài
+// nằm trong kết quả bị sửa/xóa. Tổng số có thể lệch với bài ngoài top đã cache => giới hạn bằng ttl-seconds.
+// Đồng hồ logic như FeedCacheService: mỗi lần xóa (sau commit) ghi lại điều kiện xóa kèm generation,
+// kết quả đọc trước đó chỉ bị từ chối nếu khớp một điều kiện xóa mới hơn => sửa bài này không chặn từ khóa khác
+@Service
+public class SearchCacheService {
+
+    public static final int MAX_CACHED_RESULTS = 100;
+    // Số lần xóa gần nhất còn giữ điều kiện; kết quả đọc trước lần cũ nhất còn giữ bị từ chối
+    static final int MAX_TRACKED_INVALIDATIONS = 256;
+
+    @Value("${search.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${search.cache.max-entries:1000}")
+    private int maxEntries;
+
+    @Value("${search.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    // total = -1: chưa đếm (kết quả lấy từ sp_search_posts)
+    public record CachedResult(List<Long> postIds, long total) {
+    }
+
+    // readGeneration: generation lúc đọc kết quả từ DB/chỉ mục
+    private record Entry(Set<String> terms, String needle, List<Long> postIds, LongHashSet postIdSet, long total,
+                         long createdAtNanos, long readGeneration) {
+    }
+
+    private record Invalidation(long generation, Predicate<Entry> matcher) {
+    }
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    // Tăng mỗi lần xóa cache (sau commit)
+    private long generation;
+    private final ArrayDeque<Invalidation> invalidations = new ArrayDeque<>();
+    // Kết quả đọc trước mốc này bị từ chối (điều kiện xóa tương ứng đã bị bỏ khỏi invalidations)
+    private long forgottenGeneration;
+
+    public boolean isCacheable(int offset, int limit) {
+        return enabled && offset >= 0 && limit > 0 && offset + limit <= MAX_CACHED_RESULTS;
+    }
+
+    // "Bảo  mật", "bảo mật" dùng chung một khóa; từ khóa chỉ gồm hư từ/ký tự đặc biệt thì dùng chuỗi gốc chữ thường
+    public static String key(String keyword) {
+        VietnameseAnalyzer.Query query = VietnameseAnalyzer.analyzeQuery(keyword);
+        if (query.isEmpty()) {
+            return "raw|" + needleOf(keyword);
+        }
+        return String.join(" ", query.required()) + "|" + String.join(" ", query.optional());
+    }
+
+    public synchronized long currentGeneration() {
+        return generation;
+    }
+
+    public CachedResult get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (System.nanoTime() - entry.createdAtNanos() > ttlSeconds * 1_000_000_000L) {
+                entries.remove(key);
+                return null;
+            }
+            return new CachedResult(entry.postIds(), entry.total());
+        }
+    }
+
+    public void put(String key, String keyword, List<Long> postIds, long total, long readGeneration) {
+        if (!enabled) {
+            return;
+        }
+        List<Long> snapshot = List.copyOf(postIds.subList(0, Math.min(postIds.size(), MAX_CACHED_RESULTS)));
+        LongHashSet postIdSet = new LongHashSet(snapshot.size());
+        for (Long postId : snapshot) {
+            postIdSet.add(postId);
+        }
+        VietnameseAnalyzer.Query query = VietnameseAnalyzer.analyzeQuery(keyword);
+        Entry entry = new Entry(Set.copyOf(query.required()), needleOf(keyword), snapshot, postIdSet, total, System.nanoTime(),
+                readGeneration);
+        synchronized (this) {
+            if (isStale(entry, readGeneration)) {
+                return;
+            }
+            entries.put(key, entry);
+            Iterator<Entry> it = entries.values().iterator();
+            while (entries.size() > maxEntries && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    // Bổ sung tổng số cho kết quả đã cache (countPostsBySearch gọi sau searchPosts)
+    public void putTotal(String key, long total, long readGeneration) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            // Tổng số đọc trước khi kết quả hiện tại được nạp lại thì không khớp với kết quả đó
+            if (entry == null || readGeneration < entry.readGeneration() || isStale(entry, readGeneration)) {
+                return;
+            }
+            entries.put(key, new Entry(entry.terms(), entry.needle(), entry.postIds(), entry.postIdSet(), total,
+                    entry.createdAtNanos(), entry.readGeneration()));
+        }
+    }
+
+    // Bài viết được tạo/sửa: xóa các từ khóa mà bài khớp (theo term của chỉ mục hoặc LIKE '%từ khóa%' như SP)
+    // và các từ khóa đang có bài này trong kết quả
+    public void evictMatching(long postId, String... texts) {
+        Set<String> postTerms = new HashSet<>();
+        StringBuilder joined = new StringBuilder();
+        for (String text : texts) {
+            if (text == null) {
+                continue;
+            }
+            postTerms.addAll(VietnameseAnalyzer.indexTerms(text));
+            joined.append(text.toLowerCase(Locale.ROOT)).append('\n');
+        }
+        String haystack = joined.toString();
+        String foldedHaystack = VietnameseAnalyzer.fold(haystack);
+        evict(entry -> entry.postIdSet().contains(postId)
+                || (!entry.terms().isEmpty() && postTerms.containsAll(entry.terms()))
+                || (!entry.needle().isEmpty()
+                        && (haystack.contains(entry.needle()) || foldedHaystack.contains(entry.needle()))));
+    }
+
+    // Bài viết bị xóa
+    public void evictPost(long postId) {
+        evict(entry -> entry.postIdSet().contains(postId));
+    }
+
+    // Chỉ mục tìm kiếm vừa dựng xong: bỏ các kết quả lấy từ SP
+    public void clear() {
+        synchronized (this) {
+            generation++;
+            forgottenGeneration = generation;
+            invalidations.clear();
+            entries.clear();
+        }
+    }
+
+    private void evict(Predicate<Entry> matcher) {
+        runAfterCommit(() -> {
+            synchronized (this) {
+                generation++;
+                entries.values().removeIf(matcher);
+                invalidations.addLast(new Invalidation(generation, matcher));
+                if (invalidations.size() > MAX_TRACKED_INVALIDATIONS) {
+                    forgottenGeneration = invalidations.removeFirst().generation();
+                }
+            }
+        });
+    }
+
+    // Phải gọi trong synchronized(this). Kết quả đọc ở readGeneration bị từ chối nếu có lần xóa sau đó khớp với nó
+    private boolean isStale(Entry entry, long readGeneration) {
+        if (readGeneration < forgottenGeneration) {
+            return true;
+        }
+        Iterator<Invalidation> it = invalidations.descendingIterator();
+        while (it.hasNext()) {
+            Invalidation invalidation = it.next();
+            if (invalidation.generation() <= readGeneration) {
+                return false;
+            }
+            if (invalidation.matcher().test(entry)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Xóa sau khi transaction commit để request song song không nạp lại kết quả cũ vào cache;
+    // transaction rollback thì dữ liệu không đổi, không cần xóa
+    private void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static String needleOf(String keyword) {
+        return keyword == null ? "" : keyword.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.backend.search;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Tìm kiếm bài viết bằng chỉ mục đảo trong bộ nhớ thay cho sp_search_posts (LIKE '%...%' quét toàn bảng).
+// Chỉ mục được dựng nền khi khởi động (đọc posts theo lô), sau đó cập nhật từ createPost/updatePost/deletePost
+// sau khi commit. Trong lúc chưa dựng xong, search() trả về null để PostService dùng lại SP
+@Service
+public class SearchIndexService {
+
+    private static final int LOAD_BATCH_SIZE = 1000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private SearchCacheService searchCacheService;
+
+    @Value("${search.index.enabled:true}")
+    private boolean enabled;
+
+    public record SearchPage(List<Long> postIds, int total) {
+    }
+
+    // null khi chưa dựng xong lần đầu
+    private volatile InvertedIndex index;
+
+    // Thay đổi xảy ra trong lúc đang dựng chỉ mục mới: áp dụng lại lên chỉ mục mới trước khi đưa vào dùng
+    private final Object buildLock = new Object();
+    private final List<Consumer<InvertedIndex>> pendingWhileBuilding = new ArrayList<>();
+    private boolean building;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(this::rebuild, "search-index-build");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void rebuild() {
+        synchronized (buildLock) {
+            if (building) {
+                return;
+            }
+            building = true;
+            pendingWhileBuilding.clear();
+        }
+        InvertedIndex fresh = new InvertedIndex();
+        try {
+            TransactionTemplate tx = new TransactionTemplate(transactionManager);
+            long lastId = 0;
+            while (true) {
+                long afterId = lastId;
+                List<Object[]> rows = tx.execute(status -> entityManager.createNativeQuery(
+                                "SELECT id, title, content FROM posts WHERE id > :afterId ORDER BY id LIMIT :limit")
+                        .setParameter("afterId", afterId)
+                        .setParameter("limit", LOAD_BATCH_SIZE)
+                        .getResultList());
+                if (rows == null || rows.isEmpty()) {
+                    break;
+                }
+                for (Object[] row : rows) {
+                    lastId = ((Number) row[0]).longValue();
+                    fresh.add(lastId, VietnameseAnalyzer.indexTerms((String) row[1]), VietnameseAnalyzer.indexTerms((String) row[2]));
+                }
+            }
+        } catch (Exception ex) {
+            synchronized (buildLock) {
+                building = false;
+                pendingWhileBuilding.clear();
+            }
+            System.err.println("Lỗi khi dựng chỉ mục tìm kiếm: " + ex.getMessage());
+            return;
+        }
+        synchronized (buildLock) {
+            for (Consumer<InvertedIndex> change : pendingWhileBuilding) {
+                change.accept(fresh);
+            }
+            pendingWhileBuilding.clear();
+            index = fresh;
+            building = false;
+        }
+        // Kết quả đã cache trong lúc chưa có chỉ mục là của sp_search_posts (xếp hạng khác)
+        searchCacheService.clear();
+        System.err.println("Đã dựng chỉ mục tìm kiếm cho " + fresh.size() + " bài viết");
+    }
+
+    // Gọi trong transaction tạo/sửa bài viết; chỉ áp dụng khi commit thành công
+    public void indexAfterCommit(long postId, String title, String content) {
+        afterCommit(() -> apply(current -> current.add(postId, VietnameseAnalyzer.indexTerms(title), VietnameseAnalyzer.indexTerms(content))));
+    }
+
+    public void removeAfterCommit(long postId) {
+        afterCommit(() -> apply(current -> current.remove(postId)));
+    }
+
+    // null: chỉ mục chưa sẵn sàng hoặc từ khóa chỉ gồm hư từ/ký tự đặc biệt => caller dùng SP.
+    // limit = 0: chỉ đếm tổng số kết quả
+    public SearchPage search(String keyword, int offset, int limit) {
+        InvertedIndex current = index;
+        if (!enabled || current == null) {
+            return null;
+        }
+        VietnameseAnalyzer.Query query = VietnameseAnalyzer.analyzeQuery(keyword);
+        if (query.isEmpty()) {
+            return null;
+        }
+        int from = Math.max(0, offset);
+        int topK = limit > 0 ? (int) Math.min((long) from + limit, Integer.MAX_VALUE) : 0;
+        InvertedIndex.Hits hits = current.search(query.required(), query.optional(), topK);
+        List<Long> postIds = from >= hits.postIds().size()
+                ? List.of()
+                : hits.postIds().subList(from, hits.postIds().size());
+        return new SearchPage(postIds, hits.total());
+    }
+
+    private void apply(Consumer<InvertedIndex> change) {
+        synchronized (buildLock) {
+            if (building) {
+                pendingWhileBuilding.add(change);
+            }
+            InvertedIndex current = index;
+            if (current != null) {
+                change.accept(current);
+            }
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
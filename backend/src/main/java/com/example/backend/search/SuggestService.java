@@ -0,0 +1,251 @@
+package com.example.backend.search;
+
+import com.example.backend.dto.common.ApiResponseDTO;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+// Gợi ý khi đang gõ (/api/posts/suggest): tiêu đề bài viết, tên tag cha/con và từ khóa được tìm nhiều.
+// Toàn bộ nằm trong một RadixTrie bất biến, dựng lại định kỳ ở luồng nền rồi thay tham chiếu =>
+// request chỉ đi theo tiền tố trong bộ nhớ, không chạm MySQL và không cần khóa
+@Service
+public class SuggestService {
+
+    private static final int LOAD_BATCH_SIZE = 1000;
+    private static final int TOP_K = 10;
+    private static final int MAX_PREFIX_LENGTH = 100;
+    // Giới hạn số từ khóa được đếm giữa hai lần dựng lại để bộ nhớ không tăng vô hạn
+    private static final int MAX_TRACKED_QUERIES = 50_000;
+
+    // Tag luôn xếp trên tiêu đề bài viết cùng tiền tố. Từ khóa chỉ được gợi ý khi có ít nhất MIN_QUERY_USERS người
+    // khác nhau đã tìm: một người tìm nhiều lần (tên, số điện thoại, ...) không được lộ ra cho người khác
+    private static final long TAG_BASE_WEIGHT = 1_000_000L;
+    private static final long QUERY_WEIGHT = 1_000L;
+    private static final int MIN_QUERY_USERS = 3;
+
+    public record Suggestion(String text, String type, Long postId) {
+    }
+
+    private static final class QueryStat {
+        private volatile String text;
+        private final LongAdder count = new LongAdder();
+        // Chỉ cần biết đã đủ MIN_QUERY_USERS người hay chưa => dừng thêm khi đủ
+        private final Set<Long> userIds = ConcurrentHashMap.newKeySet();
+
+        QueryStat(String text) {
+            this.text = text;
+        }
+    }
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${search.suggest.enabled:true}")
+    private boolean enabled;
+
+    // null khi chưa dựng xong lần đầu
+    private volatile RadixTrie<Suggestion> trie;
+
+    private final Map<String, QueryStat> queryStats = new ConcurrentHashMap<>();
+    private final AtomicBoolean building = new AtomicBoolean();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        startRebuild();
+    }
+
+    // Dựng lại ở luồng riêng: đọc toàn bộ tiêu đề mất nhiều giây, không được giữ luồng của scheduler
+    // (flush like/tracking tìm kiếm, đối chiếu bộ đếm, dọn blob dùng chung luồng đó)
+    @Scheduled(fixedDelayString = "${search.suggest.rebuild-interval-ms:300000}",
+            initialDelayString = "${search.suggest.rebuild-interval-ms:300000}")
+    public void scheduledRebuild() {
+        startRebuild();
+    }
+
+    private void startRebuild() {
+        if (!enabled || building.get()) {
+            return;
+        }
+        Thread thread = new Thread(this::rebuild, "search-suggest-build");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void rebuild() {
+        if (!building.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<RadixTrie.Entry<Suggestion>> entries = new ArrayList<>();
+            loadTags(entries);
+            loadTitles(entries);
+            collectQueries(entries);
+            RadixTrie<Suggestion> fresh = RadixTrie.build(entries, TOP_K);
+            trie = fresh;
+            System.err.println("Đã dựng cây gợi ý tìm kiếm với " + fresh.size() + " mục");
+        } catch (Exception ex) {
+            System.err.println("Lỗi khi dựng cây gợi ý tìm kiếm: " + ex.getMessage());
+        } finally {
+            building.set(false);
+        }
+    }
+
+    // Gọi khi người dùng tìm kiếm (cùng chỗ với sp_track_user_search); chỉ đếm trong bộ nhớ
+    public void recordQuery(Long userId, String keyword) {
+        if (!enabled || userId == null || keyword == null) {
+            return;
+        }
+        String text = keyword.trim().replaceAll("\\s+", " ");
+        String key = normalizeKey(text).trim();
+        if (key.length() < 2 || key.length() > MAX_PREFIX_LENGTH) {
+            return;
+        }
+        QueryStat stat = queryStats.get(key);
+        if (stat == null) {
+            if (queryStats.size() >= MAX_TRACKED_QUERIES) {
+                return;
+            }
+            stat = queryStats.computeIfAbsent(key, k -> new QueryStat(text));
+        }
+        // Hiển thị theo cách gõ gần nhất, nhưng dạng có dấu không bị dạng không dấu ghi đè
+        if (!VietnameseAnalyzer.fold(text).equals(text) || VietnameseAnalyzer.fold(stat.text).equals(stat.text)) {
+            stat.text = text;
+        }
+        stat.count.increment();
+        if (stat.userIds.size() < MIN_QUERY_USERS) {
+            stat.userIds.add(userId);
+        }
+    }
+
+    public ApiResponseDTO suggest(String prefix, int limit) {
+        RadixTrie<Suggestion> current = trie;
+        String key = normalizeKey(prefix == null ? "" : prefix);
+        if (key.isBlank()) {
+            return new ApiResponseDTO(true, "Gợi ý tìm kiếm thành công", new ArrayList<>(), null);
+        }
+        if (key.length() > MAX_PREFIX_LENGTH) {
+            key = key.substring(0, MAX_PREFIX_LENGTH);
+        }
+        List<Map<String, Object>> suggestions = new ArrayList<>();
+        if (current != null) {
+            int count = Math.max(1, Math.min(limit, TOP_K));
+            for (RadixTrie.Entry<Suggestion> entry : current.lookup(key, count)) {
+                Map<String, Object> item = new HashMap<>();
+                item.put("text", entry.value().text());
+                item.put("type", entry.value().type());
+                item.put("post_id", entry.value().postId());
+                suggestions.add(item);
+            }
+        }
+        return new ApiResponseDTO(true, "Gợi ý tìm kiếm thành công", suggestions, null);
+    }
+
+    // Trọng số tag = số bài viết gắn tag (cộng mức nền để tag đứng trước tiêu đề)
+    private void loadTags(List<RadixTrie.Entry<Suggestion>> entries) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        List<Object[]> rows = tx.execute(status -> entityManager.createNativeQuery(
+                        "SELECT pt.name, 'parent_tag', (SELECT COUNT(*) FROM post_parent_tags ppt WHERE ppt.parent_tag_id = pt.id) " +
+                        "FROM parent_tags pt " +
+                        "UNION ALL " +
+                        "SELECT ct.name, 'child_tag', (SELECT COUNT(*) FROM post_child_tags pct WHERE pct.child_tag_id = ct.id) " +
+                        "FROM child_tags ct")
+                .getResultList());
+        if (rows == null) {
+            return;
+        }
+        for (Object[] row : rows) {
+            String name = (String) row[0];
+            long usage = row[2] == null ? 0 : ((Number) row[2]).longValue();
+            addEntry(entries, name, TAG_BASE_WEIGHT + usage, new Suggestion(name, (String) row[1], null));
+        }
+    }
+
+    // Tiêu đề bài viết, đọc theo lô như chỉ mục tìm kiếm; bài nhiều like xếp trước
+    private void loadTitles(List<RadixTrie.Entry<Suggestion>> entries) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        long lastId = 0;
+        while (true) {
+            long afterId = lastId;
+            List<Object[]> rows = tx.execute(status -> entityManager.createNativeQuery(
+                            "SELECT id, title, likes_count FROM posts WHERE id > :afterId ORDER BY id LIMIT :limit")
+                    .setParameter("afterId", afterId)
+                    .setParameter("limit", LOAD_BATCH_SIZE)
+                    .getResultList());
+            if (rows == null || rows.isEmpty()) {
+                return;
+            }
+            for (Object[] row : rows) {
+                lastId = ((Number) row[0]).longValue();
+                String title = (String) row[1];
+                long likes = row[2] == null ? 0 : ((Number) row[2]).longValue();
+                addEntry(entries, title, 1 + Math.max(0, likes), new Suggestion(title, "post", lastId));
+            }
+        }
+    }
+
+    // Từ khóa phổ biến; số đếm giảm một nửa sau mỗi lần dựng để ưu tiên từ khóa gần đây
+    private void collectQueries(List<RadixTrie.Entry<Suggestion>> entries) {
+        queryStats.entrySet().removeIf(e -> {
+            QueryStat stat = e.getValue();
+            long count = stat.count.sumThenReset();
+            if (stat.userIds.size() >= MIN_QUERY_USERS) {
+                addEntry(entries, stat.text, QUERY_WEIGHT * count, new Suggestion(stat.text, "query", null));
+            }
+            if (count / 2 == 0) {
+                return true;
+            }
+            stat.count.add(count / 2);
+            return false;
+        });
+    }
+
+    private static void addEntry(List<RadixTrie.Entry<Suggestion>> entries, String text, long weight, Suggestion suggestion) {
+        if (text == null) {
+            return;
+        }
+        String key = normalizeKey(text).trim();
+        if (!key.isEmpty()) {
+            entries.add(new RadixTrie.Entry<>(key, weight, suggestion));
+        }
+    }
+
+    // Khóa so khớp: bỏ dấu, chữ thường, gộp khoảng trắng (giữ một khoảng trắng cuối: "bao " chỉ khớp "bao mat")
+    private static String normalizeKey(String text) {
+        String folded = VietnameseAnalyzer.fold(text).toLowerCase(Locale.ROOT);
+        StringBuilder key = new StringBuilder(folded.length());
+        boolean space = true;
+        for (int i = 0; i < folded.length(); i++) {
+            char c = folded.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (!space) {
+                    key.append(' ');
+                    space = true;
+                }
+            } else {
+                key.append(c);
+                space = false;
+            }
+        }
+        return key.toString();
+    }
+}
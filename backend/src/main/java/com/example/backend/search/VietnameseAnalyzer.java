@@ -0,0 +1,174 @@
+package com.example.backend.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+// Phân tích văn bản tiếng Việt cho tìm kiếm:
+// - tách theo âm tiết (tiếng Việt viết cách nhau từng âm tiết), chữ thường, chuẩn hóa NFC
+// - bỏ dấu (NFD + bỏ ký tự dấu, đ/Đ -> d/D) để "bao mat" tìm được "bảo mật"
+// - bỏ hư từ phổ biến (và, là, của, ...) ở dạng có dấu; dạng bỏ dấu vẫn được giữ vì trùng với từ có nghĩa
+//   ("đang"/"dạng", "để"/"dễ", "đã"/"da", "từ"/"tử", ...) nên không thể coi từ khóa không dấu là hư từ
+// - edge n-gram (tiền tố "^") của dạng bỏ dấu để tìm theo tiền tố khi đang gõ
+// Chỉ mục chứa cả dạng gốc lẫn dạng bỏ dấu: truy vấn khớp theo dạng bỏ dấu, đúng dấu thì được cộng điểm
+public final class VietnameseAnalyzer {
+
+    public static final String PREFIX_MARK = "^";
+    private static final int MIN_GRAM = 2;
+    private static final int MAX_GRAM = 15;
+
+    private static final char[] FOLD_TABLE = buildFoldTable();
+
+    private static final Set<String> STOPWORDS = Set.of(
+            "và", "là", "của", "có", "các", "những", "cho", "được", "trong", "với", "một", "này", "đã", "thì",
+            "mà", "để", "khi", "như", "từ", "cũng", "lại", "vào", "nên", "vì", "bị", "rằng", "đó", "đây", "ở",
+            "nhưng", "hay", "hoặc", "sẽ", "đang", "rất", "nữa", "vẫn", "thế", "nào", "gì", "ạ", "nhé", "à");
+
+    // required: mọi term phải khớp; optional: chỉ cộng điểm (dạng có dấu khớp đúng, từ cuối khớp trọn vẹn)
+    public record Query(List<String> required, List<String> optional) {
+        public boolean isEmpty() {
+            return required.isEmpty();
+        }
+    }
+
+    private VietnameseAnalyzer() {
+    }
+
+    // Bỏ dấu, giữ nguyên hoa/thường: "Đề cương Bảo mật" -> "De cuong Bao mat".
+    // Tra bảng dựng sẵn thay vì gọi Normalizer cho từng chuỗi; ký tự dấu rời (văn bản dạng NFD) thì bỏ qua
+    public static String fold(String text) {
+        if (text == null || isAscii(text)) {
+            return text;
+        }
+        char[] folded = new char[text.length()];
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < FOLD_TABLE.length) {
+                if (FOLD_TABLE[c] != 0) {
+                    folded[length++] = FOLD_TABLE[c];
+                }
+            } else if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                folded[length++] = c;
+            }
+        }
+        return new String(folded, 0, length);
+    }
+
+    // Âm tiết chữ thường dạng NFC (giữ dấu)
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        String normalized = isAscii(text) ? text : Normalizer.normalize(text, Normalizer.Form.NFC);
+        String lower = normalized.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    // Term cho chỉ mục: dạng gốc, dạng bỏ dấu (nếu khác) và các tiền tố của dạng bỏ dấu.
+    // Hư từ chỉ bỏ dạng gốc: truy vấn không dấu "dinh dang" vẫn phải khớp bài có "định dạng" lẫn "đang"
+    public static List<String> indexTerms(String text) {
+        List<String> terms = new ArrayList<>();
+        for (String token : tokenize(text)) {
+            String folded = fold(token);
+            boolean stopword = STOPWORDS.contains(token);
+            if (!stopword) {
+                terms.add(token);
+            }
+            if (stopword || !folded.equals(token)) {
+                terms.add(folded);
+            }
+            int maxGram = Math.min(folded.length(), MAX_GRAM);
+            for (int length = MIN_GRAM; length <= maxGram; length++) {
+                terms.add(PREFIX_MARK + folded.substring(0, length));
+            }
+        }
+        return terms;
+    }
+
+    // Từ cuối cùng được khớp theo tiền tố (người dùng có thể chưa gõ xong); các từ khác khớp trọn âm tiết
+    public static Query analyzeQuery(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : tokenize(text)) {
+            if (!isStopword(token)) {
+                tokens.add(token);
+            }
+        }
+        List<String> required = new ArrayList<>();
+        List<String> optional = new ArrayList<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            String folded = fold(token);
+            boolean last = i == tokens.size() - 1;
+            if (last && folded.length() >= MIN_GRAM) {
+                required.add(PREFIX_MARK + folded.substring(0, Math.min(folded.length(), MAX_GRAM)));
+                optional.add(folded);
+            } else {
+                required.add(folded);
+            }
+            if (!folded.equals(token)) {
+                optional.add(token);
+            }
+        }
+        return new Query(required, optional);
+    }
+
+    // Ký tự -> chữ cái gốc cho toàn bộ vùng Latin (U+0000..U+1EFF, gồm Latin Extended Additional chứa chữ có dấu
+    // tiếng Việt); ký tự dấu rời (U+0300..U+036F, ...) ánh xạ thành 0 để bỏ qua
+    private static char[] buildFoldTable() {
+        char[] table = new char[0x1F00];
+        for (int c = 0; c < table.length; c++) {
+            table[c] = (char) c;
+            if (c < 0x80) {
+                continue;
+            }
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                table[c] = 0;
+                continue;
+            }
+            String decomposed = Normalizer.normalize(String.valueOf((char) c), Normalizer.Form.NFD);
+            if (decomposed.length() > 1 && isMarks(decomposed, 1)) {
+                table[c] = decomposed.charAt(0);
+            }
+        }
+        table['đ'] = 'd';
+        table['Đ'] = 'D';
+        return table;
+    }
+
+    private static boolean isMarks(String text, int from) {
+        for (int i = from; i < text.length(); i++) {
+            if (Character.getType(text.charAt(i)) != Character.NON_SPACING_MARK) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Chỉ hư từ gõ có dấu; từ không dấu ("dang", "cho", "trong") có thể là từ có nghĩa nên luôn giữ
+    private static boolean isStopword(String token) {
+        return STOPWORDS.contains(token) && !isAscii(token);
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
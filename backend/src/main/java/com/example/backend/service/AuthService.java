@@ -8,6 +8,7 @@ import com.example.backend.dto.request.RegisterRequestDTO;
 import com.example.backend.dto.request.ResetPasswordRequestDTO;
 import com.example.backend.entity.User;
 import com.example.backend.repository.UserRepository;
+import com.example.backend.util.AvatarUrls;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -151,7 +152,7 @@ public class AuthService {
         userDTO.setEmail(user.getEmail());
         userDTO.setPhone(user.getPhoneNumber());
         userDTO.setName(user.getName());
-        userDTO.setAvatar(user.getAvatar());
+        userDTO.setAvatar(AvatarUrls.of(user.getAvatar(), AvatarUrls.PROFILE_SIZE));
         userDTO.setGender(user.getGender());
         userDTO.setDateOfBirth(user.getDateOfBirth());
         return new ApiResponseDTO(true, "Đăng nhập Google thành công", userDTO, null);
@@ -174,7 +175,7 @@ public class AuthService {
         userDTO.setEmail(user.getEmail());
         userDTO.setPhone(user.getPhoneNumber());
         userDTO.setName(user.getName());
-        userDTO.setAvatar(user.getAvatar());
+        userDTO.setAvatar(AvatarUrls.of(user.getAvatar(), AvatarUrls.PROFILE_SIZE));
         userDTO.setGender(user.getGender());
         userDTO.setDateOfBirth(user.getDateOfBirth());
         return new ApiResponseDTO(true, "Đăng nhập Facebook thành công", userDTO, null);
@@ -198,7 +199,7 @@ public class AuthService {
         userDTO.setEmail(user.getEmail());
         userDTO.setPhone(user.getPhoneNumber());
         userDTO.setName(user.getName());
-        userDTO.setAvatar(user.getAvatar());
+        userDTO.setAvatar(AvatarUrls.of(user.getAvatar(), AvatarUrls.PROFILE_SIZE));
         userDTO.setGender(user.getGender());
         userDTO.setDateOfBirth(user.getDateOfBirth());
         return new ApiResponseDTO(true, "Đăng nhập Google thành công", userDTO, null);
@@ -222,7 +223,7 @@ public class AuthService {
         userDTO.setEmail(user.getEmail());
         userDTO.setPhone(user.getPhoneNumber());
         userDTO.setName(user.getName());
-        userDTO.setAvatar(user.getAvatar());
+        userDTO.setAvatar(AvatarUrls.of(user.getAvatar(), AvatarUrls.PROFILE_SIZE));
         userDTO.setGender(user.getGender());
         userDTO.setDateOfBirth(user.getDateOfBirth());
         return new ApiResponseDTO(true, "Đăng nhập Facebook thành công", userDTO, null);
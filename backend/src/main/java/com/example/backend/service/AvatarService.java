@@ -0,0 +1,169 @@
+package com.example.backend.service;
+
+import com.example.backend.dto.response.AttachmentContentDTO;
+import com.example.backend.util.ETags;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+// Avatar người dùng: ảnh upload được xoay theo EXIF, cắt vuông ở giữa, thu về 64/128/256px và lưu theo hash nội dung
+// (<sha256>_<size>.jpg|png) trong avatar.store.root. users.avatar chỉ giữ key "<sha256>.<ext>".
+// Cùng key luôn cùng nội dung => /api/users/avatar/{key}?size= trả ETag mạnh + cache immutable
+@Service
+public class AvatarService {
+
+    public static final int[] SIZES = {64, 128, 256};
+    private static final long MAX_AVATAR_SIZE = 5 * 1024 * 1024;
+    // Key chỉ là tên file (không có '/' hay '\', không bắt đầu bằng '.') => không thoát ra ngoài thư mục avatar.
+    // Cho phép cả tên file avatar cũ (avatar_<userId>_<timestamp>_<tên gốc>)
+    private static final Pattern KEY_PATTERN = Pattern.compile("[^/\\\\.][^/\\\\]{0,254}");
+
+    private final Path root;
+
+    public AvatarService(@Value("${avatar.store.root:uploads/avatars}") String root) throws IOException {
+        this.root = Paths.get(root).toAbsolutePath().normalize();
+        Files.createDirectories(this.root);
+    }
+
+    // Chuẩn hóa + lưu các kích thước, trả về key để ghi vào users.avatar.
+    // Ném IllegalArgumentException nếu ảnh không hợp lệ
+    public String store(MultipartFile file) throws IOException {
+        if (file.getSize() > MAX_AVATAR_SIZE) {
+            throw new IllegalArgumentException("Ảnh đại diện vượt quá 5MB");
+        }
+        BufferedImage source = decode(file);
+        if (source == null) {
+            throw new IllegalArgumentException("Ảnh đại diện không hợp lệ, chỉ hỗ trợ JPEG, PNG, GIF hoặc BMP");
+        }
+        boolean hasAlpha = source.getColorModel().hasAlpha();
+        String extension = hasAlpha ? "png" : "jpg";
+        int side = Math.min(source.getWidth(), source.getHeight());
+        BufferedImage square = source.getSubimage((source.getWidth() - side) / 2, (source.getHeight() - side) / 2, side, side);
+
+        byte[][] encoded = new byte[SIZES.length][];
+        for (int i = 0; i < SIZES.length; i++) {
+            encoded[i] = ImageVariantService.encode(ImageVariantService.scale(square, SIZES[i], SIZES[i], hasAlpha), hasAlpha);
+        }
+        String hash = sha256Hex(encoded[SIZES.length - 1]);
+        for (int i = 0; i < SIZES.length; i++) {
+            write(root.resolve(hash + "_" + SIZES[i] + "." + extension), encoded[i]);
+        }
+        return hash + "." + extension;
+    }
+
+    // null nếu không có avatar; body null => client đã có bản mới nhất (304)
+    public AttachmentContentDTO open(String key, Integer size, String ifNoneMatch) throws IOException {
+        if (key == null || !KEY_PATTERN.matcher(key).matches()) {
+            return null;
+        }
+        Path file = null;
+        String etag = null;
+        int dot = key.lastIndexOf('.');
+        if (dot > 0) {
+            int chosen = chooseSize(size);
+            Path variant = root.resolve(key.substring(0, dot) + "_" + chosen + key.substring(dot));
+            if (Files.isRegularFile(variant)) {
+                file = variant;
+                etag = ETags.strong(key.substring(0, dot) + "-" + chosen);
+            }
+        }
+        if (file == null) {
+            // Avatar cũ (file gốc do updateUser ghi trước đây, tên có timestamp nên cũng không đổi): trả nguyên file
+            Path legacy = root.resolve(key);
+            if (!Files.isRegularFile(legacy)) {
+                return null;
+            }
+            file = legacy;
+            etag = ETags.strong(key);
+        }
+        String contentType = contentTypeOf(key);
+        if (ETags.matches(ifNoneMatch, etag)) {
+            return new AttachmentContentDTO(key, contentType, null, etag, null);
+        }
+        return new AttachmentContentDTO(key, contentType, Files.size(file), etag, new FileSystemResource(file));
+    }
+
+    // Kích thước nhỏ nhất >= size yêu cầu; không truyền hoặc lớn hơn mọi kích thước => bản lớn nhất
+    private int chooseSize(Integer size) {
+        if (size != null) {
+            for (int candidate : SIZES) {
+                if (candidate >= size) {
+                    return candidate;
+                }
+            }
+        }
+        return SIZES[SIZES.length - 1];
+    }
+
+    private BufferedImage decode(MultipartFile file) throws IOException {
+        try {
+            return ImageDecoding.decode(file.getBytes());
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Ảnh đại diện có kích thước quá lớn");
+        }
+    }
+
+    // Ghi ra file tạm rồi đổi tên: request đọc song song không bao giờ thấy file ghi dở
+    private void write(Path target, byte[] data) throws IOException {
+        if (Files.exists(target)) {
+            return;
+        }
+        Path tmp = Files.createTempFile(root, "avatar", ".part");
+        try {
+            Files.write(tmp, data);
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException ex) {
+                // Request khác vừa lưu cùng avatar
+            } catch (AtomicMoveNotSupportedException ex) {
+                if (!Files.exists(target)) {
+                    Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static String contentTypeOf(String key) {
+        String lower = key.toLowerCase();
+        if (lower.endsWith(".png")) {
+            return "image/png";
+        }
+        if (lower.endsWith(".jpg") || lower.endsWith(".jpeg")) {
+            return "image/jpeg";
+        }
+        if (lower.endsWith(".gif")) {
+            return "image/gif";
+        }
+        if (lower.endsWith(".bmp")) {
+            return "image/bmp";
+        }
+        if (lower.endsWith(".webp")) {
+            return "image/webp";
+        }
+        return "application/octet-stream";
+    }
+
+    private static String sha256Hex(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
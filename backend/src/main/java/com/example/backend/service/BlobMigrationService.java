@@ -0,0 +1,193 @@
+package com.example.backend.service;
+
+import com.example.backend.storage.BlobStore;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+// Chuyển dữ liệu ảnh/file cũ từ cột LONGBLOB (posts_image.image_data, posts_file.file_data) sang blob store.
+// Bật bằng blob.migration.enabled=true; chạy khi ứng dụng khởi động xong, từng lô nhỏ, có thể chạy lại nhiều lần
+@Service
+public class BlobMigrationService {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private BlobRefService blobRefService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${blob.migration.enabled:false}")
+    private boolean enabled;
+
+    @Value("${blob.migration.batch-size:20}")
+    private int batchSize;
+
+    // legacyDeflated: dữ liệu cũ của bảng được lưu dạng deflate (ảnh) hay nguyên bản (file)
+    private record Source(String table, String dataColumn, boolean legacyDeflated) {
+    }
+
+    private static final List<Source> SOURCES = List.of(
+            new Source("posts_image", "image_data", true),
+            new Source("posts_file", "file_data", false)
+    );
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        // ddl-auto=update không bỏ NOT NULL của cột cũ => ghi metadata không kèm dữ liệu sẽ lỗi
+        for (Source source : SOURCES) {
+            try {
+                tx.executeWithoutResult(status -> makeDataColumnNullable(source));
+            } catch (Exception ex) {
+                System.err.println("Không thể cho phép NULL ở " + source.table() + "." + source.dataColumn() + ": " + ex.getMessage());
+            }
+        }
+        if (!enabled) {
+            return;
+        }
+        for (Source source : SOURCES) {
+            int migrated = migrate(source, tx);
+            System.err.println("Đã chuyển " + migrated + " dòng " + source.table() + " sang blob store");
+            int backfilled = backfillContentLength(source, tx);
+            if (backfilled > 0) {
+                System.err.println("Đã bổ sung content_length cho " + backfilled + " dòng " + source.table());
+            }
+        }
+    }
+
+    private void makeDataColumnNullable(Source source) {
+        List<String> nullable = entityManager.createNativeQuery(
+                        "SELECT IS_NULLABLE FROM information_schema.COLUMNS " +
+                        "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = :table AND COLUMN_NAME = :column")
+                .setParameter("table", source.table())
+                .setParameter("column", source.dataColumn())
+                .getResultList();
+        if (!nullable.isEmpty() && "NO".equals(nullable.get(0))) {
+            entityManager.createNativeQuery("ALTER TABLE " + source.table() +
+                    " MODIFY " + source.dataColumn() + " LONGBLOB NULL").executeUpdate();
+        }
+    }
+
+    // Mỗi lô một transaction; lỗi ở một dòng chỉ bỏ qua dòng đó (theo id tăng dần để không lặp vô hạn)
+    private int migrate(Source source, TransactionTemplate tx) {
+        int migrated = 0;
+        long lastId = 0;
+        while (true) {
+            long afterId = lastId;
+            List<Object[]> rows = tx.execute(status -> entityManager.createNativeQuery(
+                            "SELECT id, " + source.dataColumn() + " FROM " + source.table() +
+                            " WHERE id > :afterId AND storage_key IS NULL AND " + source.dataColumn() + " IS NOT NULL " +
+                            "ORDER BY id LIMIT :limit")
+                    .setParameter("afterId", afterId)
+                    .setParameter("limit", batchSize)
+                    .getResultList());
+            if (rows == null || rows.isEmpty()) {
+                return migrated;
+            }
+            for (Object[] row : rows) {
+                long id = ((Number) row[0]).longValue();
+                lastId = id;
+                try {
+                    byte[] data = (byte[]) row[1];
+                    // content_length là kích thước gốc (sau giải nén) như dòng upload mới: dùng cho Content-Length
+                    // và để giải nén cấp phát đúng một lần
+                    Long contentLength = originalLengthOrNull(data, source.legacyDeflated());
+                    String storageKey = blobStore.put(data);
+                    Integer updated = tx.execute(status -> {
+                        int changed = entityManager.createNativeQuery(
+                                        "UPDATE " + source.table() + " SET storage_key = :storageKey, " +
+                                        "content_length = :contentLength, " +
+                                        source.dataColumn() + " = NULL WHERE id = :id AND storage_key IS NULL")
+                                .setParameter("storageKey", storageKey)
+                                .setParameter("contentLength", contentLength)
+                                .setParameter("id", id)
+                                .executeUpdate();
+                        if (changed > 0) {
+                            blobRefService.acquire(storageKey);
+                        }
+                        return changed;
+                    });
+                    if (updated != null && updated > 0) {
+                        migrated++;
+                    }
+                } catch (Exception ex) {
+                    System.err.println("Lỗi khi chuyển " + source.table() + "#" + id + " sang blob store: " + ex.getMessage());
+                }
+            }
+        }
+    }
+
+    // Dòng đã chuyển bởi phiên bản trước (chưa ghi content_length): tính lại từ blob store
+    private int backfillContentLength(Source source, TransactionTemplate tx) {
+        int backfilled = 0;
+        long lastId = 0;
+        while (true) {
+            long afterId = lastId;
+            List<Object[]> rows = tx.execute(status -> entityManager.createNativeQuery(
+                            "SELECT id, storage_key FROM " + source.table() +
+                            " WHERE id > :afterId AND storage_key IS NOT NULL AND content_length IS NULL AND codec IS NULL " +
+                            "ORDER BY id LIMIT :limit")
+                    .setParameter("afterId", afterId)
+                    .setParameter("limit", batchSize)
+                    .getResultList());
+            if (rows == null || rows.isEmpty()) {
+                return backfilled;
+            }
+            for (Object[] row : rows) {
+                long id = ((Number) row[0]).longValue();
+                lastId = id;
+                try (InputStream in = blobStore.getResource((String) row[1]).getInputStream()) {
+                    long contentLength = originalLength(in, source.legacyDeflated());
+                    Integer updated = tx.execute(status -> entityManager.createNativeQuery(
+                                    "UPDATE " + source.table() + " SET content_length = :contentLength " +
+                                    "WHERE id = :id AND content_length IS NULL")
+                            .setParameter("contentLength", contentLength)
+                            .setParameter("id", id)
+                            .executeUpdate());
+                    if (updated != null && updated > 0) {
+                        backfilled++;
+                    }
+                } catch (Exception ex) {
+                    System.err.println("Lỗi khi tính content_length cho " + source.table() + "#" + id + ": " + ex.getMessage());
+                }
+            }
+        }
+    }
+
+    // Dữ liệu deflate hỏng vẫn được chuyển (đọc ra lỗi giống trước khi chuyển), chỉ không có content_length
+    private static Long originalLengthOrNull(byte[] data, boolean deflated) {
+        try {
+            return originalLength(new ByteArrayInputStream(data), deflated);
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    // Đếm số byte gốc theo kiểu stream (dữ liệu deflate được giải nén dần, không giữ cả nội dung trên heap)
+    private static long originalLength(InputStream stored, boolean deflated) throws IOException {
+        if (!deflated) {
+            return stored.transferTo(OutputStream.nullOutputStream());
+        }
+        try (InputStream inflated = CompressService.inflatingStream(stored)) {
+            return inflated.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.backend.service;
+
+import com.example.backend.storage.BlobStore;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+// Đếm tham chiếu cho blob dùng chung (cùng ảnh/PDF đăng lại ở nhiều bài chỉ lưu một bản trong blob store).
+// - acquire: chạy trong transaction của người ghi metadata (upload, ảnh thu nhỏ, chuyển LONGBLOB) => rollback thì không tăng
+// - releasePost: trước khi sp_delete_post xóa ảnh/file của bài viết
+// - sweep định kỳ: blob có ref_count = 0 quá blob.refs.grace-seconds mới bị xóa. Blob store "chạm" lại file mỗi lần
+//   upload trùng nội dung nên upload đang chạy (đã ghi blob, chưa commit metadata) không bị mất file
+@Service
+public class BlobRefService {
+
+    private static final int SWEEP_BATCH_SIZE = 500;
+
+    // Mọi dòng đang tham chiếu blob, một dòng cho mỗi tham chiếu
+    private static final String ALL_REFERENCES_SQL =
+            "SELECT storage_key FROM posts_image WHERE storage_key IS NOT NULL " +
+            "UNION ALL SELECT storage_key FROM posts_file WHERE storage_key IS NOT NULL " +
+            "UNION ALL SELECT storage_key FROM posts_image_variant";
+
+    private static final String POST_REFERENCES_SQL =
+            "SELECT storage_key FROM posts_image WHERE post_id = :postId AND storage_key IS NOT NULL " +
+            "UNION ALL SELECT storage_key FROM posts_file WHERE post_id = :postId AND storage_key IS NOT NULL " +
+            "UNION ALL SELECT v.storage_key FROM posts_image_variant v JOIN posts_image i ON i.id = v.image_id " +
+            "WHERE i.post_id = :postId";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${blob.refs.grace-seconds:3600}")
+    private long graceSeconds;
+
+    public void acquire(String storageKey) {
+        acquire(List.of(storageKey));
+    }
+
+    // Một câu INSERT nhiều dòng; key lặp lại trong cùng lô được cộng nhiều lần
+    public void acquire(Collection<String> storageKeys) {
+        if (storageKeys.isEmpty()) {
+            return;
+        }
+        StringBuilder sql = new StringBuilder("INSERT INTO blob_refs (storage_key, ref_count, updated_at) VALUES ");
+        for (int i = 0; i < storageKeys.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append("(:key").append(i).append(", 1, NOW())");
+        }
+        sql.append(" ON DUPLICATE KEY UPDATE ref_count = ref_count + 1, updated_at = NOW()");
+        Query insert = entityManager.createNativeQuery(sql.toString());
+        int i = 0;
+        for (String storageKey : storageKeys) {
+            insert.setParameter("key" + i++, storageKey);
+        }
+        insert.executeUpdate();
+    }
+
+    // Blob đã ghi nhưng metadata không được lưu (vd: ảnh bị xóa trong lúc tạo ảnh thu nhỏ): tạo dòng ref_count = 0
+    // để sweep xóa sau thời gian chờ; blob đang được dùng ở chỗ khác thì giữ nguyên số đếm
+    public void markUnreferenced(String storageKey) {
+        markUnreferenced(List.of(storageKey));
+    }
+
+    public void markUnreferenced(Collection<String> storageKeys) {
+        if (storageKeys.isEmpty()) {
+            return;
+        }
+        StringBuilder sql = new StringBuilder("INSERT INTO blob_refs (storage_key, ref_count, updated_at) VALUES ");
+        for (int i = 0; i < storageKeys.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append("(:key").append(i).append(", 0, NOW())");
+        }
+        sql.append(" ON DUPLICATE KEY UPDATE updated_at = IF(ref_count = 0, NOW(), updated_at)");
+        Query insert = entityManager.createNativeQuery(sql.toString());
+        int i = 0;
+        for (String storageKey : storageKeys) {
+            insert.setParameter("key" + i++, storageKey);
+        }
+        insert.executeUpdate();
+    }
+
+    // Blob vừa được ghi cho transaction hiện tại: khi transaction kết thúc mà metadata có thể chưa được lưu
+    // (rollback, hoặc request trả lỗi giữa chừng khi onlyIfRolledBack = false) thì markUnreferenced trong
+    // transaction riêng, vì transaction của request có thể đã bị đánh dấu rollback-only
+    public void markUnreferencedAfterCompletion(Collection<String> storageKeys, boolean onlyIfRolledBack) {
+        if (storageKeys.isEmpty()) {
+            return;
+        }
+        List<String> keys = List.copyOf(storageKeys);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            if (!onlyIfRolledBack) {
+                markUnreferencedInNewTransaction(keys);
+            }
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (!onlyIfRolledBack || status != STATUS_COMMITTED) {
+                    markUnreferencedInNewTransaction(keys);
+                }
+            }
+        });
+    }
+
+    private void markUnreferencedInNewTransaction(List<String> storageKeys) {
+        try {
+            // REQUIRES_NEW: trong afterCompletion tài nguyên của transaction cũ vẫn còn gắn với luồng
+            TransactionTemplate tx = new TransactionTemplate(transactionManager);
+            tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            tx.executeWithoutResult(status -> markUnreferenced(storageKeys));
+        } catch (Exception ex) {
+            System.err.println("Lỗi khi đánh dấu " + storageKeys.size() + " blob không được tham chiếu: " + ex.getMessage());
+        }
+    }
+
+    // Giảm tham chiếu của mọi ảnh/file/ảnh thu nhỏ thuộc bài viết; gọi trước khi các dòng đó bị xóa
+    public void releasePost(long postId) {
+        entityManager.createNativeQuery(
+                        "UPDATE blob_refs r JOIN (SELECT storage_key, COUNT(*) AS n FROM (" + POST_REFERENCES_SQL + ") k " +
+                        "GROUP BY storage_key) c ON c.storage_key = r.storage_key " +
+                        "SET r.ref_count = GREATEST(r.ref_count - c.n, 0), r.updated_at = NOW()")
+                .setParameter("postId", postId)
+                .executeUpdate();
+    }
+
+    // Lần đầu chạy (bảng rỗng): đếm lại từ dữ liệu hiện có. Chạy trước BlobMigrationService
+    // để các dòng LONGBLOB được chuyển sau đó cộng thêm vào số đếm đúng
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(0)
+    public void rebuildIfEmpty() {
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                List<?> any = entityManager.createNativeQuery("SELECT 1 FROM blob_refs LIMIT 1").getResultList();
+                if (!any.isEmpty()) {
+                    return;
+                }
+                int inserted = entityManager.createNativeQuery(
+                                "INSERT INTO blob_refs (storage_key, ref_count, updated_at) " +
+                                "SELECT storage_key, COUNT(*), NOW() FROM (" + ALL_REFERENCES_SQL + ") k GROUP BY storage_key")
+                        .executeUpdate();
+                System.err.println("Đã khởi tạo số tham chiếu cho " + inserted + " blob");
+            });
+        } catch (Exception ex) {
+            System.err.println("Lỗi khi khởi tạo blob_refs: " + ex.getMessage());
+        }
+    }
+
+    // Xóa dòng trước (chỉ khi vẫn = 0) rồi mới xóa file; file vừa được upload trùng nội dung chạm lại thì giữ nguyên
+    @Scheduled(fixedDelayString = "${blob.refs.sweep-interval-ms:600000}",
+            initialDelayString = "${blob.refs.sweep-interval-ms:600000}")
+    public void sweep() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Instant cutoff = Instant.now().minusSeconds(graceSeconds);
+        List<String> keys = tx.execute(status -> entityManager.createNativeQuery(
+                        "SELECT storage_key FROM blob_refs WHERE ref_count = 0 " +
+                        "AND updated_at < DATE_SUB(NOW(), INTERVAL :graceSeconds SECOND) LIMIT :limit")
+                .setParameter("graceSeconds", graceSeconds)
+                .setParameter("limit", SWEEP_BATCH_SIZE)
+                .getResultList());
+        if (keys == null) {
+            return;
+        }
+        int deleted = 0;
+        for (String key : keys) {
+            try {
+                Integer removed = tx.execute(status -> entityManager.createNativeQuery(
+                                "DELETE FROM blob_refs WHERE storage_key = :key AND ref_count = 0")
+                        .setParameter("key", key)
+                        .executeUpdate());
+                if (removed != null && removed > 0 && blobStore.deleteIfUnchangedSince(key, cutoff)) {
+                    deleted++;
+                }
+            } catch (Exception ex) {
+                System.err.println("Lỗi khi xóa blob " + key + ": " + ex.getMessage());
+            }
+        }
+        if (deleted > 0) {
+            System.err.println("Đã xóa " + deleted + " blob không còn được tham chiếu");
+        }
+    }
+}
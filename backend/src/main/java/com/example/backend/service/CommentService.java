@@ -2,8 +2,12 @@ package com.example.backend.service;
 
 import com.example.backend.dto.common.ApiResponseDTO;
 import com.example.backend.dto.request.CommentCreateRequestDTO;
+import com.example.backend.dto.response.CommentNodeDTO;
 import com.example.backend.repository.PostRepository;
 import com.example.backend.repository.UserRepository;
+import com.example.backend.util.AvatarUrls;
+import com.example.backend.util.CursorCodec;
+import com.example.backend.util.LongHashSet;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
@@ -30,6 +34,24 @@ public class CommentService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private FeedCacheService feedCacheService;
+
+    @Autowired
+    private LikeBufferService likeBufferService;
+
+    @Autowired
+    private PostCounterService postCounterService;
+
+    private static final int MAX_COMMENT_PAGE_SIZE = 50;
+    private static final int MAX_EMBEDDED_REPLIES = 20;
+
+    // Cùng thứ tự cột với sp_get_comments_tree, thêm reply_count ở cuối
+    private static final String COMMENT_COLUMNS =
+            "c.id, c.post_id, c.author_id, c.parent_id, c.level, c.content, c.likes_count, c.created_at, " +
+            "c.mention_user_id, u.name AS author_name, u.avatar AS author_avatar, " +
+            "(SELECT COUNT(*) FROM comments r WHERE r.parent_id = c.id) AS reply_count";
+
     @Transactional
     public ApiResponseDTO addComment(CommentCreateRequestDTO request) {
         try {
@@ -61,6 +83,9 @@ public class CommentService {
             } else if (resultObj instanceof Object[]) {
                 commentId = ((Number) ((Object[]) resultObj)[0]).longValue();
             }
+            // comment_count của bài viết thay đổi => xóa các trang feed đang chứa bài viết
+            feedCacheService.evictPost(request.getPostId());
+            postCounterService.addComments(request.getPostId(), 1);
             return new ApiResponseDTO(true, "Thêm bình luận thành công", commentId, null);
         } catch (UnexpectedRollbackException urex) {
             String message = extractRootCauseMessage(urex);
@@ -84,6 +109,15 @@ public class CommentService {
     @Transactional
     public ApiResponseDTO likeComment(Long commentId, Long likerId) {
         try {
+            if (likeBufferService.isEnabled()) {
+                if (!likeBufferService.targetExists(LikeBufferService.Target.COMMENT, commentId)) {
+                    return new ApiResponseDTO(false, "Bình luận không tồn tại", null, "COMMENT_NOT_FOUND");
+                }
+                if (likeBufferService.record(LikeBufferService.Target.COMMENT, commentId, likerId, true)) {
+                    return new ApiResponseDTO(true, "Like bình luận thành công", null, null);
+                }
+                // Bộ đệm đầy: ghi đồng bộ qua SP
+            }
             StoredProcedureQuery query = entityManager.createStoredProcedureQuery("sp_like_comment");
             query.registerStoredProcedureParameter("p_comment_id", Long.class, jakarta.persistence.ParameterMode.IN);
             query.registerStoredProcedureParameter("p_liker_id", Long.class, jakarta.persistence.ParameterMode.IN);
@@ -113,6 +147,15 @@ public class CommentService {
     @Transactional
     public ApiResponseDTO unlikeComment(Long commentId, Long likerId) {
         try {
+            if (likeBufferService.isEnabled()) {
+                if (!likeBufferService.targetExists(LikeBufferService.Target.COMMENT, commentId)) {
+                    return new ApiResponseDTO(false, "Bình luận không tồn tại", null, "COMMENT_NOT_FOUND");
+                }
+                if (likeBufferService.record(LikeBufferService.Target.COMMENT, commentId, likerId, false)) {
+                    return new ApiResponseDTO(true, "Unlike bình luận thành công", null, null);
+                }
+                // Bộ đệm đầy: ghi đồng bộ qua SP
+            }
             StoredProcedureQuery query = entityManager.createStoredProcedureQuery("sp_unlike_comment");
             query.registerStoredProcedureParameter("p_comment_id", Long.class, jakarta.persistence.ParameterMode.IN);
             query.registerStoredProcedureParameter("p_liker_id", Long.class, jakarta.persistence.ParameterMode.IN);
@@ -173,12 +216,21 @@ public class CommentService {
             if (commentId == null || authorId == null) {
                 return new ApiResponseDTO(false, "Thiếu dữ liệu đầu vào", null, "DELETE_COMMENT_ERROR");
             }
+            // SP có thể xóa kèm reply nên không biết chính xác số comment bị xóa => nạp lại bộ đếm của bài viết
+            List<Number> postIds = entityManager.createNativeQuery("SELECT post_id FROM comments WHERE id = :commentId")
+                    .setParameter("commentId", commentId)
+                    .getResultList();
             StoredProcedureQuery query = entityManager.createStoredProcedureQuery("sp_delete_comment");
             query.registerStoredProcedureParameter("p_comment_id", Long.class, jakarta.persistence.ParameterMode.IN);
             query.registerStoredProcedureParameter("p_author_id", Long.class, jakarta.persistence.ParameterMode.IN);
             query.setParameter("p_comment_id", commentId);
             query.setParameter("p_author_id", authorId);
             query.execute();
+            if (!postIds.isEmpty()) {
+                long postId = postIds.get(0).longValue();
+                feedCacheService.evictPost(postId);
+                postCounterService.evict(postId);
+            }
             return new ApiResponseDTO(true, "Xóa bình luận thành công", null, null);
         } catch (UnexpectedRollbackException urex) {
             String message = extractRootCauseMessage(urex);
@@ -212,7 +264,7 @@ public class CommentService {
             if (results == null || results.isEmpty()) {
                 return new ApiResponseDTO(true, "Không có bình luận nào", new ArrayList<>(), null);
             }
-            List<Map<String, Object>> formattedResults = convertCommentsToKeyValue(results, userId);
+            List<Map<String, Object>> formattedResults = convertCommentsToKeyValue(results, postId, userId);
             return new ApiResponseDTO(true, "Lấy danh sách bình luận thành công", formattedResults, null);
         } catch (Exception ex) {
             String message = ex.getMessage();
@@ -230,38 +282,336 @@ public class CommentService {
         }
     }
 
-    private List<Map<String, Object>> convertCommentsToKeyValue(List<Object[]> results, Long userId) {
-        List<Map<String, Object>> formattedResults = new ArrayList<>();
-        for (Object[] row : results) {
-            Map<String, Object> comment = new HashMap<>();
-            Long commentId = ((Number) row[0]).longValue();
-            comment.put("id", commentId);
-            comment.put("post_id", row[1]);
-            comment.put("author_id", row[2]);
-            comment.put("parent_id", row[3]);
-            comment.put("level", row[4]);
-            comment.put("content", row[5]);
-            comment.put("likes_count", row[6]);
-            comment.put("created_at", row[7]);
-            comment.put("mention_user_id", row[8]);
-            comment.put("author_name", row[9]);
-            comment.put("author_avatar", row[10]);
-            // Bổ sung kiểm tra is_liked cho từng comment
-            if (userId != null) {
-                String likeSql = "SELECT COUNT(*) FROM comment_likes WHERE comment_id = :commentId AND liker_id = :userId";
-                Number liked = (Number) entityManager.createNativeQuery(likeSql)
-                        .setParameter("commentId", commentId)
-                        .setParameter("userId", userId)
-                        .getSingleResult();
-                comment.put("is_liked", liked != null && liked.longValue() > 0);
+    // Trả về cây bình luận dựng sẵn (replies lồng nhau), giới hạn 3 cấp giống buildCommentTree ở FE
+    @Transactional
+    public ApiResponseDTO getCommentsTreeNested(Long postId, Long userId) {
+        try {
+            if (postId == null) {
+                return new ApiResponseDTO(false, "Thiếu postId", null, "GET_COMMENTS_ERROR");
+            }
+            StoredProcedureQuery query = entityManager.createStoredProcedureQuery("sp_get_comments_tree");
+            query.registerStoredProcedureParameter("p_post_id", Long.class, jakarta.persistence.ParameterMode.IN);
+            query.setParameter("p_post_id", postId);
+            List<Object[]> results = query.getResultList();
+            if (results == null || results.isEmpty()) {
+                return new ApiResponseDTO(true, "Không có bình luận nào", new ArrayList<>(), null);
+            }
+            LongHashSet likedCommentIds = userId != null
+                    ? loadLikedCommentIds(postId, results, userId)
+                    : new LongHashSet(0);
+            List<CommentNodeDTO> roots = buildCommentTree(results, likedCommentIds);
+            return new ApiResponseDTO(true, "Lấy danh sách bình luận thành công", roots, null);
+        } catch (Exception ex) {
+            String message = extractRootCauseMessage(ex);
+            return new ApiResponseDTO(false, message, null, "GET_COMMENTS_ERROR");
+        }
+    }
+
+    // Trang bình luận gốc (keyset theo id) kèm tối đa replyLimit reply đầu tiên của mỗi bình luận
+    @Transactional(readOnly = true)
+    public ApiResponseDTO getCommentsPage(Long postId, String cursor, int limit, int replyLimit, Long userId) {
+        try {
+            if (postId == null) {
+                return new ApiResponseDTO(false, "Thiếu postId", null, "GET_COMMENTS_ERROR");
+            }
+            long[] after = CursorCodec.decode(cursor, 1);
+            int pageSize = clamp(limit, 1, MAX_COMMENT_PAGE_SIZE);
+            int perParent = clamp(replyLimit, 0, MAX_EMBEDDED_REPLIES);
+
+            String rootSql = "SELECT " + COMMENT_COLUMNS + " FROM comments c " +
+                    "JOIN users u ON u.id = c.author_id " +
+                    "WHERE c.post_id = :postId AND c.parent_id IS NULL AND c.id > :afterId " +
+                    "ORDER BY c.id ASC LIMIT :limit";
+            List<Object[]> rootRows = entityManager.createNativeQuery(rootSql)
+                    .setParameter("postId", postId)
+                    .setParameter("afterId", after != null ? after[0] : 0L)
+                    .setParameter("limit", pageSize + 1)
+                    .getResultList();
+            boolean hasMore = rootRows.size() > pageSize;
+            if (hasMore) {
+                rootRows = rootRows.subList(0, pageSize);
+            }
+
+            List<Long> rootIds = new ArrayList<>(rootRows.size());
+            for (Object[] row : rootRows) {
+                rootIds.add(((Number) row[0]).longValue());
+            }
+
+            // Reply đầu tiên của mọi bình luận gốc trong trang: 1 truy vấn (ROW_NUMBER theo parent_id)
+            List<Object[]> replyRows = new ArrayList<>();
+            if (perParent > 0 && !rootIds.isEmpty()) {
+                String replySql = "SELECT * FROM (" +
+                        "SELECT " + COMMENT_COLUMNS + ", " +
+                        "ROW_NUMBER() OVER (PARTITION BY c.parent_id ORDER BY c.id) AS rn " +
+                        "FROM comments c JOIN users u ON u.id = c.author_id " +
+                        "WHERE c.parent_id IN (:parentIds)" +
+                        ") t WHERE t.rn <= :perParent ORDER BY t.id ASC";
+                replyRows = entityManager.createNativeQuery(replySql)
+                        .setParameter("parentIds", rootIds)
+                        .setParameter("perParent", perParent)
+                        .getResultList();
+            }
+
+            List<Long> pageCommentIds = new ArrayList<>(rootIds);
+            for (Object[] row : replyRows) {
+                pageCommentIds.add(((Number) row[0]).longValue());
+            }
+            LongHashSet likedCommentIds = loadLikedCommentIds(pageCommentIds, userId);
+
+            Map<Long, Map<String, Object>> rootsById = new HashMap<>();
+            List<Map<String, Object>> items = new ArrayList<>();
+            for (Object[] row : rootRows) {
+                Map<String, Object> comment = mapPagedCommentRow(row, likedCommentIds);
+                comment.put("replies", new ArrayList<Map<String, Object>>());
+                rootsById.put(((Number) row[0]).longValue(), comment);
+                items.add(comment);
+            }
+            Map<Long, Long> lastReplyIdByParent = new HashMap<>();
+            for (Object[] row : replyRows) {
+                Long parentId = ((Number) row[3]).longValue();
+                List<Map<String, Object>> replies = (List<Map<String, Object>>) rootsById.get(parentId).get("replies");
+                replies.add(mapPagedCommentRow(row, likedCommentIds));
+                lastReplyIdByParent.put(parentId, ((Number) row[0]).longValue());
+            }
+            // Con trỏ để tải thêm reply của từng bình luận gốc (null nếu đã đủ)
+            for (Map.Entry<Long, Map<String, Object>> entry : rootsById.entrySet()) {
+                Map<String, Object> root = entry.getValue();
+                long replyCount = ((Number) root.get("reply_count")).longValue();
+                int embedded = ((List<?>) root.get("replies")).size();
+                Long lastReplyId = lastReplyIdByParent.get(entry.getKey());
+                root.put("replies_cursor", replyCount > embedded
+                        ? CursorCodec.encode(lastReplyId != null ? lastReplyId : 0L)
+                        : null);
+            }
+
+            Map<String, Object> page = new HashMap<>();
+            page.put("items", items);
+            page.put("next_cursor", hasMore ? CursorCodec.encode(rootIds.get(rootIds.size() - 1)) : null);
+            return new ApiResponseDTO(true, "Lấy danh sách bình luận thành công", page, null);
+        } catch (IllegalArgumentException ex) {
+            return new ApiResponseDTO(false, ex.getMessage(), null, "INVALID_CURSOR");
+        } catch (Exception ex) {
+            String message = extractRootCauseMessage(ex);
+            return new ApiResponseDTO(false, message, null, "GET_COMMENTS_ERROR");
+        }
+    }
+
+    // Tải thêm reply dưới parentId (keyset theo id). Với bình luận cấp 3 trở lên trả về toàn bộ
+    // hậu duệ (dàn phẳng ở cấp 3) giống cách hiển thị của cây bình luận
+    @Transactional(readOnly = true)
+    public ApiResponseDTO getReplies(Long parentId, String cursor, int limit, Long userId) {
+        try {
+            if (parentId == null) {
+                return new ApiResponseDTO(false, "Thiếu parentId", null, "GET_REPLIES_ERROR");
+            }
+            List<Number> parentLevel = entityManager.createNativeQuery("SELECT level FROM comments WHERE id = :parentId")
+                    .setParameter("parentId", parentId)
+                    .getResultList();
+            if (parentLevel.isEmpty()) {
+                return new ApiResponseDTO(false, "Bình luận không tồn tại", null, "COMMENT_NOT_FOUND");
+            }
+            long[] after = CursorCodec.decode(cursor, 1);
+            int pageSize = clamp(limit, 1, MAX_COMMENT_PAGE_SIZE);
+            boolean flattenDescendants = parentLevel.get(0) != null && parentLevel.get(0).intValue() >= 3;
+
+            String sql;
+            if (flattenDescendants) {
+                sql = "WITH RECURSIVE sub AS (" +
+                        "SELECT id FROM comments WHERE parent_id = :parentId " +
+                        "UNION ALL SELECT ch.id FROM comments ch JOIN sub s ON ch.parent_id = s.id" +
+                        ") SELECT " + COMMENT_COLUMNS + " FROM comments c " +
+                        "JOIN users u ON u.id = c.author_id " +
+                        "WHERE c.id IN (SELECT id FROM sub) AND c.id > :afterId " +
+                        "ORDER BY c.id ASC LIMIT :limit";
             } else {
-                comment.put("is_liked", false);
+                sql = "SELECT " + COMMENT_COLUMNS + " FROM comments c " +
+                        "JOIN users u ON u.id = c.author_id " +
+                        "WHERE c.parent_id = :parentId AND c.id > :afterId " +
+                        "ORDER BY c.id ASC LIMIT :limit";
+            }
+            List<Object[]> rows = entityManager.createNativeQuery(sql)
+                    .setParameter("parentId", parentId)
+                    .setParameter("afterId", after != null ? after[0] : 0L)
+                    .setParameter("limit", pageSize + 1)
+                    .getResultList();
+            boolean hasMore = rows.size() > pageSize;
+            if (hasMore) {
+                rows = rows.subList(0, pageSize);
+            }
+
+            List<Long> ids = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                ids.add(((Number) row[0]).longValue());
+            }
+            LongHashSet likedCommentIds = loadLikedCommentIds(ids, userId);
+            List<Map<String, Object>> items = new ArrayList<>();
+            for (Object[] row : rows) {
+                items.add(mapPagedCommentRow(row, likedCommentIds));
+            }
+
+            Map<String, Object> page = new HashMap<>();
+            page.put("items", items);
+            page.put("next_cursor", hasMore ? CursorCodec.encode(ids.get(ids.size() - 1)) : null);
+            return new ApiResponseDTO(true, "Lấy danh sách phản hồi thành công", page, null);
+        } catch (IllegalArgumentException ex) {
+            return new ApiResponseDTO(false, ex.getMessage(), null, "INVALID_CURSOR");
+        } catch (Exception ex) {
+            String message = extractRootCauseMessage(ex);
+            return new ApiResponseDTO(false, message, null, "GET_REPLIES_ERROR");
+        }
+    }
+
+    // Giống mapCommentRow, thêm reply_count (cột 11) và giới hạn level = 3
+    private Map<String, Object> mapPagedCommentRow(Object[] row, LongHashSet likedCommentIds) {
+        Map<String, Object> comment = mapCommentRow(row, likedCommentIds);
+        comment.put("level", Math.min(toInt(row[4]), 3));
+        comment.put("reply_count", row[11] != null ? ((Number) row[11]).longValue() : 0L);
+        return comment;
+    }
+
+    private int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    // Dựng cây trong O(n): tạo node cho mọi dòng, sau đó gắn mỗi node vào cha theo parent_id.
+    // Comment sâu hơn cấp 3 được gắn vào tổ tiên cấp 3 gần nhất (level bị giới hạn = 3)
+    private List<CommentNodeDTO> buildCommentTree(List<Object[]> results, LongHashSet likedCommentIds) {
+        Map<Long, Object[]> rowsById = new HashMap<>(results.size() * 2);
+        Map<Long, CommentNodeDTO> nodesById = new HashMap<>(results.size() * 2);
+        for (Object[] row : results) {
+            long commentId = ((Number) row[0]).longValue();
+            rowsById.put(commentId, row);
+            nodesById.put(commentId, new CommentNodeDTO(
+                    commentId,
+                    ((Number) row[1]).longValue(),
+                    ((Number) row[2]).longValue(),
+                    toLong(row[3]),
+                    Math.min(toInt(row[4]), 3),
+                    (String) row[5],
+                    row[6] != null ? ((Number) row[6]).longValue() : 0L,
+                    row[7],
+                    toLong(row[8]),
+                    (String) row[9],
+                    AvatarUrls.of(row[10], AvatarUrls.LIST_SIZE),
+                    likedCommentIds.contains(commentId),
+                    new ArrayList<>(0)
+            ));
+        }
+
+        List<CommentNodeDTO> roots = new ArrayList<>();
+        Map<Long, Long> anchorByParent = new HashMap<>();
+        for (Object[] row : results) {
+            CommentNodeDTO node = nodesById.get(((Number) row[0]).longValue());
+            Long parentId = node.parentId();
+            if (parentId == null) {
+                roots.add(node);
+                continue;
             }
-            formattedResults.add(comment);
+            if (!rowsById.containsKey(parentId)) {
+                // Cha không còn trong cây (đã xóa/ẩn) => bỏ qua giống FE
+                continue;
+            }
+            Long anchorId = resolveReplyAnchor(parentId, rowsById, anchorByParent);
+            nodesById.get(anchorId).replies().add(node);
+        }
+        return roots;
+    }
+
+    // Node sẽ nhận reply của parentId: chính nó nếu level <= 3, ngược lại là tổ tiên cấp 3 gần nhất
+    private Long resolveReplyAnchor(Long parentId, Map<Long, Object[]> rowsById, Map<Long, Long> anchorByParent) {
+        Long cached = anchorByParent.get(parentId);
+        if (cached != null) {
+            return cached;
+        }
+        Object[] parentRow = rowsById.get(parentId);
+        Long grandParentId = toLong(parentRow[3]);
+        Long anchorId = parentId;
+        if (toInt(parentRow[4]) > 3 && grandParentId != null && rowsById.containsKey(grandParentId)) {
+            anchorId = resolveReplyAnchor(grandParentId, rowsById, anchorByParent);
+        }
+        anchorByParent.put(parentId, anchorId);
+        return anchorId;
+    }
+
+    private Long toLong(Object v) {
+        return v instanceof Number ? ((Number) v).longValue() : null;
+    }
+
+    private int toInt(Object v) {
+        return v instanceof Number ? ((Number) v).intValue() : 1;
+    }
+
+    private List<Map<String, Object>> convertCommentsToKeyValue(List<Object[]> results, Long postId, Long userId) {
+        // Lấy toàn bộ comment mà user đã like trong bài viết bằng một truy vấn duy nhất
+        LongHashSet likedCommentIds = userId != null
+                ? loadLikedCommentIds(postId, results, userId)
+                : new LongHashSet(0);
+        List<Map<String, Object>> formattedResults = new ArrayList<>();
+        for (Object[] row : results) {
+            formattedResults.add(mapCommentRow(row, likedCommentIds));
         }
         return formattedResults;
     }
 
+    // Cột 0..10 theo đúng thứ tự của sp_get_comments_tree
+    private Map<String, Object> mapCommentRow(Object[] row, LongHashSet likedCommentIds) {
+        Map<String, Object> comment = new HashMap<>();
+        Long commentId = ((Number) row[0]).longValue();
+        comment.put("id", commentId);
+        comment.put("post_id", row[1]);
+        comment.put("author_id", row[2]);
+        comment.put("parent_id", row[3]);
+        comment.put("level", row[4]);
+        comment.put("content", row[5]);
+        comment.put("likes_count", row[6]);
+        comment.put("created_at", row[7]);
+        comment.put("mention_user_id", row[8]);
+        comment.put("author_name", row[9]);
+        comment.put("author_avatar", AvatarUrls.of(row[10], AvatarUrls.LIST_SIZE));
+        comment.put("is_liked", likedCommentIds.contains(commentId));
+        return comment;
+    }
+
+    // Tập id comment của bài viết mà user đã like (1 truy vấn cho cả cây thay vì 1 truy vấn/comment)
+    private LongHashSet loadLikedCommentIds(Long postId, List<Object[]> results, Long userId) {
+        String likedSql = "SELECT cl.comment_id FROM comment_likes cl " +
+                "JOIN comments c ON c.id = cl.comment_id " +
+                "WHERE c.post_id = :postId AND cl.liker_id = :userId";
+        List<Number> rows = entityManager.createNativeQuery(likedSql)
+                .setParameter("postId", postId)
+                .setParameter("userId", userId)
+                .getResultList();
+        LongHashSet likedIds = new LongHashSet(rows.size());
+        for (Number id : rows) {
+            likedIds.add(id.longValue());
+        }
+        if (!likeBufferService.isEnabled()) {
+            return likedIds;
+        }
+        List<Long> commentIds = new ArrayList<>(results.size());
+        for (Object[] row : results) {
+            commentIds.add(((Number) row[0]).longValue());
+        }
+        return likeBufferService.applyPending(LikeBufferService.Target.COMMENT, userId, commentIds, likedIds);
+    }
+
+    // Tập id comment (trong danh sách cho trước) mà user đã like - dùng cho trang bình luận
+    private LongHashSet loadLikedCommentIds(List<Long> commentIds, Long userId) {
+        if (userId == null || commentIds.isEmpty()) {
+            return new LongHashSet(0);
+        }
+        List<Number> rows = entityManager.createNativeQuery(
+                        "SELECT comment_id FROM comment_likes WHERE liker_id = :userId AND comment_id IN (:commentIds)")
+                .setParameter("userId", userId)
+                .setParameter("commentIds", commentIds)
+                .getResultList();
+        LongHashSet likedIds = new LongHashSet(rows.size());
+        for (Number id : rows) {
+            likedIds.add(id.longValue());
+        }
+        return likeBufferService.applyPending(LikeBufferService.Target.COMMENT, userId, commentIds, likedIds);
+    }
+
     private String extractRootCauseMessage(Throwable ex) {
         Throwable cause = ex;
         while (cause.getCause() != null) {
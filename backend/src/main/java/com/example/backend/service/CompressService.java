@@ -1,44 +1,171 @@
 package com.example.backend.service;
 
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
 
+// Nén/giải nén Deflate dùng chung cho ảnh/file.
+// Deflater/Inflater giữ bộ nhớ zlib native: được tái sử dụng qua pool (reset) thay vì tạo mới mỗi lần,
+// và luôn end() khi bị loại khỏi pool để không phải chờ GC/finalize mới giải phóng
 public class CompressService {
 
+    private static final int POOL_SIZE = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    private static final int STREAM_BUFFER_SIZE = 8 * 1024;
+
+    private static final BlockingQueue<Deflater> DEFLATERS = new ArrayBlockingQueue<>(POOL_SIZE);
+    private static final BlockingQueue<Inflater> INFLATERS = new ArrayBlockingQueue<>(POOL_SIZE);
+
     // Nén dữ liệu (ảnh/file) bằng thuật toán Deflate
     public static byte[] compress(byte[] data) {
-        Deflater deflater = new Deflater();
-        deflater.setLevel(Deflater.BEST_COMPRESSION);
-        deflater.setInput(data);
-        deflater.finish();
-
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length);
-        byte[] tmp = new byte[4 * 1024];
-        while (!deflater.finished()) {
-            int size = deflater.deflate(tmp);
-            outputStream.write(tmp, 0, size);
+        return compress(data, Deflater.BEST_COMPRESSION);
+    }
+
+    // Nén theo codec do CompressionPolicy chọn; STORE trả về nguyên dữ liệu
+    public static byte[] compress(byte[] data, CompressionPolicy.Codec codec) {
+        switch (codec) {
+            case DEFLATE_FAST:
+                return compress(data, Deflater.BEST_SPEED);
+            case DEFLATE_BEST:
+                return compress(data, Deflater.BEST_COMPRESSION);
+            default:
+                return data;
         }
+    }
+
+    private static byte[] compress(byte[] data, int level) {
+        Deflater deflater = borrowDeflater(level);
         try {
-            outputStream.close();
-        } catch (Exception ignored) {}
-        return outputStream.toByteArray();
+            deflater.setInput(data);
+            deflater.finish();
+            // Cận trên kích thước nén của zlib: đủ để nén trong một lần, không phải nới mảng nhiều lần
+            byte[] output = new byte[data.length + (data.length >> 12) + (data.length >> 14) + 64];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == output.length) {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+                length += deflater.deflate(output, length, output.length - length);
+            }
+            return Arrays.copyOf(output, length);
+        } finally {
+            releaseDeflater(deflater);
+        }
     }
 
     // Giải nén dữ liệu (ảnh/file) bằng thuật toán Inflater
-    public static byte[] decompress(byte[] data) {
-        Inflater inflater = new Inflater();
-        inflater.setInput(data);
+    public static byte[] decompress(byte[] data) throws ZipException {
+        return decompress(data, -1);
+    }
 
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length);
-        byte[] tmp = new byte[4 * 1024];
+    // expectedLength: kích thước gốc đã lưu (content_length) để cấp phát đúng một lần; <= 0 nếu không biết.
+    // Dữ liệu hỏng hoặc bị cắt cụt => ZipException (giống inflatingStream), không trả về nội dung rỗng/thiếu
+    public static byte[] decompress(byte[] data, long expectedLength) throws ZipException {
+        Inflater inflater = borrowInflater();
         try {
+            inflater.setInput(data);
+            int capacity = expectedLength > 0 && expectedLength < Integer.MAX_VALUE - 8
+                    ? (int) expectedLength
+                    : Math.max(STREAM_BUFFER_SIZE, data.length * 2);
+            byte[] output = new byte[capacity];
+            int length = 0;
             while (!inflater.finished()) {
-                int count = inflater.inflate(tmp);
-                outputStream.write(tmp, 0, count);
+                if (length == output.length) {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+                int count = inflater.inflate(output, length, output.length - length);
+                if (count == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new ZipException("Dữ liệu nén bị cắt cụt sau " + length + " byte");
+                }
+                length += count;
             }
-            outputStream.close();
-        } catch (Exception ignored) {}
-        return outputStream.toByteArray();
+            return length == output.length ? output : Arrays.copyOf(output, length);
+        } catch (DataFormatException ex) {
+            ZipException corrupt = new ZipException("Dữ liệu nén bị hỏng: " + ex.getMessage());
+            corrupt.initCause(ex);
+            throw corrupt;
+        } finally {
+            releaseInflater(inflater);
+        }
+    }
+
+    // Stream giải nén dần (tải ảnh/file): Inflater trả về pool khi stream đóng
+    public static InputStream inflatingStream(InputStream compressed) {
+        Inflater inflater = borrowInflater();
+        return new InflaterInputStream(compressed, inflater, STREAM_BUFFER_SIZE) {
+            private boolean closed;
+
+            @Override
+            public void close() throws IOException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                try {
+                    super.close();
+                } finally {
+                    releaseInflater(inflater);
+                }
+            }
+        };
+    }
+
+    // Stream nén dần (upload lớn): close() ghi nốt dữ liệu rồi trả Deflater về pool
+    public static OutputStream deflatingStream(OutputStream target, CompressionPolicy.Codec codec) {
+        int level = codec == CompressionPolicy.Codec.DEFLATE_FAST ? Deflater.BEST_SPEED : Deflater.BEST_COMPRESSION;
+        Deflater deflater = borrowDeflater(level);
+        return new DeflaterOutputStream(target, deflater, STREAM_BUFFER_SIZE) {
+            private boolean closed;
+
+            @Override
+            public void close() throws IOException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                try {
+                    super.close();
+                } finally {
+                    releaseDeflater(deflater);
+                }
+            }
+        };
+    }
+
+    private static Deflater borrowDeflater(int level) {
+        Deflater deflater = DEFLATERS.poll();
+        if (deflater == null) {
+            deflater = new Deflater(level);
+        } else {
+            deflater.setLevel(level);
+        }
+        return deflater;
+    }
+
+    private static void releaseDeflater(Deflater deflater) {
+        deflater.reset();
+        if (!DEFLATERS.offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    private static Inflater borrowInflater() {
+        Inflater inflater = INFLATERS.poll();
+        return inflater != null ? inflater : new Inflater();
+    }
+
+    private static void releaseInflater(Inflater inflater) {
+        inflater.reset();
+        if (!INFLATERS.offer(inflater)) {
+            inflater.end();
+        }
     }
 }
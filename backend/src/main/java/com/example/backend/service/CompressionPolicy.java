@@ -0,0 +1,99 @@
+package com.example.backend.service;
+
+import java.util.Set;
+
+// Chọn cách lưu dữ liệu upload theo MIME type và độ hỗn loạn (entropy) ước lượng trên vài đoạn mẫu:
+// - Định dạng đã nén sẵn (JPEG, PNG, GIF, WebP, zip, docx/xlsx/pptx, ...) => lưu nguyên (STORE)
+// - Dữ liệu còn lại: entropy cao => STORE, trung bình => deflate nhanh, thấp (text, log, csv, doc/xls cũ) => deflate mức cao
+public final class CompressionPolicy {
+
+    public enum Codec {
+        STORE("store"),
+        DEFLATE_FAST("deflate"),
+        DEFLATE_BEST("deflate");
+
+        // Giá trị ghi vào cột codec: cả 2 mức deflate đều đọc lại bằng Inflater
+        private final String storedName;
+
+        Codec(String storedName) {
+            this.storedName = storedName;
+        }
+
+        public String storedName() {
+            return storedName;
+        }
+    }
+
+    public static final String STORED_DEFLATE = "deflate";
+
+    private static final Set<String> PRECOMPRESSED_TYPES = Set.of(
+            "image/jpeg", "image/jpg", "image/png", "image/gif", "image/webp",
+            "application/zip", "application/x-rar-compressed", "application/gzip", "application/x-7z-compressed",
+            "application/vnd.openxmlformats-officedocument.wordprocessingml.document",
+            "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet",
+            "application/vnd.openxmlformats-officedocument.presentationml.presentation",
+            "video/mp4", "audio/mpeg"
+    );
+
+    // Dữ liệu quá nhỏ: header deflate + chi phí inflate không đáng
+    private static final int MIN_COMPRESSIBLE_SIZE = 1024;
+    private static final int SAMPLE_COUNT = 4;
+    private static final int SAMPLE_SIZE = 16 * 1024;
+    // Đoạn đầu đọc từ upload dạng stream để ước lượng entropy
+    public static final int STREAM_SAMPLE_SIZE = SAMPLE_COUNT * SAMPLE_SIZE;
+    // Bit/byte: 8 là ngẫu nhiên hoàn toàn
+    private static final double STORE_ENTROPY = 7.5;
+    private static final double BEST_ENTROPY = 5.5;
+
+    private CompressionPolicy() {
+    }
+
+    public static Codec choose(String mimeType, byte[] data) {
+        return data == null ? Codec.STORE : choose(mimeType, data, data.length);
+    }
+
+    // Upload dạng stream: chỉ có đoạn đầu (sample) trong bộ nhớ, totalSize là kích thước cả file
+    public static Codec choose(String mimeType, byte[] sample, long totalSize) {
+        if (totalSize < MIN_COMPRESSIBLE_SIZE || sample.length == 0) {
+            return Codec.STORE;
+        }
+        String type = mimeType != null ? mimeType.toLowerCase().split(";")[0].trim() : "";
+        if (PRECOMPRESSED_TYPES.contains(type)) {
+            return Codec.STORE;
+        }
+        double entropy = sampledEntropy(sample);
+        if (entropy >= STORE_ENTROPY) {
+            return Codec.STORE;
+        }
+        return entropy <= BEST_ENTROPY ? Codec.DEFLATE_BEST : Codec.DEFLATE_FAST;
+    }
+
+    // Entropy Shannon trên tối đa SAMPLE_COUNT đoạn rải đều trong dữ liệu (không quét toàn bộ file lớn)
+    static double sampledEntropy(byte[] data) {
+        int[] counts = new int[256];
+        long total = 0;
+        int sampleSize = Math.min(SAMPLE_SIZE, data.length);
+        int samples = data.length <= SAMPLE_SIZE ? 1 : SAMPLE_COUNT;
+        long stride = samples > 1 ? (data.length - sampleSize) / (samples - 1) : 0;
+        for (int s = 0; s < samples; s++) {
+            int start = (int) (s * stride);
+            for (int i = start; i < start + sampleSize; i++) {
+                counts[data[i] & 0xFF]++;
+            }
+            total += sampleSize;
+        }
+        double entropy = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                double p = (double) count / total;
+                entropy -= p * (Math.log(p) / Math.log(2));
+            }
+        }
+        return entropy;
+    }
+
+    // Dòng cũ chưa có cột codec: ảnh luôn được nén deflate, file lưu nguyên
+    public static boolean isDeflated(String storedCodec, boolean legacyDeflated) {
+        return storedCodec != null ? STORED_DEFLATE.equals(storedCodec) : legacyDeflated;
+    }
+}
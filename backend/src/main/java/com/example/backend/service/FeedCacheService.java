@@ -0,0 +1,237 @@
+package com.example.backend.service;
+
+import com.example.backend.util.LongHashSet;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+// Cache trong bộ nhớ cho K trang đầu của mỗi categoryPath (dữ liệu dùng chung, không chứa cờ của người xem).
+// Giới hạn theo tổng dung lượng ước tính, loại bỏ theo LRU; bị xóa chính xác khi bài viết/like/comment thay đổi
+@Service
+public class FeedCacheService {
+
+    // Giới hạn số category/bài viết được ghi nhớ thời điểm bị xóa cache; vượt quá thì quên bớt (và từ chối các lần đọc cũ hơn)
+    static final int MAX_TRACKED_INVALIDATIONS = 10_000;
+
+    @Value("${feed.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${feed.cache.max-pages:3}")
+    private int maxPages;
+
+    @Value("${feed.cache.max-page-size:50}")
+    private int maxPageSize;
+
+    @Value("${feed.cache.max-bytes:16777216}")
+    private long maxBytes;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+    // Đồng hồ logic tăng mỗi lần xóa cache. Trang đọc từ DB tại thời điểm readGeneration chỉ được ghi vào cache khi
+    // category của nó và mọi bài viết trong trang không bị xóa cache sau thời điểm đó
+    // => xóa cache một category không chặn việc nạp lại các category khác
+    private long generation;
+    private final Map<String, Long> categoryGenerations = new HashMap<>();
+    private final LinkedHashMap<Long, Long> postGenerations = new LinkedHashMap<>();
+    // Lần đọc cũ hơn mốc này không còn kiểm tra được (đã quên bớt) => không ghi vào cache
+    private long forgottenGeneration;
+
+    public record CachedPage(List<Map<String, Object>> items, String nextCursor) {
+    }
+
+    private record Entry(String categoryPath, List<Map<String, Object>> items, String nextCursor,
+                         LongHashSet postIds, long bytes) {
+    }
+
+    // /saved phụ thuộc người xem nên không cache
+    public boolean isCacheable(String categoryPath, int limit, int offset) {
+        return enabled
+                && categoryPath != null
+                && !categoryPath.equals("/saved")
+                && limit > 0 && limit <= maxPageSize
+                && offset >= 0 && offset % limit == 0
+                && offset / limit < maxPages;
+    }
+
+    public static String offsetKey(String categoryPath, int limit, int offset) {
+        return "o|" + categoryPath + "|" + limit + "|" + offset;
+    }
+
+    // Chế độ cursor chỉ cache trang đầu tiên (cursor rỗng)
+    public static String firstCursorPageKey(String categoryPath, int limit) {
+        return "c|" + categoryPath + "|" + limit;
+    }
+
+    // Gọi trước khi đọc trang từ DB; ghi nhận categoryPath để evictCategories biết category đang được nạp
+    public synchronized long currentGeneration(String categoryPath) {
+        if (!categoryGenerations.containsKey(categoryPath)) {
+            if (categoryGenerations.size() >= MAX_TRACKED_INVALIDATIONS) {
+                categoryGenerations.clear();
+                forgottenGeneration = generation;
+            }
+            categoryGenerations.put(categoryPath, forgottenGeneration);
+        }
+        return generation;
+    }
+
+    // Trả về bản sao từng bài viết để caller gắn cờ is_liked/is_saved mà không sửa dữ liệu dùng chung
+    public CachedPage get(String key) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry == null) {
+            return null;
+        }
+        return new CachedPage(copyPosts(entry.items()), entry.nextCursor());
+    }
+
+    public void put(String key, String categoryPath, List<Map<String, Object>> items, String nextCursor, long readGeneration) {
+        List<Map<String, Object>> snapshot = copyPosts(items);
+        LongHashSet postIds = new LongHashSet(snapshot.size());
+        for (Map<String, Object> post : snapshot) {
+            postIds.add(((Number) post.get("id")).longValue());
+        }
+        long bytes = estimateBytes(snapshot);
+        if (bytes > maxBytes) {
+            return;
+        }
+        synchronized (this) {
+            if (isStale(categoryPath, snapshot, readGeneration)) {
+                return;
+            }
+            Entry previous = entries.put(key, new Entry(categoryPath, snapshot, nextCursor, postIds, bytes));
+            if (previous != null) {
+                totalBytes -= previous.bytes();
+            }
+            totalBytes += bytes;
+            Iterator<Entry> it = entries.values().iterator();
+            while (totalBytes > maxBytes && it.hasNext()) {
+                totalBytes -= it.next().bytes();
+                it.remove();
+            }
+        }
+    }
+
+    // Xóa mọi trang của các category đang có trang cache chứa bài viết này
+    // (sửa/xóa/like/comment làm thay đổi nội dung hoặc dịch chuyển các trang phía sau)
+    public void evictPost(long postId) {
+        runAfterCommit(() -> {
+            synchronized (this) {
+                Set<String> affected = new HashSet<>();
+                for (Entry entry : entries.values()) {
+                    if (entry.postIds().contains(postId)) {
+                        affected.add(entry.categoryPath());
+                    }
+                }
+                removeCategories(affected::contains);
+                // Trang đang nạp dở của category khác có chứa bài viết này cũng không được ghi vào cache
+                postGenerations.remove(postId);
+                postGenerations.put(postId, generation);
+                if (postGenerations.size() > MAX_TRACKED_INVALIDATIONS) {
+                    Iterator<Map.Entry<Long, Long>> it = postGenerations.entrySet().iterator();
+                    forgottenGeneration = Math.max(forgottenGeneration, it.next().getValue());
+                    it.remove();
+                }
+            }
+        });
+    }
+
+    // Like/unlike đổi likes_count của các trang chứa bài viết và thứ tự của /popular
+    public void evictAfterLikeChange(long postId) {
+        evictPost(postId);
+        evictCategories("/popular"::equals);
+    }
+
+    // Xóa mọi trang của các category thỏa điều kiện (vd: category chứa bài viết mới)
+    public void evictCategories(Predicate<String> categoryPathMatcher) {
+        runAfterCommit(() -> {
+            synchronized (this) {
+                removeCategories(categoryPathMatcher);
+            }
+        });
+    }
+
+    private void removeCategories(Predicate<String> categoryPathMatcher) {
+        generation++;
+        for (Map.Entry<String, Long> category : categoryGenerations.entrySet()) {
+            if (categoryPathMatcher.test(category.getKey())) {
+                category.setValue(generation);
+            }
+        }
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (categoryPathMatcher.test(entry.categoryPath())) {
+                totalBytes -= entry.bytes();
+                it.remove();
+            }
+        }
+    }
+
+    // Phải gọi trong synchronized(this)
+    private boolean isStale(String categoryPath, List<Map<String, Object>> posts, long readGeneration) {
+        if (readGeneration < forgottenGeneration
+                || categoryGenerations.getOrDefault(categoryPath, generation) > readGeneration) {
+            return true;
+        }
+        for (Map<String, Object> post : posts) {
+            Long invalidated = postGenerations.get(((Number) post.get("id")).longValue());
+            if (invalidated != null && invalidated > readGeneration) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Xóa sau khi transaction commit để request song song không nạp lại dữ liệu cũ vào cache;
+    // transaction rollback thì dữ liệu không đổi, không cần xóa
+    private void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private List<Map<String, Object>> copyPosts(List<Map<String, Object>> posts) {
+        List<Map<String, Object>> copies = new ArrayList<>(posts.size());
+        for (Map<String, Object> post : posts) {
+            copies.add(new HashMap<>(post));
+        }
+        return copies;
+    }
+
+    // Ước lượng thô dung lượng heap của một trang (chuỗi UTF-16 + overhead map/list)
+    private long estimateBytes(List<Map<String, Object>> posts) {
+        long bytes = 256;
+        for (Map<String, Object> post : posts) {
+            bytes += 512;
+            for (Object value : post.values()) {
+                if (value instanceof String) {
+                    bytes += 40 + 2L * ((String) value).length();
+                } else if (value instanceof Collection) {
+                    bytes += 64 + 128L * ((Collection<?>) value).size();
+                }
+            }
+        }
+        return bytes;
+    }
+}
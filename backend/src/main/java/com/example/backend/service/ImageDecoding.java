@@ -0,0 +1,147 @@
+package com.example.backend.service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+// Giải mã ảnh upload dùng chung cho ảnh thu nhỏ bài viết và avatar:
+// - đọc kích thước pixel từ header trước, chặn ảnh "bom giải nén" (file nhỏ nhưng kích thước khổng lồ)
+// - xoay/lật theo thẻ EXIF Orientation của JPEG (ảnh chụp dọc từ điện thoại lưu pixel nằm ngang)
+final class ImageDecoding {
+
+    static final long MAX_SOURCE_PIXELS = 40_000_000L;
+
+    private static final int EXIF_ORIENTATION_TAG = 0x0112;
+
+    private ImageDecoding() {
+    }
+
+    // null nếu ImageIO không đọc được định dạng; IllegalArgumentException nếu vượt MAX_SOURCE_PIXELS
+    static BufferedImage decode(byte[] data) throws IOException {
+        BufferedImage image;
+        try (ImageInputStream iis = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            if (iis == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > MAX_SOURCE_PIXELS) {
+                    throw new IllegalArgumentException("Ảnh có kích thước quá lớn");
+                }
+                image = reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+        return applyOrientation(image, exifOrientation(data));
+    }
+
+    // Giá trị thẻ Orientation (1..8) trong segment APP1 "Exif" của JPEG; 1 nếu không có
+    static int exifOrientation(byte[] data) {
+        if (data.length < 4 || (data[0] & 0xFF) != 0xFF || (data[1] & 0xFF) != 0xD8) {
+            return 1;
+        }
+        int pos = 2;
+        while (pos + 4 <= data.length && (data[pos] & 0xFF) == 0xFF) {
+            int marker = data[pos + 1] & 0xFF;
+            // SOS: phần dữ liệu ảnh bắt đầu, không còn metadata phía sau
+            if (marker == 0xDA || marker == 0xD9) {
+                return 1;
+            }
+            int length = readShort(data, pos + 2, false);
+            int segment = pos + 4;
+            if (length < 2 || segment + length - 2 > data.length) {
+                return 1;
+            }
+            if (marker == 0xE1 && length >= 8 && data[segment] == 'E' && data[segment + 1] == 'x'
+                    && data[segment + 2] == 'i' && data[segment + 3] == 'f' && data[segment + 4] == 0 && data[segment + 5] == 0) {
+                return orientationFromTiff(data, segment + 6, segment + length - 2);
+            }
+            pos = segment + length - 2;
+        }
+        return 1;
+    }
+
+    private static int orientationFromTiff(byte[] data, int tiff, int end) {
+        if (tiff + 8 > end) {
+            return 1;
+        }
+        boolean littleEndian;
+        if (data[tiff] == 'I' && data[tiff + 1] == 'I') {
+            littleEndian = true;
+        } else if (data[tiff] == 'M' && data[tiff + 1] == 'M') {
+            littleEndian = false;
+        } else {
+            return 1;
+        }
+        long ifdOffset = readInt(data, tiff + 4, littleEndian) & 0xFFFFFFFFL;
+        int ifd = tiff + (int) Math.min(ifdOffset, Integer.MAX_VALUE - tiff);
+        if (ifdOffset < 8 || ifd + 2 > end) {
+            return 1;
+        }
+        int entries = readShort(data, ifd, littleEndian);
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if (entry + 12 > end) {
+                return 1;
+            }
+            if (readShort(data, entry, littleEndian) == EXIF_ORIENTATION_TAG) {
+                int value = readShort(data, entry + 8, littleEndian);
+                return value >= 1 && value <= 8 ? value : 1;
+            }
+        }
+        return 1;
+    }
+
+    // Đưa ảnh về hướng hiển thị đúng; orientation 5..8 đổi chỗ chiều rộng và chiều cao
+    static BufferedImage applyOrientation(BufferedImage image, int orientation) {
+        if (image == null || orientation <= 1 || orientation > 8) {
+            return image;
+        }
+        int w = image.getWidth();
+        int h = image.getHeight();
+        // Ánh xạ (x, y) của ảnh gốc sang ảnh đích: AffineTransform(m00, m10, m01, m11, m02, m12)
+        AffineTransform transform = switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, w, 0);
+            case 3 -> new AffineTransform(-1, 0, 0, -1, w, h);
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, h);
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);
+            case 6 -> new AffineTransform(0, 1, -1, 0, h, 0);
+            case 7 -> new AffineTransform(0, -1, -1, 0, h, w);
+            default -> new AffineTransform(0, -1, 1, 0, 0, w);
+        };
+        boolean swap = orientation >= 5;
+        boolean hasAlpha = image.getColorModel().hasAlpha();
+        BufferedImage rotated = new BufferedImage(swap ? h : w, swap ? w : h,
+                hasAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rotated.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        g.drawImage(image, transform, null);
+        g.dispose();
+        return rotated;
+    }
+
+    private static int readShort(byte[] data, int pos, boolean littleEndian) {
+        int a = data[pos] & 0xFF;
+        int b = data[pos + 1] & 0xFF;
+        return littleEndian ? (b << 8) | a : (a << 8) | b;
+    }
+
+    private static int readInt(byte[] data, int pos, boolean littleEndian) {
+        int hi = readShort(data, littleEndian ? pos + 2 : pos, littleEndian);
+        int lo = readShort(data, littleEndian ? pos : pos + 2, littleEndian);
+        return (hi << 16) | lo;
+    }
+}
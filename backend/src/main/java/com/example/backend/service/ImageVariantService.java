@@ -0,0 +1,309 @@
+package com.example.backend.service;
+
+import com.example.backend.storage.BlobStore;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Tạo ảnh thu nhỏ (160/480/1080px) cho ảnh bài viết bằng javax.imageio, chạy nền trên pool giới hạn.
+// Được gọi sau khi upload ảnh commit; ảnh cũ có thể tạo bù bằng image.variants.backfill-on-startup=true.
+// /api/posts/image/{id}?w= chọn variant nhỏ nhất có chiều rộng >= w, không có thì trả ảnh gốc
+@Service
+public class ImageVariantService {
+
+    public static final int[] WIDTHS = {160, 480, 1080};
+    private static final float JPEG_QUALITY = 0.85f;
+    // Kết quả thêm dòng variant
+    private static final int VARIANT_INSERTED = 1;
+    private static final int VARIANT_EXISTS = 0;
+    private static final int IMAGE_GONE = -1;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private BlobRefService blobRefService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${image.variants.enabled:true}")
+    private boolean enabled;
+
+    @Value("${image.variants.backfill-on-startup:false}")
+    private boolean backfillOnStartup;
+
+    // Resize tốn CPU và bộ nhớ (ảnh 5MB giải mã ra vài chục MB) => ít luồng, hàng đợi có giới hạn
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            2, 2, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1000),
+            runnable -> {
+                Thread thread = new Thread(runnable, "image-variants");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    public record Variant(String storageKey, String contentType, long contentLength, int width) {
+    }
+
+    // Đưa ảnh vào hàng đợi tạo variant sau khi transaction upload commit (ảnh gốc đã nhìn thấy được)
+    public void scheduleAfterCommit(long imageId) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(imageId);
+                }
+            });
+        } else {
+            submit(imageId);
+        }
+    }
+
+    // Variant nhỏ nhất có chiều rộng >= requestedWidth; null => dùng ảnh gốc
+    public Variant findVariant(long imageId, int requestedWidth) {
+        List<Object[]> rows = entityManager.createNativeQuery(
+                        "SELECT storage_key, content_type, content_length, width FROM posts_image_variant " +
+                        "WHERE image_id = :imageId AND width >= :width ORDER BY width ASC LIMIT 1")
+                .setParameter("imageId", imageId)
+                .setParameter("width", requestedWidth)
+                .getResultList();
+        if (rows.isEmpty()) {
+            return null;
+        }
+        Object[] row = rows.get(0);
+        return new Variant((String) row[0], (String) row[1], ((Number) row[2]).longValue(), ((Number) row[3]).intValue());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (!enabled || !backfillOnStartup) {
+            return;
+        }
+        List<Number> imageIds = new TransactionTemplate(transactionManager).execute(status -> entityManager.createNativeQuery(
+                        "SELECT i.id FROM posts_image i WHERE NOT EXISTS " +
+                        "(SELECT 1 FROM posts_image_variant v WHERE v.image_id = i.id) ORDER BY i.id DESC")
+                .getResultList());
+        if (imageIds == null) {
+            return;
+        }
+        for (Number imageId : imageIds) {
+            // Hàng đợi đầy thì dừng, lần khởi động sau tiếp tục với phần còn lại
+            if (!submit(imageId.longValue())) {
+                System.err.println("Hàng đợi tạo ảnh thu nhỏ đã đầy, dừng backfill");
+                return;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private boolean submit(long imageId) {
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(imageId);
+                } catch (Exception ex) {
+                    System.err.println("Lỗi khi tạo ảnh thu nhỏ cho ảnh " + imageId + ": " + ex.getMessage());
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException ex) {
+            return false;
+        }
+    }
+
+    // Ảnh gốc đã giải mã kèm số byte gốc (sau giải nén) để so với kích thước variant
+    private record Original(BufferedImage image, long byteLength) {
+    }
+
+    private void generate(long imageId) throws IOException {
+        Original source = readOriginal(imageId);
+        if (source == null) {
+            // Định dạng ImageIO không đọc được (vd: WebP) => luôn trả ảnh gốc
+            return;
+        }
+        BufferedImage original = source.image();
+        boolean hasAlpha = original.getColorModel().hasAlpha();
+        String contentType = hasAlpha ? "image/png" : "image/jpeg";
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        for (int width : WIDTHS) {
+            if (width >= original.getWidth()) {
+                break;
+            }
+            int height = Math.max(1, Math.round((float) original.getHeight() * width / original.getWidth()));
+            byte[] encoded = encode(scale(original, width, height, hasAlpha), hasAlpha);
+            if (encoded.length >= source.byteLength()) {
+                // Ảnh gốc đã nén tốt (vd: JPEG chất lượng thấp, PNG ít màu): variant không nhỏ hơn thì trả luôn ảnh gốc.
+                // Các chiều rộng lớn hơn còn nặng hơn => dừng
+                break;
+            }
+            String storageKey = blobStore.put(encoded);
+            int result;
+            try {
+                result = insertVariant(tx, imageId, width, height, contentType, storageKey, encoded.length);
+            } catch (RuntimeException ex) {
+                // Blob đã ghi nhưng không có dòng variant => để sweep dọn
+                markUnreferenced(tx, storageKey);
+                throw ex;
+            }
+            if (result != VARIANT_INSERTED) {
+                // Ảnh bị xóa trong lúc đang resize, hoặc đã có variant cùng chiều rộng (tạo trùng/backfill):
+                // blob vừa ghi không ai tham chiếu => để sweep dọn (blob dùng chung ở chỗ khác thì giữ nguyên số đếm)
+                markUnreferenced(tx, storageKey);
+                if (result == IMAGE_GONE) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private int insertVariant(TransactionTemplate tx, long imageId, int width, int height, String contentType,
+                              String storageKey, long contentLength) {
+        Integer result = tx.execute(status -> {
+            // Khóa chia sẻ dòng ảnh tới khi commit: deletePost khóa ghi các dòng này trước khi đếm tham chiếu và
+            // xóa variant => hoặc bài bị xóa sau (và thấy variant này), hoặc ở đây thấy ảnh đã mất
+            List<?> image = entityManager.createNativeQuery(
+                            "SELECT id FROM posts_image WHERE id = :imageId FOR SHARE")
+                    .setParameter("imageId", imageId)
+                    .getResultList();
+            if (image.isEmpty()) {
+                return IMAGE_GONE;
+            }
+            int inserted = entityManager.createNativeQuery(
+                            "INSERT IGNORE INTO posts_image_variant (image_id, width, height, content_type, storage_key, content_length) " +
+                            "SELECT :imageId, :width, :height, :contentType, :storageKey, :contentLength FROM DUAL " +
+                            "WHERE EXISTS (SELECT 1 FROM posts_image WHERE id = :imageId)")
+                    .setParameter("imageId", imageId)
+                    .setParameter("width", width)
+                    .setParameter("height", height)
+                    .setParameter("contentType", contentType)
+                    .setParameter("storageKey", storageKey)
+                    .setParameter("contentLength", contentLength)
+                    .executeUpdate();
+            if (inserted == 0) {
+                return VARIANT_EXISTS;
+            }
+            blobRefService.acquire(storageKey);
+            return VARIANT_INSERTED;
+        });
+        return result != null ? result : VARIANT_EXISTS;
+    }
+
+    private void markUnreferenced(TransactionTemplate tx, String storageKey) {
+        try {
+            tx.executeWithoutResult(status -> blobRefService.markUnreferenced(storageKey));
+        } catch (RuntimeException ex) {
+            System.err.println("Lỗi khi đánh dấu blob ảnh thu nhỏ " + storageKey + ": " + ex.getMessage());
+        }
+    }
+
+    private Original readOriginal(long imageId) throws IOException {
+        List<Object[]> rows = new TransactionTemplate(transactionManager).execute(status -> entityManager.createNativeQuery(
+                        "SELECT storage_key, codec FROM posts_image WHERE id = :id")
+                .setParameter("id", imageId)
+                .getResultList());
+        if (rows == null || rows.isEmpty()) {
+            return null;
+        }
+        String storageKey = (String) rows.get(0)[0];
+        InputStream stored;
+        if (storageKey != null) {
+            stored = blobStore.getResource(storageKey).getInputStream();
+        } else {
+            byte[] legacyData = new TransactionTemplate(transactionManager).execute(status -> (byte[]) entityManager
+                    .createNativeQuery("SELECT image_data FROM posts_image WHERE id = :id")
+                    .setParameter("id", imageId)
+                    .getSingleResult());
+            if (legacyData == null) {
+                return null;
+            }
+            stored = new ByteArrayInputStream(legacyData);
+        }
+        byte[] data;
+        try (InputStream in = CompressionPolicy.isDeflated((String) rows.get(0)[1], true)
+                ? CompressService.inflatingStream(stored)
+                : stored) {
+            data = in.readAllBytes();
+        }
+        // Kiểm tra kích thước pixel trước khi giải mã + xoay theo EXIF (ảnh gốc vẫn giữ nguyên byte)
+        BufferedImage image = ImageDecoding.decode(data);
+        return image != null ? new Original(image, data.length) : null;
+    }
+
+    // Thu nhỏ từng nửa kích thước rồi nội suy bilinear bước cuối: chất lượng gần bicubic, nhanh hơn nhiều
+    static BufferedImage scale(BufferedImage source, int width, int height, boolean hasAlpha) {
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        do {
+            int nextWidth = Math.max(width, currentWidth / 2);
+            int nextHeight = Math.max(height, currentHeight / 2);
+            BufferedImage next = new BufferedImage(nextWidth, nextHeight,
+                    hasAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = next.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(current, 0, 0, nextWidth, nextHeight, null);
+            g.dispose();
+            current = next;
+            currentWidth = nextWidth;
+            currentHeight = nextHeight;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    static byte[] encode(BufferedImage image, boolean hasAlpha) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (hasAlpha) {
+            ImageIO.write(image, "png", out);
+            return out.toByteArray();
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,306 @@
+package com.example.backend.service;
+
+import com.example.backend.util.LongHashSet;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Chế độ ghi like/unlike dồn lô (like.write-behind.enabled=true):
+// - Request chỉ ghi trạng thái mới nhất của (bài viết/bình luận, user) vào bộ nhớ, chia stripe để giảm tranh chấp khóa
+// - Flusher chạy mỗi flush-interval-ms: INSERT IGNORE / DELETE các dòng like và cộng 1 lần delta ròng vào likes_count
+//   cho mỗi bài viết/bình luận, thay vì mỗi lượt like khóa dòng posts/comments một lần
+// - Tắt ứng dụng bình thường sẽ flush hết (@PreDestroy); nếu process chết đột ngột chỉ mất các trạng thái chưa ghi,
+//   tối đa like.write-behind.max-pending trạng thái
+// - Ghi lỗi: lô được trả về bộ đệm và thử lại với thời gian chờ tăng dần, không bao giờ bỏ.
+//   Bộ đệm đầy (DB chậm/lỗi kéo dài) thì record() từ chối trạng thái mới, caller ghi đồng bộ qua SP như khi tắt ghi dồn lô
+@Service
+public class LikeBufferService {
+
+    public enum Target {
+        POST("post_likes", "post_id", "posts"),
+        COMMENT("comment_likes", "comment_id", "comments");
+
+        private final String likeTable;
+        private final String targetColumn;
+        private final String counterTable;
+
+        Target(String likeTable, String targetColumn, String counterTable) {
+            this.likeTable = likeTable;
+            this.targetColumn = targetColumn;
+            this.counterTable = counterTable;
+        }
+    }
+
+    private record LikeKey(Target target, long targetId, long userId) {
+    }
+
+    private static final int STRIPES = 32;
+    private static final int MAX_ROWS_PER_STATEMENT = 500;
+    private static final long MAX_RETRY_DELAY_MS = 30_000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private FeedCacheService feedCacheService;
+
+    @Autowired
+    private PostCounterService postCounterService;
+
+    @Value("${like.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${like.write-behind.flush-interval-ms:300}")
+    private long flushIntervalMs;
+
+    @Value("${like.write-behind.max-pending:100000}")
+    private int maxPending;
+
+    private final Object[] stripeLocks = new Object[STRIPES];
+    private final List<Map<LikeKey, Boolean>> stripes = new ArrayList<>(STRIPES);
+    // Lô đang được ghi xuống DB: vẫn phải nhìn thấy khi gắn cờ is_liked cho tới khi commit xong
+    private volatile Map<LikeKey, Boolean> inFlight = Map.of();
+    // Số trạng thái đang nằm trong các stripe (không tính lô in-flight)
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final Object flushLock = new Object();
+    // Số lần ghi lỗi liên tiếp và thời điểm được thử lại (chỉ đọc/ghi trong flushLock)
+    private int failedAttempts;
+    private long retryAtMillis;
+
+    public LikeBufferService() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripeLocks[i] = new Object();
+            stripes.add(new HashMap<>());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Kiểm tra trước khi ghi nhận như SP vẫn làm: bài viết đọc qua bộ đếm trong bộ nhớ, bình luận tra theo khóa chính
+    public boolean targetExists(Target target, long targetId) {
+        if (target == Target.POST) {
+            return postCounterService.get(targetId) != null;
+        }
+        return !entityManager.createNativeQuery("SELECT 1 FROM comments WHERE id = :id")
+                .setParameter("id", targetId)
+                .getResultList()
+                .isEmpty();
+    }
+
+    // Ghi nhận trạng thái like mới nhất; like rồi unlike trong cùng chu kỳ sẽ triệt tiêu khi flush.
+    // Trả về false khi bộ đệm đầy và cặp (đối tượng, user) chưa có trạng thái chờ => caller phải ghi đồng bộ.
+    // Cặp đã có trạng thái chờ (trong stripe hoặc lô in-flight) luôn được nhận để thứ tự ghi không bị đảo
+    public boolean record(Target target, long targetId, long userId, boolean liked) {
+        LikeKey key = new LikeKey(target, targetId, userId);
+        int stripe = stripeOf(key);
+        synchronized (stripeLocks[stripe]) {
+            Map<LikeKey, Boolean> states = stripes.get(stripe);
+            if (states.containsKey(key)) {
+                states.put(key, liked);
+                return true;
+            }
+            if (pendingCount.get() >= maxPending && !inFlight.containsKey(key)) {
+                return false;
+            }
+            states.put(key, liked);
+            pendingCount.incrementAndGet();
+            return true;
+        }
+    }
+
+    // Trạng thái chưa ghi xuống DB của user với đối tượng này (null nếu không có)
+    public Boolean pendingState(Target target, long targetId, long userId) {
+        LikeKey key = new LikeKey(target, targetId, userId);
+        int stripe = stripeOf(key);
+        Boolean state;
+        synchronized (stripeLocks[stripe]) {
+            state = stripes.get(stripe).get(key);
+        }
+        return state != null ? state : inFlight.get(key);
+    }
+
+    // Gộp trạng thái đang chờ ghi vào tập id đã like đọc từ DB
+    public LongHashSet applyPending(Target target, Long userId, List<Long> targetIds, LongHashSet persistedLikedIds) {
+        if (!enabled || userId == null || targetIds.isEmpty()) {
+            return persistedLikedIds;
+        }
+        LongHashSet likedIds = new LongHashSet(targetIds.size());
+        boolean changed = false;
+        for (Long targetId : targetIds) {
+            boolean persisted = persistedLikedIds.contains(targetId);
+            Boolean pending = pendingState(target, targetId, userId);
+            boolean liked = pending != null ? pending : persisted;
+            changed |= liked != persisted;
+            if (liked) {
+                likedIds.add(targetId);
+            }
+        }
+        return changed ? likedIds : persistedLikedIds;
+    }
+
+    @Scheduled(fixedDelayString = "${like.write-behind.flush-interval-ms:300}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (flushLock) {
+            if (failedAttempts > 0 && System.currentTimeMillis() < retryAtMillis) {
+                return;
+            }
+            Map<LikeKey, Boolean> batch = drain();
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                Map<Long, Long> postDeltas = new TransactionTemplate(transactionManager).execute(status -> writeBatch(batch));
+                failedAttempts = 0;
+                if (postDeltas != null) {
+                    postDeltas.forEach((postId, delta) -> {
+                        feedCacheService.evictAfterLikeChange(postId);
+                        postCounterService.addLikes(postId, delta);
+                    });
+                }
+            } catch (Exception ex) {
+                // Trả lô về bộ đệm để thử lại sau interval * 2^n; trạng thái mới hơn (ghi trong lúc flush) được giữ nguyên
+                failedAttempts++;
+                long delay = Math.min(flushIntervalMs << Math.min(failedAttempts, 16), MAX_RETRY_DELAY_MS);
+                retryAtMillis = System.currentTimeMillis() + delay;
+                System.err.println("Lỗi khi ghi like dồn lô (lần " + failedAttempts + "), thử lại " + batch.size()
+                        + " trạng thái sau " + delay + "ms: " + ex.getMessage());
+                requeue(batch);
+            } finally {
+                inFlight = Map.of();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        synchronized (flushLock) {
+            retryAtMillis = 0;
+        }
+        flush();
+    }
+
+    // Chuyển từng stripe sang lô in-flight; key được đưa vào inFlight trước khi rời stripe nên luôn nhìn thấy được
+    private Map<LikeKey, Boolean> drain() {
+        Map<LikeKey, Boolean> batch = new ConcurrentHashMap<>();
+        inFlight = batch;
+        for (int i = 0; i < STRIPES; i++) {
+            synchronized (stripeLocks[i]) {
+                Map<LikeKey, Boolean> stripe = stripes.get(i);
+                if (!stripe.isEmpty()) {
+                    batch.putAll(stripe);
+                    stripes.set(i, new HashMap<>());
+                    pendingCount.addAndGet(-stripe.size());
+                }
+            }
+        }
+        return batch;
+    }
+
+    // Lô lỗi luôn được nhận lại kể cả khi vượt max-pending (tổng bộ đệm tối đa 2 * max-pending)
+    private void requeue(Map<LikeKey, Boolean> batch) {
+        for (Map.Entry<LikeKey, Boolean> entry : batch.entrySet()) {
+            int stripe = stripeOf(entry.getKey());
+            synchronized (stripeLocks[stripe]) {
+                if (stripes.get(stripe).putIfAbsent(entry.getKey(), entry.getValue()) == null) {
+                    pendingCount.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    // Ghi cả lô trong 1 transaction; trả về delta likes_count của các bài viết có thay đổi
+    private Map<Long, Long> writeBatch(Map<LikeKey, Boolean> batch) {
+        Map<LikeKey, List<Long>> likersByTarget = new HashMap<>();
+        Map<LikeKey, List<Long>> unlikersByTarget = new HashMap<>();
+        for (Map.Entry<LikeKey, Boolean> entry : batch.entrySet()) {
+            LikeKey key = entry.getKey();
+            // Gom theo (loại, id đối tượng): userId = 0 chỉ dùng làm khóa nhóm
+            LikeKey group = new LikeKey(key.target(), key.targetId(), 0L);
+            (entry.getValue() ? likersByTarget : unlikersByTarget)
+                    .computeIfAbsent(group, k -> new ArrayList<>())
+                    .add(key.userId());
+        }
+        Map<LikeKey, Long> deltas = new HashMap<>();
+        likersByTarget.forEach((group, userIds) -> deltas.merge(group, (long) insertLikes(group, userIds), Long::sum));
+        unlikersByTarget.forEach((group, userIds) -> deltas.merge(group, -(long) deleteLikes(group, userIds), Long::sum));
+
+        Map<Long, Long> postDeltas = new HashMap<>();
+        for (Map.Entry<LikeKey, Long> entry : deltas.entrySet()) {
+            long delta = entry.getValue();
+            if (delta == 0) {
+                continue;
+            }
+            Target target = entry.getKey().target();
+            // Mỗi đối tượng chỉ bị khóa dòng 1 lần cho cả chu kỳ
+            entityManager.createNativeQuery("UPDATE " + target.counterTable +
+                            " SET likes_count = GREATEST(likes_count + :delta, 0) WHERE id = :id")
+                    .setParameter("delta", delta)
+                    .setParameter("id", entry.getKey().targetId())
+                    .executeUpdate();
+            if (target == Target.POST) {
+                postDeltas.put(entry.getKey().targetId(), delta);
+            }
+        }
+        return postDeltas;
+    }
+
+    // INSERT IGNORE nhiều dòng: số dòng thực sự thêm mới chính là delta dương (like trùng bị bỏ qua).
+    // Chỉ lấy user còn tồn tại và đối tượng còn tồn tại lúc ghi (có thể bị xóa sau khi được ghi nhận)
+    // => một dòng không hợp lệ không làm hỏng cả lô
+    private int insertLikes(LikeKey group, List<Long> userIds) {
+        Target target = group.target();
+        int inserted = 0;
+        for (int from = 0; from < userIds.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<Long> chunk = userIds.subList(from, Math.min(from + MAX_ROWS_PER_STATEMENT, userIds.size()));
+            inserted += entityManager.createNativeQuery("INSERT IGNORE INTO " + target.likeTable +
+                            " (" + target.targetColumn + ", liker_id, created_at) " +
+                            "SELECT :targetId, u.id, NOW() FROM users u WHERE u.id IN (:userIds) " +
+                            "AND EXISTS (SELECT 1 FROM " + target.counterTable + " t WHERE t.id = :targetId)")
+                    .setParameter("targetId", group.targetId())
+                    .setParameter("userIds", chunk)
+                    .executeUpdate();
+        }
+        return inserted;
+    }
+
+    private int deleteLikes(LikeKey group, List<Long> userIds) {
+        Target target = group.target();
+        int deleted = 0;
+        for (int from = 0; from < userIds.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<Long> chunk = userIds.subList(from, Math.min(from + MAX_ROWS_PER_STATEMENT, userIds.size()));
+            deleted += entityManager.createNativeQuery("DELETE FROM " + target.likeTable +
+                            " WHERE " + target.targetColumn + " = :targetId AND liker_id IN (:userIds)")
+                    .setParameter("targetId", group.targetId())
+                    .setParameter("userIds", chunk)
+                    .executeUpdate();
+        }
+        return deleted;
+    }
+
+    private int stripeOf(LikeKey key) {
+        long h = key.targetId() * 31 + key.userId();
+        h ^= (h >>> 32);
+        return (int) ((h ^ (h >>> 16)) & (STRIPES - 1));
+    }
+}
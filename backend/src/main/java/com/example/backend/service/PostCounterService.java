@@ -0,0 +1,247 @@
+package com.example.backend.service;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Bộ đếm likes_count / comment_count trong bộ nhớ theo post id (LongAdder: nhiều luồng cộng đồng thời không tranh chấp).
+// Nạp từ bảng posts khi cần (và khi khởi động), cộng/trừ sau khi like/comment commit,
+// định kỳ đối chiếu lại với DB để sửa sai lệch (SP xử lý trùng, xóa comment kèm reply, ...)
+@Service
+public class PostCounterService {
+
+    private static final int MAX_IDS_PER_QUERY = 500;
+    // Khi đầy, bỏ 10% bộ đếm lâu không được đọc nhất một lần => chi phí sắp xếp chia đều cho nhiều lần nạp
+    private static final double EVICT_FRACTION = 0.1;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${post.counters.max-entries:100000}")
+    private int maxEntries;
+
+    @Value("${post.counters.warm-size:1000}")
+    private int warmSize;
+
+    private final ConcurrentHashMap<Long, Counters> countersByPost = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private static final class Counters {
+        final LongAdder likes = new LongAdder();
+        final LongAdder comments = new LongAdder();
+        // Tăng mỗi lần cộng/trừ: đối chiếu chỉ ghi đè khi không có thay đổi xen giữa lúc đọc DB
+        final AtomicLong version = new AtomicLong();
+        // Lần đọc gần nhất (nanoTime) để chọn bộ đếm "nguội" khi cần giải phóng chỗ
+        volatile long lastAccess = System.nanoTime();
+
+        Counters(long likes, long comments) {
+            this.likes.add(likes);
+            this.comments.add(comments);
+        }
+
+        void reset(long likesCount, long commentCount) {
+            likes.reset();
+            likes.add(likesCount);
+            comments.reset();
+            comments.add(commentCount);
+        }
+    }
+
+    public record PostCounts(long likesCount, long commentCount) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            List<Object[]> rows = entityManager.createNativeQuery(
+                            "SELECT id, likes_count, comment_count FROM posts ORDER BY created_at DESC, id DESC LIMIT :limit")
+                    .setParameter("limit", warmSize)
+                    .getResultList();
+            for (Object[] row : rows) {
+                seed(((Number) row[0]).longValue(), row[1], row[2]);
+            }
+        } catch (Exception ex) {
+            System.err.println("Không thể nạp trước bộ đếm bài viết: " + ex.getMessage());
+        }
+    }
+
+    // null nếu bài viết không tồn tại
+    public PostCounts get(long postId) {
+        Counters counters = countersByPost.get(postId);
+        if (counters == null) {
+            List<Object[]> rows = entityManager.createNativeQuery(
+                            "SELECT likes_count, comment_count FROM posts WHERE id = :postId")
+                    .setParameter("postId", postId)
+                    .getResultList();
+            if (rows.isEmpty()) {
+                return null;
+            }
+            counters = seed(postId, rows.get(0)[0], rows.get(0)[1]);
+        }
+        counters.lastAccess = System.nanoTime();
+        return new PostCounts(counters.likes.sum(), counters.comments.sum());
+    }
+
+    // Giá trị bộ đếm của bài viết vừa đọc từ DB; chưa có bộ đếm thì nạp từ chính giá trị đó
+    public PostCounts resolve(long postId, Object likesCount, Object commentCount) {
+        Counters counters = seed(postId, likesCount, commentCount);
+        return new PostCounts(counters.likes.sum(), counters.comments.sum());
+    }
+
+    // Ghi đè likes_count/comment_count của trang feed bằng giá trị bộ đếm; bài chưa có bộ đếm được nạp từ chính dòng vừa đọc
+    public void applyCounts(List<Map<String, Object>> posts) {
+        for (Map<String, Object> post : posts) {
+            long postId = ((Number) post.get("id")).longValue();
+            Counters counters = countersByPost.get(postId);
+            if (counters == null) {
+                seed(postId, post.get("likes_count"), post.get("comment_count"));
+                continue;
+            }
+            counters.lastAccess = System.nanoTime();
+            post.put("likes_count", counters.likes.sum());
+            post.put("comment_count", counters.comments.sum());
+        }
+    }
+
+    public void addLikes(long postId, long delta) {
+        afterCommit(() -> add(postId, delta, 0));
+    }
+
+    public void addComments(long postId, long delta) {
+        afterCommit(() -> add(postId, 0, delta));
+    }
+
+    // Dùng khi không biết chính xác delta (xóa bài, xóa comment kèm reply): lần đọc sau nạp lại từ DB
+    public void evict(long postId) {
+        afterCommit(() -> countersByPost.remove(postId));
+    }
+
+    @Scheduled(fixedDelayString = "${post.counters.reconcile-interval-ms:60000}",
+            initialDelayString = "${post.counters.reconcile-interval-ms:60000}")
+    public void reconcile() {
+        evictColdEntries();
+        List<Long> postIds = new ArrayList<>(countersByPost.keySet());
+        for (int from = 0; from < postIds.size(); from += MAX_IDS_PER_QUERY) {
+            List<Long> chunk = postIds.subList(from, Math.min(from + MAX_IDS_PER_QUERY, postIds.size()));
+            try {
+                reconcileChunk(chunk);
+            } catch (Exception ex) {
+                System.err.println("Lỗi khi đối chiếu bộ đếm bài viết: " + ex.getMessage());
+                return;
+            }
+        }
+    }
+
+    private void reconcileChunk(Collection<Long> postIds) {
+        Map<Long, Long> versions = new HashMap<>(postIds.size() * 2);
+        for (Long postId : postIds) {
+            Counters counters = countersByPost.get(postId);
+            if (counters != null) {
+                versions.put(postId, counters.version.get());
+            }
+        }
+        List<Object[]> rows = entityManager.createNativeQuery(
+                        "SELECT id, likes_count, comment_count FROM posts WHERE id IN (:postIds)")
+                .setParameter("postIds", postIds)
+                .getResultList();
+        for (Object[] row : rows) {
+            long postId = ((Number) row[0]).longValue();
+            Counters counters = countersByPost.get(postId);
+            Long readVersion = versions.remove(postId);
+            if (counters == null || readVersion == null) {
+                continue;
+            }
+            synchronized (counters) {
+                if (counters.version.get() == readVersion) {
+                    counters.reset(toLong(row[1]), toLong(row[2]));
+                }
+            }
+        }
+        // Bài viết không còn trong DB
+        for (Long postId : versions.keySet()) {
+            countersByPost.remove(postId);
+        }
+    }
+
+    private void add(long postId, long likesDelta, long commentsDelta) {
+        Counters counters = countersByPost.get(postId);
+        if (counters == null) {
+            // Chưa nạp: lần đọc sau lấy giá trị đã commit từ DB
+            return;
+        }
+        // Cùng monitor với reconcileChunk: delta không thể rơi vào giữa lúc kiểm tra version và reset()
+        synchronized (counters) {
+            counters.version.incrementAndGet();
+            counters.likes.add(likesDelta);
+            counters.comments.add(commentsDelta);
+        }
+    }
+
+    private Counters seed(long postId, Object likesCount, Object commentCount) {
+        Counters counters = countersByPost.computeIfAbsent(postId, id -> new Counters(toLong(likesCount), toLong(commentCount)));
+        counters.lastAccess = System.nanoTime();
+        if (countersByPost.size() > maxEntries) {
+            evictColdEntries();
+        }
+        return counters;
+    }
+
+    // Giữ map trong giới hạn maxEntries: bỏ các bộ đếm lâu không được đọc nhất (lần đọc sau nạp lại từ DB).
+    // Chỉ một luồng dọn tại một thời điểm; luồng khác vẫn nạp được, map vượt giới hạn tạm thời một chút
+    private void evictColdEntries() {
+        int size = countersByPost.size();
+        if (size <= maxEntries || !evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int target = Math.max(0, maxEntries - (int) (maxEntries * EVICT_FRACTION));
+            List<Map.Entry<Long, Long>> byAccess = new ArrayList<>(size);
+            for (Map.Entry<Long, Counters> entry : countersByPost.entrySet()) {
+                byAccess.add(Map.entry(entry.getKey(), entry.getValue().lastAccess));
+            }
+            int excess = byAccess.size() - target;
+            if (excess <= 0) {
+                return;
+            }
+            byAccess.sort((a, b) -> Long.compare(a.getValue(), b.getValue()));
+            for (int i = 0; i < excess; i++) {
+                countersByPost.remove(byAccess.get(i).getKey());
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private long toLong(Object v) {
+        return v instanceof Number ? ((Number) v).longValue() : 0L;
+    }
+}
@@ -6,11 +6,25 @@ import com.example.backend.dto.common.ApiResponseDTO;
 import com.example.backend.repository.PostRepository;
 import com.example.backend.repository.PostImageRepository;
 import com.example.backend.repository.PostFileRepository;
+import com.example.backend.search.SearchCacheService;
+import com.example.backend.search.SearchIndexService;
+import com.example.backend.search.SuggestService;
+import com.example.backend.storage.BlobStore;
+import com.example.backend.util.AvatarUrls;
+import com.example.backend.util.CursorCodec;
+import com.example.backend.util.ETags;
+import jakarta.annotation.PreDestroy;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.PersistenceException;
+import jakarta.persistence.Query;
 import jakarta.persistence.StoredProcedureQuery;
+import org.hibernate.Session;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
@@ -18,14 +32,28 @@ import org.springframework.web.multipart.MultipartFile;
 import javax.sql.rowset.serial.SerialBlob;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import com.example.backend.dto.response.PostImageDTO;
-import com.example.backend.dto.response.PostFileDTO;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import com.example.backend.dto.response.AttachmentContentDTO;
+import com.example.backend.dto.response.PostDetailDTO;
 import com.example.backend.entity.PostImage;
 import com.example.backend.entity.Post;
 
@@ -44,6 +72,106 @@ public class PostService {
     @Autowired
     private PostFileRepository postFileRepository;
 
+    @Autowired
+    private FeedCacheService feedCacheService;
+
+    @Autowired
+    private ViewerStateService viewerStateService;
+
+    @Autowired
+    private LikeBufferService likeBufferService;
+
+    @Autowired
+    private PostCounterService postCounterService;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    @Autowired
+    private BlobRefService blobRefService;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
+    @Autowired
+    private SuggestService suggestService;
+
+    @Autowired
+    private SearchTrackingService searchTrackingService;
+
+    @Autowired
+    private SearchCacheService searchCacheService;
+
+    private static final int MAX_FEED_PAGE_SIZE = 50;
+
+    // Tìm kiếm theo offset: trang sâu hơn mức này trả về rỗng (top-K của chỉ mục tỉ lệ với offset + limit)
+    private static final int MAX_SEARCH_OFFSET = 10_000;
+
+    private static final long MAX_ATTACHMENT_SIZE = 5 * 1024 * 1024;
+
+    private static final List<String> ALLOWED_IMAGE_TYPES = List.of(
+            "image/jpeg", "image/png", "image/gif", "image/bmp", "image/webp");
+
+    private static final List<String> ALLOWED_FILE_TYPES = List.of(
+            "application/pdf",
+            "application/msword",
+            "application/vnd.openxmlformats-officedocument.wordprocessingml.document",
+            "application/vnd.ms-excel",
+            "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet",
+            "application/vnd.ms-powerpoint",
+            "application/vnd.openxmlformats-officedocument.presentationml.presentation",
+            "text/plain",
+            "application/zip",
+            "application/x-rar-compressed",
+            "image/png",
+            "image/jpeg",
+            "image/jpg");
+
+    @Value("${attachments.batch.max-files:20}")
+    private int maxBatchAttachments;
+
+    // Ghi blob cho upload nhiều file (I/O đĩa + deflate): vài luồng là đủ, hàng đợi có giới hạn;
+    // hàng đợi đầy thì luồng request tự ghi (CallerRunsPolicy) thay vì từ chối
+    private final ThreadPoolExecutor attachmentExecutor = new ThreadPoolExecutor(
+            4, 4, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(64),
+            runnable -> {
+                Thread thread = new Thread(runnable, "attachment-upload");
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.CallerRunsPolicy());
+
+    // Cùng thứ tự cột với các SP feed (sp_get_posts_by_category, sp_get_user_posts, ...) để dùng chung convertPostsToKeyValue.
+    // Không phụ thuộc người xem: is_liked/is_saved được gắn sau bởi ViewerStateService
+    private static final String FEED_SELECT =
+            "SELECT p.id, p.title, p.content, p.likes_count, p.comment_count, p.created_at, " +
+            "u.name AS user_name, u.avatar AS user_avatar, p.author_id, 0 AS is_liked, 0 AS is_saved " +
+            "FROM posts p JOIN users u ON u.id = p.author_id ";
+
+    // Ký tự điều khiển US (0x1F): không xuất hiện trong tên tag
+    private static final String TAG_SEPARATOR = "\u001F";
+
+    static final String POST_DETAIL_SQL =
+            "SELECT p.id, p.title, p.content, p.author_id, p.created_at, p.updated_at, u.name, u.avatar, " +
+            "p.likes_count, p.comment_count, " +
+            "(SELECT GROUP_CONCAT(pt.name ORDER BY pt.id SEPARATOR '" + TAG_SEPARATOR + "') FROM parent_tags pt " +
+            "JOIN post_parent_tags ppt ON pt.id = ppt.parent_tag_id WHERE ppt.post_id = p.id) AS parent_tags, " +
+            "(SELECT GROUP_CONCAT(ct.name ORDER BY ct.id SEPARATOR '" + TAG_SEPARATOR + "') FROM child_tags ct " +
+            "JOIN post_child_tags pct ON ct.id = pct.child_tag_id WHERE pct.post_id = p.id) AS child_tags, " +
+            "EXISTS(SELECT 1 FROM post_likes pl WHERE pl.post_id = p.id AND pl.liker_id = :viewerId) AS is_liked, " +
+            "EXISTS(SELECT 1 FROM post_saves ps WHERE ps.post_id = p.id AND ps.user_id = :viewerId) AS is_saved " +
+            "FROM posts p JOIN users u ON u.id = p.author_id WHERE p.id = :postId";
+
+    // kind = 0: ảnh, 1: file
+    static final String POST_ATTACHMENTS_SQL =
+            "SELECT 0 AS kind, id, image_name, image_type FROM posts_image WHERE post_id = :postId " +
+            "UNION ALL " +
+            "SELECT 1 AS kind, id, file_name, file_type FROM posts_file WHERE post_id = :postId " +
+            "ORDER BY kind, id";
+
     // Tạo bài viết mới sử dụng stored procedure mới
     @Transactional
     public ApiResponseDTO createPost(PostCreateRequestDTO request) {
@@ -67,6 +195,11 @@ public class PostService {
 
             Object result = query.getSingleResult();
             Long postId = (result instanceof Number) ? ((Number) result).longValue() : null;
+            if (postId != null) {
+                evictFeedCategoriesOf(postId, true);
+                searchIndexService.indexAfterCommit(postId, request.getTitle(), request.getContent());
+                evictSearchCacheFor(postId, request);
+            }
 
             return new ApiResponseDTO(true, "Tạo bài viết thành công", postId, null);
         } catch (Exception ex) {
@@ -97,6 +230,12 @@ public class PostService {
 
             query.execute();
 
+            // Trang đang chứa bài viết + category theo tag mới
+            feedCacheService.evictPost(postId);
+            evictFeedCategoriesOf(postId, false);
+            searchIndexService.indexAfterCommit(postId, request.getTitle(), request.getContent());
+            evictSearchCacheFor(postId, request);
+
             return new ApiResponseDTO(true, "Cập nhật bài viết thành công", postId, null);
         } catch (Exception ex) {
             String message = extractRootCauseMessage(ex);
@@ -104,6 +243,18 @@ public class PostService {
         }
     }
 
+    // Từ khóa đã cache mà bài viết khớp theo tiêu đề, nội dung hoặc tên tag
+    private void evictSearchCacheFor(Long postId, PostCreateRequestDTO request) {
+        List<String> texts = new ArrayList<>();
+        texts.add(request.getTitle());
+        texts.add(request.getContent());
+        texts.add(request.getParentTag());
+        if (request.getChildTags() != null) {
+            texts.addAll(request.getChildTags());
+        }
+        searchCacheService.evictMatching(postId, texts.toArray(new String[0]));
+    }
+
     @Transactional
     public ApiResponseDTO deletePost(Long postId) {
         try {
@@ -111,11 +262,27 @@ public class PostService {
             if (!postRepository.existsById(postId)) {
                 return new ApiResponseDTO(false, "Bài viết không tồn tại", null, "POST_NOT_FOUND");
             }
+            // Khóa ghi các dòng ảnh trước: ImageVariantService đang tạo ảnh thu nhỏ cho bài này sẽ chờ tới khi xóa xong
+            // (rồi bỏ qua), hoặc đã commit variant trước => variant được đếm và xóa cùng bài
+            entityManager.createNativeQuery("SELECT id FROM posts_image WHERE post_id = :postId FOR UPDATE")
+                    .setParameter("postId", postId)
+                    .getResultList();
+            // Giảm số tham chiếu blob của ảnh/file/ảnh thu nhỏ; blob không còn ai dùng được BlobRefService dọn sau
+            blobRefService.releasePost(postId);
+            // Ảnh thu nhỏ không có khóa ngoại tới posts_image => xóa trước khi SP xóa ảnh gốc
+            entityManager.createNativeQuery("DELETE v FROM posts_image_variant v " +
+                            "JOIN posts_image i ON i.id = v.image_id WHERE i.post_id = :postId")
+                    .setParameter("postId", postId)
+                    .executeUpdate();
             // Sử dụng stored procedure mới
             StoredProcedureQuery query = entityManager.createStoredProcedureQuery("sp_delete_post");
             query.registerStoredProcedureParameter(1, Long.class, jakarta.persistence.ParameterMode.IN); // p_post_id
             query.setParameter(1, postId);
             query.execute();
+            feedCacheService.evictPost(postId);
+            postCounterService.evict(postId);
+            searchIndexService.removeAfterCommit(postId);
+            searchCacheService.evictPost(postId);
 
             return new ApiResponseDTO(true, "Xóa bài viết thành công", postId, null);
         } catch (Exception ex) {
@@ -127,22 +294,37 @@ public class PostService {
     @Transactional()
     public ApiResponseDTO getPostsByCategory(String categoryPath, int limit, int offset, Long userId) {
         try {
-            List<Object[]> results;
-            StoredProcedureQuery query = entityManager.createStoredProcedureQuery("sp_get_posts_by_category");
-            query.registerStoredProcedureParameter(1, String.class, jakarta.persistence.ParameterMode.IN);
-            query.registerStoredProcedureParameter(2, Integer.class, jakarta.persistence.ParameterMode.IN);
-            query.registerStoredProcedureParameter(3, Integer.class, jakarta.persistence.ParameterMode.IN);
-            query.registerStoredProcedureParameter(4, Long.class, jakarta.persistence.ParameterMode.IN);
-
-            // Truyền nguyên categoryPath FE (ví dụ: /general, /general/intro, ...)
-            query.setParameter(1, categoryPath);
-            query.setParameter(2, limit);
-            query.setParameter(3, offset);
-            query.setParameter(4, userId);
-
-            results = query.getResultList();
-
-            List<Map<String, Object>> formattedResults = convertPostsToKeyValue(results, userId);
+            // K trang đầu được cache dùng chung cho mọi người xem; cờ is_liked/is_saved luôn gắn sau
+            boolean cacheable = feedCacheService.isCacheable(categoryPath, limit, offset);
+            String cacheKey = FeedCacheService.offsetKey(categoryPath, limit, offset);
+            FeedCacheService.CachedPage cached = cacheable ? feedCacheService.get(cacheKey) : null;
+            List<Map<String, Object>> formattedResults;
+            if (cached != null) {
+                formattedResults = cached.items();
+            } else {
+                long cacheGeneration = feedCacheService.currentGeneration(categoryPath);
+                List<Object[]> results;
+                StoredProcedureQuery query = entityManager.createStoredProcedureQuery("sp_get_posts_by_category");
+                query.registerStoredProcedureParameter(1, String.class, jakarta.persistence.ParameterMode.IN);
+                query.registerStoredProcedureParameter(2, Integer.class, jakarta.persistence.ParameterMode.IN);
+                query.registerStoredProcedureParameter(3, Integer.class, jakarta.persistence.ParameterMode.IN);
+                query.registerStoredProcedureParameter(4, Long.class, jakarta.persistence.ParameterMode.IN);
+
+                // Truyền nguyên categoryPath FE (ví dụ: /general, /general/intro, ...).
+                // userId chỉ cần để lọc /saved, cờ của người xem không lấy từ SP
+                query.setParameter(1, categoryPath);
+                query.setParameter(2, limit);
+                query.setParameter(3, offset);
+                query.setParameter(4, "/saved".equals(categoryPath) ? userId : null);
+
+                results = query.getResultList();
+
+                formattedResults = convertPostsToKeyValue(results);
+                if (cacheable) {
+                    feedCacheService.put(cacheKey, categoryPath, formattedResults, null, cacheGeneration);
+                }
+            }
+            viewerStateService.applyPostFlags(formattedResults, userId);
             return new ApiResponseDTO(true, "Lấy bài viết theo category thành công", formattedResults, null);
         } catch (Exception ex) {
             String message = extractRootCauseMessage(ex);
@@ -151,6 +333,146 @@ public class PostService {
         }
     }
 
+    // Phân trang keyset theo category: cursor (created_at, id), riêng /popular dùng (likes_count, id)
+    @Transactional(readOnly = true)
+    public ApiResponseDTO getPostsByCategoryPage(String categoryPath, String cursor, int limit, Long userId) {
+        try {
+            String path = categoryPath == null ? "" : categoryPath.trim();
+            StringBuilder joins = new StringBuilder();
+            List<String> conditions = new ArrayList<>();
+            Map<String, Object> params = new HashMap<>();
+            boolean orderByLikes = false;
+
+            String[] segments = Arrays.stream(path.split("/")).filter(seg -> !seg.isEmpty()).toArray(String[]::new);
+            if (path.isEmpty() || path.equals("/") || path.equals("/home")) {
+                // Trang chủ: tất cả bài viết mới nhất
+            } else if (path.equals("/popular")) {
+                orderByLikes = true;
+            } else if (path.equals("/saved")) {
+                joins.append("JOIN post_saves sv ON sv.post_id = p.id AND sv.user_id = :savedBy ");
+                params.put("savedBy", userId);
+            } else if (segments.length == 1) {
+                // Category cha: FE truyền /career, /dev, ... tương ứng parent_tags.code
+                joins.append("JOIN post_parent_tags fppt ON fppt.post_id = p.id ")
+                        .append("JOIN parent_tags fpt ON fpt.id = fppt.parent_tag_id ");
+                conditions.add("fpt.code = :parentTagCode");
+                params.put("parentTagCode", segments[0]);
+            } else {
+                // Category con: map path FE sang tên tag con
+                joins.append("JOIN post_child_tags fpct ON fpct.post_id = p.id ")
+                        .append("JOIN child_tags fct ON fct.id = fpct.child_tag_id ");
+                conditions.add("fct.name = :childTagName");
+                params.put("childTagName", mapCategoryPathToTagName(path));
+            }
+
+            // Trang đầu (cursor rỗng) được cache dùng chung giống chế độ offset
+            boolean cacheable = (cursor == null || cursor.isBlank()) && feedCacheService.isCacheable(path, limit, 0);
+            String cacheKey = FeedCacheService.firstCursorPageKey(path, limit);
+            FeedCacheService.CachedPage cached = cacheable ? feedCacheService.get(cacheKey) : null;
+            Map<String, Object> page;
+            if (cached != null) {
+                page = new HashMap<>();
+                page.put("items", cached.items());
+                page.put("next_cursor", cached.nextCursor());
+            } else {
+                long cacheGeneration = feedCacheService.currentGeneration(path);
+                page = fetchFeedPage(joins.toString(), conditions, params, orderByLikes, cursor, limit);
+                if (cacheable) {
+                    feedCacheService.put(cacheKey, path, (List<Map<String, Object>>) page.get("items"),
+                            (String) page.get("next_cursor"), cacheGeneration);
+                }
+            }
+            viewerStateService.applyPostFlags((List<Map<String, Object>>) page.get("items"), userId);
+            return new ApiResponseDTO(true, "Lấy bài viết theo category thành công", page, null);
+        } catch (IllegalArgumentException ex) {
+            return new ApiResponseDTO(false, ex.getMessage(), null, "INVALID_CURSOR");
+        } catch (Exception ex) {
+            String message = extractRootCauseMessage(ex);
+            return new ApiResponseDTO(false, "Lỗi khi lấy bài viết theo category: " + message, null, "GET_POSTS_BY_CATEGORY_ERROR");
+        }
+    }
+
+    // Phân trang keyset bài viết của user, cursor (created_at, id)
+    @Transactional(readOnly = true)
+    public ApiResponseDTO getPostsByUserPage(Long userId, String cursor, int limit, Long viewerId) {
+        try {
+            Map<String, Object> params = new HashMap<>();
+            params.put("authorId", userId);
+            Map<String, Object> page = fetchFeedPage("", List.of("p.author_id = :authorId"), params, false, cursor, limit);
+            viewerStateService.applyPostFlags((List<Map<String, Object>>) page.get("items"), viewerId);
+            return new ApiResponseDTO(true, "Lấy bài viết theo user thành công", page, null);
+        } catch (IllegalArgumentException ex) {
+            return new ApiResponseDTO(false, ex.getMessage(), null, "INVALID_CURSOR");
+        } catch (Exception ex) {
+            String message = extractRootCauseMessage(ex);
+            return new ApiResponseDTO(false, "Lỗi khi lấy bài viết theo user: " + message, null, "GET_POSTS_BY_USER_ERROR");
+        }
+    }
+
+    // Feed dạng keyset: chỉ đọc limit + 1 dòng sau cursor => trang N tốn chi phí như trang 1.
+    // Trả về { items, next_cursor } (next_cursor = null khi hết dữ liệu), chưa gắn cờ của người xem
+    private Map<String, Object> fetchFeedPage(String joins, List<String> conditions, Map<String, Object> params,
+                                              boolean orderByLikes, String cursor, int limit) {
+        long[] after = CursorCodec.decode(cursor, 2);
+        int pageSize = Math.max(1, Math.min(limit, MAX_FEED_PAGE_SIZE));
+        String sortColumn = orderByLikes ? "p.likes_count" : "p.created_at";
+
+        List<String> where = new ArrayList<>(conditions);
+        if (after != null) {
+            where.add("(" + sortColumn + " < :afterKey OR (" + sortColumn + " = :afterKey AND p.id < :afterId))");
+        }
+        StringBuilder sql = new StringBuilder(FEED_SELECT).append(joins);
+        if (!where.isEmpty()) {
+            sql.append("WHERE ").append(String.join(" AND ", where)).append(" ");
+        }
+        sql.append("ORDER BY ").append(sortColumn).append(" DESC, p.id DESC LIMIT :limit");
+
+        Query query = entityManager.createNativeQuery(sql.toString());
+        params.forEach(query::setParameter);
+        if (after != null) {
+            query.setParameter("afterKey", orderByLikes ? (Object) after[0] : fromEpochMicros(after[0]));
+            query.setParameter("afterId", after[1]);
+        }
+        query.setParameter("limit", pageSize + 1);
+
+        List<Object[]> rows = query.getResultList();
+        boolean hasMore = rows.size() > pageSize;
+        if (hasMore) {
+            rows = rows.subList(0, pageSize);
+        }
+        String nextCursor = null;
+        if (hasMore) {
+            Object[] last = rows.get(rows.size() - 1);
+            long sortKey = orderByLikes
+                    ? (last[3] != null ? ((Number) last[3]).longValue() : 0L)
+                    : toEpochMicros(last[5]);
+            nextCursor = CursorCodec.encode(sortKey, ((Number) last[0]).longValue());
+        }
+
+        Map<String, Object> page = new HashMap<>();
+        page.put("items", convertPostsToKeyValue(rows));
+        page.put("next_cursor", nextCursor);
+        return page;
+    }
+
+    // created_at (DATETIME) <-> số micro giây, chỉ dùng làm biểu diễn trong cursor (không đổi múi giờ)
+    private long toEpochMicros(Object value) {
+        LocalDateTime dateTime;
+        if (value instanceof LocalDateTime) {
+            dateTime = (LocalDateTime) value;
+        } else if (value instanceof Timestamp) {
+            dateTime = ((Timestamp) value).toLocalDateTime();
+        } else {
+            throw new IllegalStateException("Kiểu created_at không hỗ trợ: " + value);
+        }
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + dateTime.getNano() / 1_000;
+    }
+
+    private LocalDateTime fromEpochMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+    }
+
     // Lấy bài viết theo user (bao gồm ảnh/file)
     @Transactional
     public ApiResponseDTO getPostsByUser(Long userId, int limit, int offset, Long viewerId) {
@@ -165,11 +487,12 @@ public class PostService {
             query.setParameter(1, userId);
             query.setParameter(2, limit);
             query.setParameter(3, offset);
-            query.setParameter(4, viewerId);
+            query.setParameter(4, null);
 
             results = query.getResultList();
 
-            List<Map<String, Object>> formattedResults = convertPostsToKeyValue(results, viewerId);
+            List<Map<String, Object>> formattedResults = convertPostsToKeyValue(results);
+            viewerStateService.applyPostFlags(formattedResults, viewerId);
             return new ApiResponseDTO(true, "Lấy bài viết theo user thành công", formattedResults, null);
         } catch (Exception ex) {
             String message = extractRootCauseMessage(ex);
@@ -181,6 +504,17 @@ public class PostService {
     @Transactional
     public ApiResponseDTO likePost(Long postId, Long userId) {
         try {
+            if (likeBufferService.isEnabled()) {
+                // Ghi dồn lô: dòng like và likes_count được flusher ghi xuống sau
+                if (!likeBufferService.targetExists(LikeBufferService.Target.POST, postId)) {
+                    return new ApiResponseDTO(false, "Bài viết không tồn tại", null, "POST_NOT_FOUND");
+                }
+                if (likeBufferService.record(LikeBufferService.Target.POST, postId, userId, true)) {
+                    return new ApiResponseDTO(true, "Like bài viết thành công", null, null);
+                }
+                // Bộ đệm đầy: ghi đồng bộ qua SP
+            }
+            Long likesBefore = lockLikesCount(postId);
             // Gọi stored procedure, truyền userId vào p_liker_id (đúng)
             StoredProcedureQuery query = entityManager.createStoredProcedureQuery("sp_like_post");
             query.registerStoredProcedureParameter(1, Long.class, jakarta.persistence.ParameterMode.IN); // p_post_id
@@ -188,6 +522,7 @@ public class PostService {
             query.setParameter(1, postId);
             query.setParameter(2, userId); // userId ở đây là liker_id
             query.execute();
+            applyLikeDelta(postId, likesBefore);
             return new ApiResponseDTO(true, "Like bài viết thành công", null, null);
         } catch (Exception ex) {
             String message = extractRootCauseMessage(ex);
@@ -198,12 +533,23 @@ public class PostService {
     @Transactional
     public ApiResponseDTO unlikePost(Long postId, Long userId) {
         try {
+            if (likeBufferService.isEnabled()) {
+                if (!likeBufferService.targetExists(LikeBufferService.Target.POST, postId)) {
+                    return new ApiResponseDTO(false, "Bài viết không tồn tại", null, "POST_NOT_FOUND");
+                }
+                if (likeBufferService.record(LikeBufferService.Target.POST, postId, userId, false)) {
+                    return new ApiResponseDTO(true, "Unlike bài viết thành công", null, null);
+                }
+                // Bộ đệm đầy: ghi đồng bộ qua SP
+            }
+            Long likesBefore = lockLikesCount(postId);
             StoredProcedureQuery query = entityManager.createStoredProcedureQuery("sp_unlike_post");
             query.registerStoredProcedureParameter(1, Long.class, jakarta.persistence.ParameterMode.IN); // p_post_id
             query.registerStoredProcedureParameter(2, Long.class, jakarta.persistence.ParameterMode.IN); // p_liker_id
             query.setParameter(1, postId);
             query.setParameter(2, userId);
             query.execute();
+            applyLikeDelta(postId, likesBefore);
             return new ApiResponseDTO(true, "Unlike bài viết thành công", null, null);
         } catch (Exception ex) {
             String message = extractRootCauseMessage(ex);
@@ -211,33 +557,183 @@ public class PostService {
         }
     }
 
+    // likes_count đọc kèm khóa dòng trong transaction của lượt like => không lượt like nào khác chen giữa hai lần đọc
+    private Long lockLikesCount(Long postId) {
+        List<?> rows = entityManager.createNativeQuery("SELECT likes_count FROM posts WHERE id = :postId FOR UPDATE")
+                .setParameter("postId", postId)
+                .getResultList();
+        return rows.isEmpty() || rows.get(0) == null ? null : ((Number) rows.get(0)).longValue();
+    }
+
+    // Delta thật của SP (like trùng, unlike khi chưa like, client gửi lại => 0) thay vì đoán +1/-1
+    private void applyLikeDelta(Long postId, Long likesBefore) {
+        Long likesAfter = lockLikesCount(postId);
+        if (likesBefore == null || likesAfter == null) {
+            postCounterService.evict(postId);
+            feedCacheService.evictAfterLikeChange(postId);
+            return;
+        }
+        long delta = likesAfter - likesBefore;
+        if (delta != 0) {
+            feedCacheService.evictAfterLikeChange(postId);
+            postCounterService.addLikes(postId, delta);
+        }
+    }
+
     @Transactional
     public ApiResponseDTO searchPosts(String keyword, Integer limit, Integer offset, Long userId) {
         try {
-            // Tracking hành vi tìm kiếm (upsert)
+            // Tracking hành vi tìm kiếm (ghi bất đồng bộ, không nằm trong transaction tìm kiếm)
             if (userId != null && keyword != null && !keyword.trim().isEmpty()) {
                 trackUserSearch(userId, keyword);
             }
-            // Gọi stored procedure mới
-            StoredProcedureQuery query = entityManager.createStoredProcedureQuery("sp_search_posts");
-            query.registerStoredProcedureParameter(1, String.class, jakarta.persistence.ParameterMode.IN); // p_keyword
-            query.registerStoredProcedureParameter(2, Integer.class, jakarta.persistence.ParameterMode.IN); // p_limit
-            query.registerStoredProcedureParameter(3, Integer.class, jakarta.persistence.ParameterMode.IN); // p_offset
-            query.registerStoredProcedureParameter(4, Long.class, jakarta.persistence.ParameterMode.IN); // p_user_id
-
-            query.setParameter(1, keyword);
-            query.setParameter(2, limit);
-            query.setParameter(3, offset);
-            query.setParameter(4, userId);
-
-            List<Object[]> results = query.getResultList();
-            List<Map<String, Object>> formattedResults = convertPostsToKeyValue(results, userId);
+            limit = Math.max(1, Math.min(limit == null ? 10 : limit, MAX_FEED_PAGE_SIZE));
+            offset = Math.max(0, offset == null ? 0 : offset);
+            if (offset > MAX_SEARCH_OFFSET) {
+                return new ApiResponseDTO(true, "Tìm kiếm bài viết thành công", new ArrayList<>(), null);
+            }
+            // Trang nằm trong top MAX_CACHED_RESULTS: lấy danh sách id đã xếp hạng từ cache theo từ khóa chuẩn hóa,
+            // trượt cache thì tìm cả top rồi cắt trang. Cache chỉ giữ id => bài viết luôn đọc mới, cờ người xem gắn sau
+            boolean cacheable = searchCacheService.isCacheable(offset, limit);
+            String cacheKey = cacheable ? SearchCacheService.key(keyword) : null;
+            SearchCacheService.CachedResult cached = cacheable ? searchCacheService.get(cacheKey) : null;
+            int fetchOffset = cacheable ? 0 : offset;
+            int fetchLimit = cacheable ? SearchCacheService.MAX_CACHED_RESULTS : limit;
+            List<Map<String, Object>> formattedResults;
+            if (cached != null) {
+                formattedResults = loadPostsInOrder(pageOf(cached.postIds(), offset, limit));
+            } else {
+                long cacheGeneration = searchCacheService.currentGeneration();
+                // Chỉ mục trong bộ nhớ: chỉ đọc đúng các bài của trang kết quả; chưa sẵn sàng thì dùng SP
+                SearchIndexService.SearchPage hits = searchIndexService.search(keyword, fetchOffset, fetchLimit);
+                if (hits != null) {
+                    if (cacheable) {
+                        searchCacheService.put(cacheKey, keyword, hits.postIds(), hits.total(), cacheGeneration);
+                    }
+                    formattedResults = loadPostsInOrder(cacheable ? pageOf(hits.postIds(), offset, limit) : hits.postIds());
+                } else {
+                    // Gọi stored procedure mới
+                    StoredProcedureQuery query = entityManager.createStoredProcedureQuery("sp_search_posts");
+                    query.registerStoredProcedureParameter(1, String.class, jakarta.persistence.ParameterMode.IN); // p_keyword
+                    query.registerStoredProcedureParameter(2, Integer.class, jakarta.persistence.ParameterMode.IN); // p_limit
+                    query.registerStoredProcedureParameter(3, Integer.class, jakarta.persistence.ParameterMode.IN); // p_offset
+                    query.registerStoredProcedureParameter(4, Long.class, jakarta.persistence.ParameterMode.IN); // p_user_id
+
+                    query.setParameter(1, keyword);
+                    query.setParameter(2, fetchLimit);
+                    query.setParameter(3, fetchOffset);
+                    query.setParameter(4, null);
+
+                    List<Object[]> results = query.getResultList();
+                    if (cacheable) {
+                        List<Long> postIds = new ArrayList<>(results.size());
+                        for (Object[] row : results) {
+                            postIds.add(((Number) row[0]).longValue());
+                        }
+                        searchCacheService.put(cacheKey, keyword, postIds, -1, cacheGeneration);
+                        results = pageOf(results, offset, limit);
+                    }
+                    formattedResults = convertPostsToKeyValue(results);
+                }
+            }
+            viewerStateService.applyPostFlags(formattedResults, userId);
             return new ApiResponseDTO(true, "Tìm kiếm bài viết thành công", formattedResults, null);
         } catch (Exception ex) {
             return new ApiResponseDTO(false, "Lỗi khi tìm kiếm bài viết: " + ex.getMessage(), null, "SEARCH_POST_ERROR");
         }
     }
 
+    private static <T> List<T> pageOf(List<T> items, int offset, int limit) {
+        int from = Math.min(offset, items.size());
+        return items.subList(from, Math.min(from + limit, items.size()));
+    }
+
+    // Đọc các bài viết theo danh sách id (đã xếp hạng), giữ nguyên thứ tự; bài vừa bị xóa thì bỏ qua
+    private List<Map<String, Object>> loadPostsInOrder(List<Long> postIds) {
+        if (postIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Object[]> rows = entityManager.createNativeQuery(FEED_SELECT + "WHERE p.id IN (:postIds)")
+                .setParameter("postIds", postIds)
+                .getResultList();
+        Map<Long, Object[]> rowsById = new HashMap<>();
+        for (Object[] row : rows) {
+            rowsById.put(((Number) row[0]).longValue(), row);
+        }
+        List<Object[]> ordered = new ArrayList<>(rows.size());
+        for (Long postId : postIds) {
+            Object[] row = rowsById.get(postId);
+            if (row != null) {
+                ordered.add(row);
+            }
+        }
+        return convertPostsToKeyValue(ordered);
+    }
+
+    // Tìm kiếm dạng cursor. Chỉ mục sẵn sàng: cùng thứ hạng BM25 với chế độ offset, cursor 1 phần = vị trí trong
+    // thứ hạng. Chưa có chỉ mục (hoặc từ khóa chỉ gồm hư từ): keyset LIKE, cursor 2 phần (created_at, id).
+    // Cursor giữ nguyên chế độ của trang đầu để các trang sau không trộn hai cách sắp xếp
+    @Transactional
+    public ApiResponseDTO searchPostsPage(String keyword, String cursor, int limit, Long userId) {
+        try {
+            // Chỉ ghi nhận tìm kiếm ở trang đầu tiên
+            if (userId != null && keyword != null && !keyword.trim().isEmpty() && (cursor == null || cursor.isBlank())) {
+                trackUserSearch(userId, keyword);
+            }
+            long[] after = CursorCodec.decode(cursor);
+            Map<String, Object> page = null;
+            if (after == null || after.length == 1) {
+                page = searchIndexPage(keyword, after == null ? 0 : after[0], limit);
+                if (page == null && after != null) {
+                    // Cursor theo thứ hạng nhưng chỉ mục không còn (vd: vừa khởi động lại)
+                    throw new IllegalArgumentException("Cursor không hợp lệ");
+                }
+            }
+            if (page == null) {
+                Map<String, Object> params = new HashMap<>();
+                params.put("keyword", "%" + escapeLike(keyword == null ? "" : keyword.trim()) + "%");
+                page = fetchFeedPage("", List.of("(p.title LIKE :keyword OR p.content LIKE :keyword)"),
+                        params, false, cursor, limit);
+            }
+            viewerStateService.applyPostFlags((List<Map<String, Object>>) page.get("items"), userId);
+            return new ApiResponseDTO(true, "Tìm kiếm bài viết thành công", page, null);
+        } catch (IllegalArgumentException ex) {
+            return new ApiResponseDTO(false, ex.getMessage(), null, "INVALID_CURSOR");
+        } catch (Exception ex) {
+            return new ApiResponseDTO(false, "Lỗi khi tìm kiếm bài viết: " + ex.getMessage(), null, "SEARCH_POST_ERROR");
+        }
+    }
+
+    // Trang { items, next_cursor } lấy từ chỉ mục; null nếu chỉ mục chưa sẵn sàng hoặc từ khóa rỗng sau phân tích
+    private Map<String, Object> searchIndexPage(String keyword, long position, int limit) {
+        if (position < 0) {
+            throw new IllegalArgumentException("Cursor không hợp lệ");
+        }
+        Map<String, Object> page = new HashMap<>();
+        if (position > MAX_SEARCH_OFFSET) {
+            page.put("items", new ArrayList<>());
+            page.put("next_cursor", null);
+            return page;
+        }
+        int from = (int) position;
+        int pageSize = Math.max(1, Math.min(limit, MAX_FEED_PAGE_SIZE));
+        // Lấy thừa 1 bài để biết còn trang sau
+        SearchIndexService.SearchPage hits = searchIndexService.search(keyword, from, pageSize + 1);
+        if (hits == null) {
+            return null;
+        }
+        List<Long> postIds = hits.postIds();
+        boolean hasMore = postIds.size() > pageSize && from + pageSize <= MAX_SEARCH_OFFSET;
+        page.put("items", loadPostsInOrder(postIds.subList(0, Math.min(pageSize, postIds.size()))));
+        page.put("next_cursor", hasMore ? CursorCodec.encode(from + pageSize) : null);
+        return page;
+    }
+
+    // Từ khóa người dùng dùng làm chuỗi con trong LIKE: % và _ là ký tự thường (ký tự thoát mặc định của MySQL là \)
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
     // Đề xuất bài viết dựa trên hành vi người dùng (luôn trả về tối đa 5 bài mới nhất)
     @Transactional 
     public ApiResponseDTO getRecommendedPosts(Long userId, int limit, int offset) {
@@ -253,7 +749,8 @@ public class PostService {
             query.setParameter(3, offset);
 
             List<Object[]> results = query.getResultList();
-            List<Map<String, Object>> formattedResults = convertPostsToKeyValue(results, userId);
+            List<Map<String, Object>> formattedResults = convertPostsToKeyValue(results);
+            viewerStateService.applyPostFlags(formattedResults, userId);
             return new ApiResponseDTO(true, "Đề xuất bài viết thành công", formattedResults, null);
         } catch (Exception ex) {
             String message = extractRootCauseMessage(ex);
@@ -261,124 +758,76 @@ public class PostService {
         }
     }
 
-    // Ghi nhận hành vi tìm kiếm của user (upsert vào bảng tracking)
-    @Transactional
+    // Ghi nhận hành vi tìm kiếm của user: chỉ đưa vào hàng đợi, SearchTrackingService ghi dồn lô xuống bảng tracking
     public void trackUserSearch(Long userId, String keyword) {
-        try {
-            StoredProcedureQuery query = entityManager.createStoredProcedureQuery("sp_track_user_search");
-            query.registerStoredProcedureParameter(1, Long.class, jakarta.persistence.ParameterMode.IN);
-            query.registerStoredProcedureParameter(2, String.class, jakarta.persistence.ParameterMode.IN);
-            query.setParameter(1, userId);
-            query.setParameter(2, keyword);
-            query.execute();
-        } catch (Exception ex) {
-            // Không throw lỗi, chỉ log nếu cần
-            System.err.println("Track user search failed: " + ex.getMessage());
-        }
+        // Đếm từ khóa phổ biến cho gợi ý tìm kiếm
+        suggestService.recordQuery(userId, keyword);
+        searchTrackingService.record(userId, keyword);
     }
 
     // Lấy thông tin chi tiết bài viết (bao gồm ảnh/file) - dùng cho trang chi tiết bài viết
     @Transactional(readOnly = true)
     public ApiResponseDTO getPostDetail(Long postId, Long userId) {
         try {
-            // Kiểm tra postId có tồn tại không
-            if (!postRepository.existsById(postId)) {
-                return new ApiResponseDTO(false, "Bài viết không tồn tại", null, "POST_NOT_FOUND");
-            }
-
-            // Lấy thông tin bài viết
-            String postSql = "SELECT id, title, content, author_id, created_at, updated_at, " +
-                    " (SELECT COUNT(*) FROM post_likes WHERE post_id = p.id) as likes_count, " +
-                    " (SELECT COUNT(*) FROM post_comments WHERE post_id = p.id) as comment_count, " +
-                    " (SELECT GROUP_CONCAT(tag_id) FROM post_tags WHERE post_id = p.id) as tag_ids_csv " +
-                    "FROM posts p WHERE id = :postId";
-            Object postObj = entityManager.createNativeQuery(postSql)
-                    .setParameter("postId", postId)
-                    .getSingleResult();
-
-            if (postObj == null) {
-                return new ApiResponseDTO(false, "Bài viết không tồn tại", null, "POST_NOT_FOUND");
-            }
-
-            Object[] postRow = (Object[]) postObj;
-            Map<String, Object> post = new HashMap<>();
-            post.put("id", postRow[0]);
-            post.put("title", postRow[1]);
-            post.put("content", postRow[2]);
-            post.put("author_id", postRow[3]);
-            post.put("created_at", postRow[4]);
-            post.put("updated_at", postRow[5]);
-            post.put("likes_count", postRow[6]);
-            post.put("comment_count", postRow[7]);
-
-            // Lấy thông tin tác giả
-            Long authorId = (Long) postRow[3];
-            String authorSql = "SELECT id, name, avatar FROM users WHERE id = :authorId";
-            Object authorObj = entityManager.createNativeQuery(authorSql)
-                    .setParameter("authorId", authorId)
-                    .getSingleResult();
-            if (authorObj != null) {
-                Object[] authorRow = (Object[]) authorObj;
-                Map<String, Object> author = new HashMap<>();
-                author.put("id", authorRow[0]);
-                author.put("name", authorRow[1]);
-                author.put("avatar", authorRow[2]);
-                post.put("author", author);
-            }
-
-            // Lấy danh sách ảnh
-            String imagesSql = "SELECT id, image_name, image_type FROM posts_image WHERE post_id = :postId ORDER BY id ASC";
-            List<Object[]> imageResults = entityManager.createNativeQuery(imagesSql)
+            // Truy vấn 1: bài viết + tác giả + tên tag + cờ của người xem
+            List<Object[]> postRows = entityManager.createNativeQuery(POST_DETAIL_SQL)
                     .setParameter("postId", postId)
+                    .setParameter("viewerId", userId)
                     .getResultList();
-            List<Map<String, Object>> images = new ArrayList<>();
-            for (Object[] img : imageResults) {
-                Map<String, Object> imageObj = new HashMap<>();
-                imageObj.put("id", img[0]);
-                imageObj.put("name", img[1]);
-                imageObj.put("type", img[2]);
-                images.add(imageObj);
+            if (postRows.isEmpty()) {
+                return new ApiResponseDTO(false, "Bài viết không tồn tại", null, "POST_NOT_FOUND");
             }
-            post.put("images", images);
+            Object[] row = postRows.get(0);
 
-            // Lấy danh sách file
-            String filesSql = "SELECT id, file_name, file_type FROM posts_file WHERE post_id = :postId ORDER BY id ASC";
-            List<Object[]> fileResults = entityManager.createNativeQuery(filesSql)
+            // Truy vấn 2: metadata ảnh và file (không đọc dữ liệu nhị phân)
+            List<Object[]> attachmentRows = entityManager.createNativeQuery(POST_ATTACHMENTS_SQL)
                     .setParameter("postId", postId)
                     .getResultList();
-            List<Map<String, Object>> files = new ArrayList<>();
-            for (Object[] file : fileResults) {
-                Map<String, Object> fileObj = new HashMap<>();
-                fileObj.put("id", file[0]);
-                fileObj.put("name", file[1]);
-                fileObj.put("type", file[2]);
-                files.add(fileObj);
+            List<PostDetailDTO.Attachment> images = new ArrayList<>();
+            List<PostDetailDTO.Attachment> files = new ArrayList<>();
+            for (Object[] attachment : attachmentRows) {
+                PostDetailDTO.Attachment item = new PostDetailDTO.Attachment(
+                        ((Number) attachment[1]).longValue(), (String) attachment[2], (String) attachment[3]);
+                (((Number) attachment[0]).intValue() == 0 ? images : files).add(item);
             }
-            post.put("files", files);
-
-            // Kiểm tra đã like bài viết chưa
-            boolean isLiked = entityManager.createNativeQuery("SELECT COUNT(*) FROM post_likes WHERE post_id = :postId AND liker_id = :userId")
-                    .setParameter("postId", postId)
-                    .setParameter("userId", userId)
-                    .getSingleResult() != null;
-            post.put("is_liked", isLiked);
-
-            // Kiểm tra đã lưu bài viết chưa
-            boolean isSaved = entityManager.createNativeQuery("SELECT COUNT(*) FROM saved_posts WHERE post_id = :postId AND user_id = :userId")
-                    .setParameter("postId", postId)
-                    .setParameter("userId", userId)
-                    .getSingleResult() != null;
-            post.put("is_saved", isSaved);
 
+            // likes_count/comment_count từ bộ đếm trong bộ nhớ (nạp từ chính dòng vừa đọc nếu chưa có)
+            PostCounterService.PostCounts counts = postCounterService.resolve(postId, row[8], row[9]);
+            PostDetailDTO post = new PostDetailDTO(
+                    ((Number) row[0]).longValue(),
+                    (String) row[1],
+                    (String) row[2],
+                    ((Number) row[3]).longValue(),
+                    row[4],
+                    row[5],
+                    counts.likesCount(),
+                    counts.commentCount(),
+                    new PostDetailDTO.Author(((Number) row[3]).longValue(), (String) row[6], AvatarUrls.of(row[7], AvatarUrls.LIST_SIZE)),
+                    splitNames(row[10]),
+                    splitNames(row[11]),
+                    images,
+                    files,
+                    viewerStateService.resolvePostLiked(postId, userId, toBool(row[12])),
+                    toBool(row[13])
+            );
             return new ApiResponseDTO(true, "Lấy chi tiết bài viết thành công", post, null);
         } catch (Exception ex) {
             return new ApiResponseDTO(false, "Lỗi khi lấy chi tiết bài viết: " + ex.getMessage(), null, "GET_POST_DETAIL_ERROR");
         }
     }
 
-    // Thay đổi hàm convertPostsToKeyValue để nhận userId và trả về is_liked
-    private List<Map<String, Object>> convertPostsToKeyValue(List<Object[]> results, Long userId) {
+    // Tên tag ghép bằng GROUP_CONCAT với ký tự phân tách TAG_SEPARATOR
+    private List<String> splitNames(Object concatenated) {
+        if (concatenated == null || concatenated.toString().isEmpty()) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(Arrays.asList(concatenated.toString().split(TAG_SEPARATOR)));
+    }
+
+    // Dữ liệu bài viết dùng chung cho mọi người xem (is_liked/is_saved do ViewerStateService gắn sau)
+    private List<Map<String, Object>> convertPostsToKeyValue(List<Object[]> results) {
         List<Map<String, Object>> formattedResults = new ArrayList<>();
+        List<Long> postIds = new ArrayList<>();
         for (Object[] row : results) {
             Map<String, Object> post = new HashMap<>();
             Long postId = ((Number) row[0]).longValue();
@@ -389,62 +838,107 @@ public class PostService {
             post.put("comment_count", row[4]);
             post.put("created_at", row[5]);
             post.put("user_name", row[6]);
-            post.put("user_avatar", row[7]);
+            post.put("user_avatar", AvatarUrls.of(row[7], AvatarUrls.LIST_SIZE));
             post.put("author_id", row[8]);
             post.put("is_liked", toBool(row[9]));
             post.put("is_saved", toBool(row[10]));
+            postIds.add(postId);
+            formattedResults.add(post);
+        }
+        hydratePosts(formattedResults, postIds);
+        postCounterService.applyCounts(formattedResults);
+        return formattedResults;
+    }
 
-            // Lấy parent tags - trả về mảng tên
-            String parentTagSql = "SELECT pt.name FROM parent_tags pt " +
-                    "JOIN post_parent_tags ppt ON pt.id = ppt.parent_tag_id " +
-                    "WHERE ppt.post_id = :postId";
-            List<String> parentTagNames = entityManager.createNativeQuery(parentTagSql)
-                    .setParameter("postId", postId)
-                    .getResultList();
-            post.put("parent_tags", parentTagNames);
-
-            // Lấy child tags - trả về mảng tên
-            String childTagSql = "SELECT ct.name FROM child_tags ct " +
-                    "JOIN post_child_tags pct ON ct.id = pct.child_tag_id " +
-                    "WHERE pct.post_id = :postId";
-            List<String> childTagNames = entityManager.createNativeQuery(childTagSql)
-                    .setParameter("postId", postId)
-                    .getResultList();
-            post.put("child_tags", childTagNames);
+    // Gắn tags, ảnh, file cho cả trang: mỗi loại chỉ một truy vấn IN (...), ghép lại trong bộ nhớ
+    // => số truy vấn cố định, không phụ thuộc số bài viết trong trang
+    private void hydratePosts(List<Map<String, Object>> posts, List<Long> postIds) {
+        if (postIds.isEmpty()) {
+            return;
+        }
 
-            // Lấy tất cả ảnh - trả về mảng object { id, name, type }
-            String imagesSql = "SELECT id, image_name, image_type FROM posts_image WHERE post_id = :postId ORDER BY id ASC";
-            List<Object[]> imageResults = entityManager.createNativeQuery(imagesSql)
-                    .setParameter("postId", postId)
-                    .getResultList();
-            List<Map<String, Object>> images = new ArrayList<>();
-            for (Object[] img : imageResults) {
-                Map<String, Object> imageObj = new HashMap<>();
-                imageObj.put("id", img[0]);
-                imageObj.put("name", img[1]);
-                imageObj.put("type", img[2]);
-                images.add(imageObj);
-            }
-            post.put("images", images);
+        // Lấy parent tags - trả về mảng tên
+        String parentTagSql = "SELECT ppt.post_id, pt.name FROM parent_tags pt " +
+                "JOIN post_parent_tags ppt ON pt.id = ppt.parent_tag_id " +
+                "WHERE ppt.post_id IN (:postIds)";
+        Map<Long, List<String>> parentTagsByPost = groupNamesByPost(parentTagSql, postIds);
+
+        // Lấy child tags - trả về mảng tên
+        String childTagSql = "SELECT pct.post_id, ct.name FROM child_tags ct " +
+                "JOIN post_child_tags pct ON ct.id = pct.child_tag_id " +
+                "WHERE pct.post_id IN (:postIds)";
+        Map<Long, List<String>> childTagsByPost = groupNamesByPost(childTagSql, postIds);
+
+        // Lấy tất cả ảnh - trả về mảng object { id, name, type }
+        String imagesSql = "SELECT post_id, id, image_name, image_type FROM posts_image " +
+                "WHERE post_id IN (:postIds) ORDER BY id ASC";
+        Map<Long, List<Map<String, Object>>> imagesByPost = groupAttachmentsByPost(imagesSql, postIds);
+
+        // Lấy tất cả file - trả về mảng object { id, name, type }
+        String filesSql = "SELECT post_id, id, file_name, file_type FROM posts_file " +
+                "WHERE post_id IN (:postIds) ORDER BY id ASC";
+        Map<Long, List<Map<String, Object>>> filesByPost = groupAttachmentsByPost(filesSql, postIds);
+
+        for (Map<String, Object> post : posts) {
+            Long postId = (Long) post.get("id");
+            post.put("parent_tags", parentTagsByPost.getOrDefault(postId, new ArrayList<>()));
+            post.put("child_tags", childTagsByPost.getOrDefault(postId, new ArrayList<>()));
+            post.put("images", imagesByPost.getOrDefault(postId, new ArrayList<>()));
+            post.put("files", filesByPost.getOrDefault(postId, new ArrayList<>()));
+        }
+    }
 
-            // Lấy tất cả file - trả về mảng object { id, name, type }
-            String filesSql = "SELECT id, file_name, file_type FROM posts_file WHERE post_id = :postId ORDER BY id ASC";
-            List<Object[]> fileResults = entityManager.createNativeQuery(filesSql)
-                    .setParameter("postId", postId)
-                    .getResultList();
-            List<Map<String, Object>> files = new ArrayList<>();
-            for (Object[] file : fileResults) {
-                Map<String, Object> fileObj = new HashMap<>();
-                fileObj.put("id", file[0]);
-                fileObj.put("name", file[1]);
-                fileObj.put("type", file[2]);
-                files.add(fileObj);
-            }
-            post.put("files", files);
+    // Truy vấn trả về (post_id, name) -> gom theo post_id
+    private Map<Long, List<String>> groupNamesByPost(String sql, List<Long> postIds) {
+        List<Object[]> rows = entityManager.createNativeQuery(sql)
+                .setParameter("postIds", postIds)
+                .getResultList();
+        Map<Long, List<String>> grouped = new HashMap<>();
+        for (Object[] row : rows) {
+            Long postId = ((Number) row[0]).longValue();
+            grouped.computeIfAbsent(postId, k -> new ArrayList<>()).add((String) row[1]);
+        }
+        return grouped;
+    }
 
-            formattedResults.add(post);
+    // Truy vấn trả về (post_id, id, name, type) -> gom theo post_id, giữ thứ tự id ASC
+    private Map<Long, List<Map<String, Object>>> groupAttachmentsByPost(String sql, List<Long> postIds) {
+        List<Object[]> rows = entityManager.createNativeQuery(sql)
+                .setParameter("postIds", postIds)
+                .getResultList();
+        Map<Long, List<Map<String, Object>>> grouped = new HashMap<>();
+        for (Object[] row : rows) {
+            Long postId = ((Number) row[0]).longValue();
+            Map<String, Object> attachment = new HashMap<>();
+            attachment.put("id", row[1]);
+            attachment.put("name", row[2]);
+            attachment.put("type", row[3]);
+            grouped.computeIfAbsent(postId, k -> new ArrayList<>()).add(attachment);
         }
-        return formattedResults;
+        return grouped;
+    }
+
+    // Xóa cache feed của các category chứa bài viết (theo tag cha/con hiện tại).
+    // includeGlobalFeeds: bài viết mới còn xuất hiện ở /home và /popular
+    private void evictFeedCategoriesOf(Long postId, boolean includeGlobalFeeds) {
+        List<String> parentTagCodes = entityManager.createNativeQuery(
+                        "SELECT pt.code FROM parent_tags pt JOIN post_parent_tags ppt ON pt.id = ppt.parent_tag_id " +
+                        "WHERE ppt.post_id = :postId")
+                .setParameter("postId", postId)
+                .getResultList();
+        List<String> childTagNames = entityManager.createNativeQuery(
+                        "SELECT ct.name FROM child_tags ct JOIN post_child_tags pct ON ct.id = pct.child_tag_id " +
+                        "WHERE pct.post_id = :postId")
+                .setParameter("postId", postId)
+                .getResultList();
+        feedCacheService.evictCategories(categoryPath -> {
+            String path = categoryPath.trim();
+            if (path.isEmpty() || path.equals("/") || path.equals("/home") || path.equals("/popular")) {
+                return includeGlobalFeeds;
+            }
+            String parentCode = path.startsWith("/") ? path.substring(1) : path;
+            return parentTagCodes.contains(parentCode) || childTagNames.contains(mapCategoryPathToTagName(path));
+        });
     }
 
     // Helper chuyển giá trị sang boolean
@@ -536,12 +1030,11 @@ public class PostService {
     @Transactional(readOnly = true)
     public ApiResponseDTO getCommentCountForPost(Long postId) {
         try {
-            String sql = "SELECT comment_count FROM posts WHERE id = :postId";
-            Object result = entityManager.createNativeQuery(sql)
-                    .setParameter("postId", postId)
-                    .getSingleResult();
-            Long count = (result instanceof Number) ? ((Number) result).longValue() : 0L;
-            return new ApiResponseDTO(true, "Lấy số lượng bình luận thành công", count, null);
+            PostCounterService.PostCounts counts = postCounterService.get(postId);
+            if (counts == null) {
+                return new ApiResponseDTO(false, "Bài viết không tồn tại", null, "POST_NOT_FOUND");
+            }
+            return new ApiResponseDTO(true, "Lấy số lượng bình luận thành công", counts.commentCount(), null);
         } catch (Exception ex) {
             return new ApiResponseDTO(false, "Lỗi khi lấy số lượng bình luận: " + ex.getMessage(), null, "GET_COMMENT_COUNT_ERROR");
         }
@@ -557,38 +1050,15 @@ public ApiResponseDTO savePostImage(Long postId, MultipartFile file) {
     if (!postExists) {
         return new ApiResponseDTO(false, "Bài viết không tồn tại", null, "POST_NOT_FOUND");
     }
-    if (file == null || file.isEmpty()) {
-        return new ApiResponseDTO(false, "File ảnh không được để trống", null, "INVALID_FILE");
-    }
-    if (file.getSize() > 5 * 1024 * 1024) {
-        return new ApiResponseDTO(false, "Kích thước ảnh vượt quá 5MB", null, "IMAGE_TOO_LARGE");
-    }
-    if (!Arrays.asList("image/jpeg", "image/png", "image/gif", "image/bmp", "image/webp").contains(file.getContentType())) {
-        return new ApiResponseDTO(false, "Loại ảnh không hợp lệ, chỉ hỗ trợ JPEG, PNG, GIF, BMP, hoặc WebP", null, "INVALID_FILE_TYPE");
+    ApiResponseDTO invalid = validateImage(file);
+    if (invalid != null) {
+        return invalid;
     }
 
     try {
-        byte[] fileBytes = file.getBytes();
-        if (fileBytes.length == 0) {
-            return new ApiResponseDTO(false, "Dữ liệu ảnh rỗng", null, "EMPTY_FILE");
-        }
-
-        // Nén ảnh bằng CompressService
-        byte[] compressedImage = CompressService.compress(fileBytes);
-
-        // Gọi stored procedure để lưu ảnh
-        StoredProcedureQuery query = entityManager.createStoredProcedureQuery("sp_save_post_image");
-        query.registerStoredProcedureParameter(1, Long.class, jakarta.persistence.ParameterMode.IN); // p_post_id
-        query.registerStoredProcedureParameter(2, byte[].class, jakarta.persistence.ParameterMode.IN); // p_image_data
-        query.registerStoredProcedureParameter(3, String.class, jakarta.persistence.ParameterMode.IN); // p_image_name
-        query.registerStoredProcedureParameter(4, String.class, jakarta.persistence.ParameterMode.IN); // p_image_type
-
-        query.setParameter(1, postId);
-        query.setParameter(2, compressedImage);
-        query.setParameter(3, file.getOriginalFilename());
-        query.setParameter(4, file.getContentType());
-
-        query.execute();
+        long imageId = storeAttachment("posts_image", "image_name", "image_type", postId, file, file.getContentType());
+        // Ảnh thu nhỏ cho feed được tạo nền sau khi commit
+        imageVariantService.scheduleAfterCommit(imageId);
 
         // Chỉ trả về post_id là đủ
         Map<String, Object> imageInfo = new HashMap<>();
@@ -602,88 +1072,266 @@ public ApiResponseDTO savePostImage(Long postId, MultipartFile file) {
     }
 }
 
-// Khi trả ảnh về client, giải nén bằng CompressService
-@Transactional
-public ApiResponseDTO getPostImageById(Long imageId) {
+// null nếu ảnh hợp lệ
+private ApiResponseDTO validateImage(MultipartFile file) {
+    if (file == null || file.isEmpty()) {
+        return new ApiResponseDTO(false, "File ảnh không được để trống", null, "INVALID_FILE");
+    }
+    if (file.getSize() > MAX_ATTACHMENT_SIZE) {
+        return new ApiResponseDTO(false, "Kích thước ảnh vượt quá 5MB", null, "IMAGE_TOO_LARGE");
+    }
+    if (!ALLOWED_IMAGE_TYPES.contains(file.getContentType())) {
+        return new ApiResponseDTO(false, "Loại ảnh không hợp lệ, chỉ hỗ trợ JPEG, PNG, GIF, BMP, hoặc WebP", null, "INVALID_FILE_TYPE");
+    }
+    return null;
+}
+
+// Trả ảnh dạng stream: dữ liệu nén (nếu có) được giải nén dần khi ghi ra response, heap dùng cố định cho mỗi lượt tải
+@Transactional(readOnly = true)
+public ApiResponseDTO getPostImageById(Long imageId, Integer width, String ifNoneMatch) {
     if (imageId == null || imageId <= 0) {
         return new ApiResponseDTO(false, "ID ảnh không hợp lệ", null, "INVALID_IMAGE_ID");
     }
-    if (!postImageRepository.existsById(imageId)) {
-        return new ApiResponseDTO(false, "Ảnh không tồn tại", null, "IMAGE_NOT_FOUND");
-    }
     try {
-        String sql = "SELECT image_data, image_type, image_name FROM posts_image WHERE id = ?";
-        Object[] row = (Object[]) entityManager.createNativeQuery(sql)
-            .setParameter(1, imageId)
-            .getSingleResult();
-        if (row == null) {
+        // ?w= : ưu tiên ảnh thu nhỏ vừa đủ rộng (feed chỉ cần 160/480px thay vì ảnh gốc tới 5MB)
+        if (width != null && width > 0) {
+            AttachmentContentDTO variant = openImageVariant(imageId, width, ifNoneMatch);
+            if (variant != null) {
+                return new ApiResponseDTO(true, "Lấy ảnh thành công", variant, null);
+            }
+        }
+        AttachmentContentDTO content = openAttachment("posts_image", "image_data", "image_name", "image_type", imageId, true, ifNoneMatch);
+        if (content == null) {
             return new ApiResponseDTO(false, "Ảnh không tồn tại", null, "IMAGE_NOT_FOUND");
         }
-        byte[] decompressed = CompressService.decompress((byte[]) row[0]);
-        PostImageDTO dto = new PostImageDTO(
-            decompressed,
-            (String) row[1],
-            (String) row[2]
-        );
-        return new ApiResponseDTO(true, "Lấy ảnh thành công", dto, null);
+        // Ảnh thu nhỏ được tạo sau khi upload commit: ảnh gốc trả thay dưới URL ?w= chỉ được cache ngắn,
+        // nếu không trình duyệt sẽ giữ ảnh gốc cả năm và không bao giờ tải ảnh thu nhỏ
+        if (width != null && width > 0) {
+            content = content.revalidatable();
+        }
+        return new ApiResponseDTO(true, "Lấy ảnh thành công", content, null);
     } catch (Exception ex) {
         return new ApiResponseDTO(false, "Lỗi khi lấy ảnh: " + ex.getMessage(), null, "GET_IMAGE_ERROR");
     }
 }
 
-    // Thêm phương thức upload file cho post
+    // Upload dạng stream: đọc từ request (Spring đã đệm part lớn ra file tạm), chọn codec theo CompressionPolicy
+    // dựa trên đoạn đầu, nén + tính SHA-256 trong lúc ghi vào blob store => heap mỗi upload chỉ vài chục KB.
+    // MySQL chỉ giữ metadata kèm codec để lúc đọc biết có cần giải nén hay không. Trả về id dòng vừa thêm
+    private long storeAttachment(String table, String nameColumn, String typeColumn, Long postId,
+                                 MultipartFile file, String contentType) throws IOException {
+        StoredBlob blob = writeBlob(file, contentType);
+        List<String> written = List.of(blob.storageKey());
+        long id;
+        try {
+            entityManager.createNativeQuery("INSERT INTO " + table + " (post_id, " + nameColumn + ", " + typeColumn +
+                            ", storage_key, content_length, codec) VALUES (:postId, :name, :type, :storageKey, :contentLength, :codec)")
+                    .setParameter("postId", postId)
+                    .setParameter("name", file.getOriginalFilename())
+                    .setParameter("type", contentType)
+                    .setParameter("storageKey", blob.storageKey())
+                    .setParameter("contentLength", blob.contentLength())
+                    .setParameter("codec", blob.codec().storedName())
+                    .executeUpdate();
+            id = ((Number) entityManager.createNativeQuery("SELECT LAST_INSERT_ID()").getSingleResult()).longValue();
+            // Cùng nội dung đã có (đăng lại ảnh/PDF) => blob store không ghi thêm, chỉ tăng số tham chiếu
+            blobRefService.acquire(blob.storageKey());
+        } catch (RuntimeException ex) {
+            // Metadata không được lưu => blob vừa ghi không ai tham chiếu, để sweep dọn
+            blobRefService.markUnreferencedAfterCompletion(written, false);
+            throw ex;
+        }
+        // Transaction của request vẫn có thể rollback sau đó
+        blobRefService.markUnreferencedAfterCompletion(written, true);
+        return id;
+    }
+
+    private record StoredBlob(String storageKey, long contentLength, CompressionPolicy.Codec codec) {
+    }
+
+    // Chỉ ghi nội dung vào blob store, không đụng DB => chạy được trên luồng khác (upload nhiều file)
+    private StoredBlob writeBlob(MultipartFile file, String contentType) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            byte[] sample = in.readNBytes(CompressionPolicy.STREAM_SAMPLE_SIZE);
+            CompressionPolicy.Codec codec = CompressionPolicy.choose(contentType, sample, file.getSize());
+            long[] copied = new long[1];
+            String storageKey = blobStore.put(out -> {
+                try (OutputStream target = codec == CompressionPolicy.Codec.STORE
+                        ? out
+                        : CompressService.deflatingStream(out, codec)) {
+                    target.write(sample);
+                    copied[0] = sample.length + in.transferTo(target);
+                }
+            });
+            return new StoredBlob(storageKey, copied[0], codec);
+        }
+    }
+
+    // Upload nhiều ảnh/file trong 1 request: kiểm tra bài viết và từng file một lần, ghi blob song song trên pool
+    // giới hạn rồi thêm metadata bằng 1 câu INSERT nhiều dòng cho mỗi bảng. Một file không hợp lệ => từ chối cả lô
     @Transactional
-    public ApiResponseDTO savePostFile(Long postId, MultipartFile file) {
-        // Kiểm tra null, empty, loại file, ... trước khi đọc file.getBytes()
+    public ApiResponseDTO saveAttachments(Long postId, List<MultipartFile> images, List<MultipartFile> files) {
+        if (postId == null || postId <= 0) {
+            return new ApiResponseDTO(false, "ID bài viết không hợp lệ", null, "INVALID_POST_ID");
+        }
+        List<MultipartFile> imageList = images != null ? images : List.of();
+        List<MultipartFile> fileList = files != null ? files : List.of();
+        int total = imageList.size() + fileList.size();
+        if (total == 0) {
+            return new ApiResponseDTO(false, "Chưa chọn ảnh hoặc file nào", null, "INVALID_FILE");
+        }
+        if (total > maxBatchAttachments) {
+            return new ApiResponseDTO(false, "Chỉ được upload tối đa " + maxBatchAttachments + " ảnh/file mỗi lần", null, "TOO_MANY_FILES");
+        }
         if (!postRepository.existsById(postId)) {
             return new ApiResponseDTO(false, "Bài viết không tồn tại", null, "POST_NOT_FOUND");
         }
-        if (file == null) {
-            return new ApiResponseDTO(false, "File không được để trống", null, "INVALID_FILE");
+        for (MultipartFile image : imageList) {
+            ApiResponseDTO invalid = validateImage(image);
+            if (invalid != null) {
+                return withFileName(invalid, image);
+            }
         }
-        if (file.isEmpty()) {
-            return new ApiResponseDTO(false, "File không được để trống", null, "INVALID_FILE");
+        for (MultipartFile file : fileList) {
+            ApiResponseDTO invalid = validateFile(file);
+            if (invalid != null) {
+                return withFileName(invalid, file);
+            }
         }
-        // Kiểm tra loại file trước khi đọc file.getSize()
-        List<String> allowedTypes = Arrays.asList(
-            "application/pdf",
-            "application/msword",
-            "application/vnd.openxmlformats-officedocument.wordprocessingml.document",
-            "application/vnd.ms-excel",
-            "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet",
-            "application/vnd.ms-powerpoint",
-            "application/vnd.openxmlformats-officedocument.presentationml.presentation",
-            "text/plain",
-            "application/zip",
-            "application/x-rar-compressed",
-            "image/png",
-            "image/jpeg",
-            "image/jpg"
-        );
-        String contentType = file.getContentType();
-        if (contentType == null || !allowedTypes.contains(contentType)) {
-            return new ApiResponseDTO(false, "Loại file không hợp lệ. Chỉ hỗ trợ pdf, doc, docx, xls, xlsx, ppt, pptx, txt, zip, rar, png, jpg.", null, "INVALID_FILE_TYPE");
+
+        List<Future<StoredBlob>> pending = new ArrayList<>(total);
+        boolean saved = false;
+        try {
+            for (MultipartFile image : imageList) {
+                pending.add(attachmentExecutor.submit(() -> writeBlob(image, image.getContentType())));
+            }
+            for (MultipartFile file : fileList) {
+                pending.add(attachmentExecutor.submit(() -> writeBlob(file, file.getContentType())));
+            }
+            List<StoredBlob> stored = new ArrayList<>(total);
+            for (Future<StoredBlob> future : pending) {
+                stored.add(future.get());
+            }
+            List<StoredBlob> storedImages = stored.subList(0, imageList.size());
+            List<StoredBlob> storedFiles = stored.subList(imageList.size(), total);
+
+            List<Long> imageIds = insertAttachments("posts_image", "image_name", "image_type", postId, imageList, storedImages);
+            insertAttachments("posts_file", "file_name", "file_type", postId, fileList, storedFiles);
+            for (Long imageId : imageIds) {
+                imageVariantService.scheduleAfterCommit(imageId);
+            }
+            saved = true;
+
+            Map<String, Object> info = new HashMap<>();
+            info.put("post_id", postId);
+            info.put("image_ids", imageIds);
+            info.put("file_count", fileList.size());
+            return new ApiResponseDTO(true, "Upload " + total + " ảnh/file thành công", info, null);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+            if (cause instanceof IOException) {
+                return new ApiResponseDTO(false, "Lỗi khi đọc dữ liệu file: " + cause.getMessage(), null, "UPLOAD_ATTACHMENTS_IO_ERROR");
+            }
+            return new ApiResponseDTO(false, "Lỗi khi upload ảnh/file: " + cause.getMessage(), null, "UPLOAD_ATTACHMENTS_ERROR");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return new ApiResponseDTO(false, "Upload ảnh/file bị gián đoạn", null, "UPLOAD_ATTACHMENTS_ERROR");
+        } catch (Exception ex) {
+            return new ApiResponseDTO(false, "Lỗi khi upload ảnh/file: " + ex.getMessage(), null, "UPLOAD_ATTACHMENTS_ERROR");
+        } finally {
+            // Lỗi giữa chừng: mọi blob worker đã ghi xong đều không được tham chiếu => để sweep dọn.
+            // Thành công: chỉ khi transaction rollback lúc commit
+            blobRefService.markUnreferencedAfterCompletion(writtenKeys(pending), saved);
         }
-        // Kiểm tra kích thước file (nên kiểm tra sau khi chắc chắn file != null)
-        if (file.getSize() > 5 * 1024 * 1024) {
-            return new ApiResponseDTO(false, "Kích thước file vượt quá 5MB", null, "FILE_TOO_LARGE");
+    }
+
+    // Key của các blob đã ghi xong; worker chưa chạy bị hủy, worker đang ghi được chờ xong để không sót file
+    private List<String> writtenKeys(List<Future<StoredBlob>> futures) {
+        boolean interrupted = Thread.interrupted();
+        List<String> keys = new ArrayList<>(futures.size());
+        for (Future<StoredBlob> future : futures) {
+            if (future.cancel(false)) {
+                continue;
+            }
+            try {
+                keys.add(future.get().storageKey());
+            } catch (ExecutionException | CancellationException ex) {
+                // Worker lỗi: không có blob nào được ghi
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
         }
-        try {
-            byte[] fileBytes = file.getBytes();
-            // byte[] compressedFile = CompressService.compress(fileBytes); // Nếu muốn nén file
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return keys;
+    }
 
-            StoredProcedureQuery query = entityManager.createStoredProcedureQuery("sp_save_post_file");
-            query.registerStoredProcedureParameter(1, Long.class, jakarta.persistence.ParameterMode.IN);
-            query.registerStoredProcedureParameter(2, byte[].class, jakarta.persistence.ParameterMode.IN);
-            query.registerStoredProcedureParameter(3, String.class, jakarta.persistence.ParameterMode.IN);
-            query.registerStoredProcedureParameter(4, String.class, jakarta.persistence.ParameterMode.IN);
+    private ApiResponseDTO withFileName(ApiResponseDTO invalid, MultipartFile file) {
+        String name = file != null ? file.getOriginalFilename() : null;
+        if (name == null || name.isEmpty()) {
+            return invalid;
+        }
+        return new ApiResponseDTO(false, name + ": " + invalid.getMessage(), null, invalid.getErrors());
+    }
 
-            query.setParameter(1, postId);
-            query.setParameter(2, fileBytes); // hoặc compressedFile nếu muốn nén
-            query.setParameter(3, file.getOriginalFilename());
-            query.setParameter(4, contentType);
+    // JDBC batch trên kết nối của transaction; id lấy từ getGeneratedKeys theo đúng thứ tự dòng
+    // => không lẫn với dòng của lô khác cùng bài viết, cùng nội dung đang ghi đồng thời
+    private List<Long> insertAttachments(String table, String nameColumn, String typeColumn, Long postId,
+                                         List<MultipartFile> files, List<StoredBlob> blobs) {
+        if (files.isEmpty()) {
+            return List.of();
+        }
+        String sql = "INSERT INTO " + table + " (post_id, " + nameColumn + ", " + typeColumn +
+                ", storage_key, content_length, codec) VALUES (?, ?, ?, ?, ?, ?)";
+        List<String> storageKeys = new ArrayList<>(files.size());
+        List<Long> ids = entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement insert = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                for (int i = 0; i < files.size(); i++) {
+                    MultipartFile file = files.get(i);
+                    StoredBlob blob = blobs.get(i);
+                    insert.setLong(1, postId);
+                    insert.setString(2, file.getOriginalFilename());
+                    insert.setString(3, file.getContentType());
+                    insert.setString(4, blob.storageKey());
+                    insert.setLong(5, blob.contentLength());
+                    insert.setString(6, blob.codec().storedName());
+                    insert.addBatch();
+                    storageKeys.add(blob.storageKey());
+                }
+                insert.executeBatch();
+                List<Long> generated = new ArrayList<>(files.size());
+                try (ResultSet keys = insert.getGeneratedKeys()) {
+                    while (keys.next()) {
+                        generated.add(keys.getLong(1));
+                    }
+                }
+                return generated;
+            }
+        });
+        blobRefService.acquire(storageKeys);
+        return ids;
+    }
 
-            query.execute();
+    @PreDestroy
+    public void shutdownAttachmentExecutor() {
+        attachmentExecutor.shutdownNow();
+    }
+
+    // Thêm phương thức upload file cho post
+    @Transactional
+    public ApiResponseDTO savePostFile(Long postId, MultipartFile file) {
+        // Kiểm tra null, empty, loại file, ... trước khi đọc dữ liệu file
+        if (!postRepository.existsById(postId)) {
+            return new ApiResponseDTO(false, "Bài viết không tồn tại", null, "POST_NOT_FOUND");
+        }
+        ApiResponseDTO invalid = validateFile(file);
+        if (invalid != null) {
+            return invalid;
+        }
+        String contentType = file.getContentType();
+        try {
+            storeAttachment("posts_file", "file_name", "file_type", postId, file, contentType);
 
             // Chỉ trả về post_id là đủ
             Map<String, Object> fileInfo = new HashMap<>();
@@ -697,6 +1345,21 @@ public ApiResponseDTO getPostImageById(Long imageId) {
         }
     }
 
+
+    // null nếu file hợp lệ; kiểm tra loại file trước khi đọc file.getSize()
+    private ApiResponseDTO validateFile(MultipartFile file) {
+        if (file == null || file.isEmpty()) {
+            return new ApiResponseDTO(false, "File không được để trống", null, "INVALID_FILE");
+        }
+        String contentType = file.getContentType();
+        if (contentType == null || !ALLOWED_FILE_TYPES.contains(contentType)) {
+            return new ApiResponseDTO(false, "Loại file không hợp lệ. Chỉ hỗ trợ pdf, doc, docx, xls, xlsx, ppt, pptx, txt, zip, rar, png, jpg.", null, "INVALID_FILE_TYPE");
+        }
+        if (file.getSize() > MAX_ATTACHMENT_SIZE) {
+            return new ApiResponseDTO(false, "Kích thước file vượt quá 5MB", null, "FILE_TOO_LARGE");
+        }
+        return null;
+    }
     
     // Save post cho user (dùng stored procedure)
     @Transactional
@@ -732,36 +1395,84 @@ public ApiResponseDTO getPostImageById(Long imageId) {
         }
     }
 
-    // Khi trả file về client, giải nén bằng CompressService
-@Transactional
-public ApiResponseDTO getPostFileById(Long fileId) {
+    // Trả file dạng stream; file lưu nguyên (codec store) hỗ trợ HTTP Range (tải tiếp, tải song song)
+@Transactional(readOnly = true)
+public ApiResponseDTO getPostFileById(Long fileId, String ifNoneMatch) {
     if (fileId == null || fileId <= 0) {
         return new ApiResponseDTO(false, "ID file không hợp lệ", null, "INVALID_FILE_ID");
     }
-    // Nếu có PostFileRepository thì kiểm tra tồn tại ở đây, ví dụ:
-    if (!postFileRepository.existsById(fileId)) {
-        return new ApiResponseDTO(false, "File không tồn tại", null, "FILE_NOT_FOUND");
-    }
     try {
-        String sql = "SELECT file_data, file_type, file_name FROM posts_file WHERE id = ?";
-        Object[] row = (Object[]) entityManager.createNativeQuery(sql)
-            .setParameter(1, fileId)
-            .getSingleResult();
-        if (row == null) {
+        AttachmentContentDTO content = openAttachment("posts_file", "file_data", "file_name", "file_type", fileId, false, ifNoneMatch);
+        if (content == null) {
             return new ApiResponseDTO(false, "File không tồn tại", null, "FILE_NOT_FOUND");
         }
-        byte[] decompressed = CompressService.decompress((byte[]) row[0]);
-        PostFileDTO dto = new PostFileDTO(
-            decompressed,
-            (String) row[1],
-            (String) row[2]
-        );
-        return new ApiResponseDTO(true, "Lấy file thành công", dto, null);
+        return new ApiResponseDTO(true, "Lấy file thành công", content, null);
     } catch (Exception ex) {
         return new ApiResponseDTO(false, "Lỗi khi lấy file: " + ex.getMessage(), null, "GET_FILE_ERROR");
     }
 }
 
+// Variant lưu nguyên (JPEG/PNG) trong blob store => FileSystemResource, hỗ trợ Range; null nếu chưa có variant phù hợp
+private AttachmentContentDTO openImageVariant(Long imageId, int width, String ifNoneMatch) throws IOException {
+    ImageVariantService.Variant variant = imageVariantService.findVariant(imageId, width);
+    if (variant == null) {
+        return null;
+    }
+    List<String> names = entityManager.createNativeQuery("SELECT image_name FROM posts_image WHERE id = :id")
+            .setParameter("id", imageId)
+            .getResultList();
+    if (names.isEmpty()) {
+        return null;
+    }
+    String etag = ETags.strong(variant.storageKey());
+    Resource body = ETags.matches(ifNoneMatch, etag) ? null : blobStore.getResource(variant.storageKey());
+    return new AttachmentContentDTO(names.get(0), variant.contentType(), variant.contentLength(), etag, body);
+}
+
+// Đọc metadata trước (không chạm cột LONGBLOB); dữ liệu lấy từ blob store, chỉ dòng cũ chưa chuyển mới đọc cột LONGBLOB.
+// Dữ liệu lưu dạng deflate (theo cột codec; dòng cũ: legacyDeflated) => bọc InflaterInputStream
+// (InputStreamResource: Spring không áp dụng Range); codec store => trả thẳng Resource của blob.
+// ETag = storage_key (hash nội dung lúc upload); If-None-Match khớp => trả về body null, không mở dữ liệu
+private AttachmentContentDTO openAttachment(String table, String dataColumn, String nameColumn, String typeColumn,
+                                            Long id, boolean legacyDeflated, String ifNoneMatch) throws IOException {
+    List<Object[]> rows = entityManager.createNativeQuery(
+                    "SELECT " + nameColumn + ", " + typeColumn + ", storage_key, content_length, codec FROM " + table + " WHERE id = :id")
+            .setParameter("id", id)
+            .getResultList();
+    if (rows.isEmpty()) {
+        return null;
+    }
+    Object[] row = rows.get(0);
+    String storageKey = (String) row[2];
+    Long contentLength = row[3] != null ? ((Number) row[3]).longValue() : null;
+    boolean deflated = CompressionPolicy.isDeflated((String) row[4], legacyDeflated);
+    // Dòng cũ chưa có hash: id cũng định danh nội dung vì ảnh/file không bao giờ bị sửa
+    String etag = ETags.strong(storageKey != null ? storageKey : table + "-" + id);
+    if (ETags.matches(ifNoneMatch, etag)) {
+        return new AttachmentContentDTO((String) row[0], (String) row[1], contentLength, etag, null);
+    }
+    Resource stored;
+    if (storageKey != null) {
+        stored = blobStore.getResource(storageKey);
+    } else {
+        byte[] legacyData = (byte[]) entityManager.createNativeQuery(
+                        "SELECT " + dataColumn + " FROM " + table + " WHERE id = :id")
+                .setParameter("id", id)
+                .getSingleResult();
+        if (legacyData == null) {
+            return null;
+        }
+        stored = new ByteArrayResource(legacyData);
+    }
+    Resource body = deflated
+            ? new InputStreamResource(CompressService.inflatingStream(stored.getInputStream()))
+            : stored;
+    if (!deflated && contentLength == null) {
+        contentLength = stored.contentLength();
+    }
+    return new AttachmentContentDTO((String) row[0], (String) row[1], contentLength, etag, body);
+}
+
 // Đếm tổng số bài viết cho home hoặc popular
 @Transactional(readOnly = true)
 public ApiResponseDTO countPostsHomePopular() {
@@ -820,10 +1531,24 @@ public ApiResponseDTO countPostsByChildTag(String childTag) {
 @Transactional(readOnly = true)
 public ApiResponseDTO countPostsBySearch(String keyword) {
     try {
+        // Tổng số đã có trong cache kết quả tìm kiếm (searchPosts thường được gọi ngay trước)
+        String cacheKey = SearchCacheService.key(keyword);
+        SearchCacheService.CachedResult cached = searchCacheService.get(cacheKey);
+        if (cached != null && cached.total() >= 0) {
+            return new ApiResponseDTO(true, "Tổng số bài viết theo tìm kiếm", cached.total(), null);
+        }
+        long cacheGeneration = searchCacheService.currentGeneration();
+        // Chỉ mục trong bộ nhớ: đếm bằng một lượt duyệt postings, không quét bảng posts
+        SearchIndexService.SearchPage hits = searchIndexService.search(keyword, 0, 0);
+        if (hits != null) {
+            searchCacheService.putTotal(cacheKey, hits.total(), cacheGeneration);
+            return new ApiResponseDTO(true, "Tổng số bài viết theo tìm kiếm", (long) hits.total(), null);
+        }
         Object result = entityManager.createNativeQuery("CALL sp_count_posts_by_search(?)")
             .setParameter(1, keyword)
             .getSingleResult();
         Long total = (result instanceof Number) ? ((Number) result).longValue() : 0L;
+        searchCacheService.putTotal(cacheKey, total, cacheGeneration);
         return new ApiResponseDTO(true, "Tổng số bài viết theo tìm kiếm", total, null);
     } catch (Exception ex) {
         return new ApiResponseDTO(false, "Lỗi khi đếm bài viết theo tìm kiếm: " + ex.getMessage(), null, "COUNT_SEARCH_ERROR");
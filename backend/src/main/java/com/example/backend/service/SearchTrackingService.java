@@ -0,0 +1,129 @@
+package com.example.backend.service;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.CallableStatement;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+// Ghi lịch sử tìm kiếm (sp_track_user_search) ngoài luồng request:
+// - Request chỉ offer vào hàng đợi có giới hạn; đầy thì bỏ sự kiện và đếm (tracking không được làm chậm tìm kiếm)
+// - Flusher chạy mỗi flush-interval-ms: gộp các cặp (user, từ khóa) trùng trong cùng chu kỳ (tải lại trang, bấm tìm
+//   nhiều lần) rồi gọi SP trong 1 transaction, 1 kết nối. Lưu ý: MySQL Connector/J chạy batch CallableStatement
+//   lần lượt từng lời gọi (không gộp round trip), lợi ích là chỉ 1 lần lấy kết nối + 1 commit cho cả chu kỳ
+// - Lô lỗi: ghi lại từng sự kiện trong transaction riêng, chỉ bỏ (và log) sự kiện bị lỗi
+@Service
+public class SearchTrackingService {
+
+    private record SearchEvent(long userId, String keyword) {
+    }
+
+    private static final int MAX_CALLS_PER_BATCH = 500;
+    // Lỗi liên tiếp khi ghi lại từng sự kiện => nhiều khả năng DB đang lỗi chứ không phải dữ liệu: bỏ phần còn lại
+    private static final int MAX_CONSECUTIVE_FAILURES = 3;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final BlockingQueue<SearchEvent> queue;
+    private final LongAdder dropped = new LongAdder();
+    private final Object flushLock = new Object();
+
+    public SearchTrackingService(@Value("${search.tracking.queue-capacity:10000}") int queueCapacity) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+    }
+
+    public void record(Long userId, String keyword) {
+        if (userId == null || keyword == null || keyword.trim().isEmpty()) {
+            return;
+        }
+        if (!queue.offer(new SearchEvent(userId, keyword))) {
+            dropped.increment();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${search.tracking.flush-interval-ms:1000}")
+    public void flush() {
+        synchronized (flushLock) {
+            long droppedSinceLastFlush = dropped.sumThenReset();
+            if (droppedSinceLastFlush > 0) {
+                System.err.println("Hàng đợi tracking tìm kiếm đầy, đã bỏ " + droppedSinceLastFlush + " sự kiện");
+            }
+            List<SearchEvent> events = new ArrayList<>();
+            queue.drainTo(events);
+            if (events.isEmpty()) {
+                return;
+            }
+            List<SearchEvent> unique = new ArrayList<>(new LinkedHashSet<>(events));
+            TransactionTemplate tx = new TransactionTemplate(transactionManager);
+            try {
+                tx.executeWithoutResult(status -> writeBatch(unique));
+            } catch (Exception ex) {
+                // Cả lô đã rollback: ghi lại từng sự kiện để một sự kiện hỏng không kéo theo cả chu kỳ
+                retryIndividually(tx, unique);
+            }
+        }
+    }
+
+    private void retryIndividually(TransactionTemplate tx, List<SearchEvent> events) {
+        int failed = 0;
+        int consecutive = 0;
+        String lastError = null;
+        for (SearchEvent event : events) {
+            if (consecutive >= MAX_CONSECUTIVE_FAILURES) {
+                failed++;
+                continue;
+            }
+            try {
+                tx.executeWithoutResult(status -> writeBatch(List.of(event)));
+                consecutive = 0;
+            } catch (Exception ex) {
+                failed++;
+                consecutive++;
+                lastError = ex.getMessage();
+            }
+        }
+        if (failed > 0) {
+            System.err.println("Track user search failed (" + failed + "/" + events.size() + " sự kiện bị bỏ): " + lastError);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    // Schema bảng tracking nằm trong SP nên vẫn gọi SP, nhưng dồn các lời gọi vào JDBC batch trên cùng kết nối
+    private void writeBatch(List<SearchEvent> events) {
+        entityManager.unwrap(Session.class).doWork(connection -> {
+            try (CallableStatement call = connection.prepareCall("{call sp_track_user_search(?, ?)}")) {
+                for (int i = 0; i < events.size(); i++) {
+                    SearchEvent event = events.get(i);
+                    call.setLong(1, event.userId());
+                    call.setString(2, event.keyword());
+                    call.addBatch();
+                    if ((i + 1) % MAX_CALLS_PER_BATCH == 0) {
+                        call.executeBatch();
+                    }
+                }
+                call.executeBatch();
+            }
+        });
+    }
+}
@@ -3,8 +3,10 @@ package com.example.backend.service;
 import com.example.backend.dto.common.ApiResponseDTO;
 import com.example.backend.dto.common.UserDTO;
 import com.example.backend.dto.request.UpdateUserRequestDTO;
+import com.example.backend.dto.response.AttachmentContentDTO;
 import com.example.backend.entity.User;
 import com.example.backend.repository.UserRepository;
+import com.example.backend.util.AvatarUrls;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.StoredProcedureQuery;
@@ -14,7 +16,6 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -30,6 +31,12 @@ public class UserService {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private ViewerStateService viewerStateService;
+
+    @Autowired
+    private AvatarService avatarService;
+
     @PersistenceContext
     private EntityManager entityManager;
 
@@ -112,10 +119,11 @@ public class UserService {
             query.setParameter("p_user_id", userId);
             query.setParameter("p_limit", limit);
             query.setParameter("p_offset", offset);
-            query.setParameter("p_viewer_id", viewerId);
+            query.setParameter("p_viewer_id", null);
 
             List<Object[]> results = query.getResultList();
             List<Map<String, Object>> formattedResults = convertUserPostsToKeyValue(results);
+            viewerStateService.applyPostFlags(formattedResults, viewerId);
             return new ApiResponseDTO(true, "Lấy bài viết của user thành công", formattedResults, null);
         } catch (Exception ex) {
             return new ApiResponseDTO(false, "Lỗi khi lấy bài viết của user: " + ex.getMessage(), null,
@@ -134,15 +142,26 @@ public class UserService {
             post.put("comment_count", row[4]);
             post.put("created_at", row[5]);
             post.put("user_name", row[6]);
-            post.put("user_avatar", row[7]);
+            post.put("user_avatar", AvatarUrls.of(row[7], AvatarUrls.LIST_SIZE));
             post.put("author_id", row[8]);
-            post.put("is_liked", row.length > 9 ? row[9] : false);
-            post.put("is_saved", row.length > 10 ? row[10] : false);
             formattedResults.add(post);
         }
         return formattedResults;
     }
 
+    // Trả avatar theo key (users.avatar); size chọn 64/128/256px
+    public ApiResponseDTO getAvatar(String key, Integer size, String ifNoneMatch) {
+        try {
+            AttachmentContentDTO content = avatarService.open(key, size, ifNoneMatch);
+            if (content == null) {
+                return new ApiResponseDTO(false, "Avatar không tồn tại", null, "AVATAR_NOT_FOUND");
+            }
+            return new ApiResponseDTO(true, "Lấy avatar thành công", content, null);
+        } catch (Exception ex) {
+            return new ApiResponseDTO(false, "Lỗi khi lấy avatar: " + ex.getMessage(), null, "GET_AVATAR_ERROR");
+        }
+    }
+
     // Hàm duy nhất cập nhật thông tin user, xác thực bằng mật khẩu hiện tại
     @Transactional
     public ApiResponseDTO updateUser(Long userId, UpdateUserRequestDTO request) {
@@ -191,17 +210,14 @@ public class UserService {
                 }
             }
             if (request.getAvatar() != null && !request.getAvatar().isEmpty()) {
-                String uploadDir = "uploads/avatars/";
-                File dir = new File(uploadDir);
-                if (!dir.exists()) dir.mkdirs();
-                String fileName = "avatar_" + userId + "_" + System.currentTimeMillis() + "_" + request.getAvatar().getOriginalFilename();
-                File dest = new File(uploadDir + fileName);
-                request.getAvatar().transferTo(dest);
-                user.setAvatar(fileName);
+                // Cắt vuông + thu về các kích thước cố định, users.avatar giữ key để tải qua /api/users/avatar/{key}
+                user.setAvatar(avatarService.store(request.getAvatar()));
             }
 
             userRepository.save(user);
             return new ApiResponseDTO(true, "Cập nhật thông tin user thành công", null, null);
+        } catch (IllegalArgumentException ex) {
+            return new ApiResponseDTO(false, ex.getMessage(), null, "INVALID_AVATAR");
         } catch (IOException ex) {
             return new ApiResponseDTO(false, "Lỗi khi upload avatar: " + ex.getMessage(), null, "UPLOAD_AVATAR_ERROR");
         } catch (Exception ex) {
@@ -0,0 +1,82 @@
+package com.example.backend.service;
+
+import com.example.backend.util.LongHashSet;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Trạng thái riêng của người xem (is_liked, is_saved) tách khỏi dữ liệu bài viết dùng chung.
+// Feed/chi tiết bài viết lấy dữ liệu không phụ thuộc người xem, sau đó gắn cờ bằng 2 truy vấn IN (...) cho cả trang
+@Service
+public class ViewerStateService {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private LikeBufferService likeBufferService;
+
+    public void applyPostFlags(List<Map<String, Object>> posts, Long viewerId) {
+        if (posts.isEmpty()) {
+            return;
+        }
+        LongHashSet likedPostIds = new LongHashSet(0);
+        LongHashSet savedPostIds = new LongHashSet(0);
+        if (viewerId != null) {
+            List<Long> postIds = new ArrayList<>(posts.size());
+            for (Map<String, Object> post : posts) {
+                postIds.add(((Number) post.get("id")).longValue());
+            }
+            // Like/unlike chưa flush (chế độ ghi dồn lô) được ưu tiên hơn dữ liệu trong DB
+            likedPostIds = likeBufferService.applyPending(LikeBufferService.Target.POST, viewerId, postIds,
+                    loadLikedPostIds(viewerId, postIds));
+            savedPostIds = loadSavedPostIds(viewerId, postIds);
+        }
+        for (Map<String, Object> post : posts) {
+            long postId = ((Number) post.get("id")).longValue();
+            post.put("is_liked", likedPostIds.contains(postId));
+            post.put("is_saved", savedPostIds.contains(postId));
+        }
+    }
+
+    // is_liked của 1 bài viết đã đọc từ DB (chi tiết bài viết), gộp với like/unlike chưa flush
+    public boolean resolvePostLiked(long postId, Long viewerId, boolean persistedLiked) {
+        if (viewerId == null) {
+            return false;
+        }
+        Boolean pending = likeBufferService.isEnabled()
+                ? likeBufferService.pendingState(LikeBufferService.Target.POST, postId, viewerId)
+                : null;
+        return pending != null ? pending : persistedLiked;
+    }
+
+    public LongHashSet loadLikedPostIds(Long viewerId, List<Long> postIds) {
+        return loadPostIdSet("SELECT post_id FROM post_likes WHERE liker_id = :viewerId AND post_id IN (:postIds)",
+                viewerId, postIds);
+    }
+
+    public LongHashSet loadSavedPostIds(Long viewerId, List<Long> postIds) {
+        return loadPostIdSet("SELECT post_id FROM post_saves WHERE user_id = :viewerId AND post_id IN (:postIds)",
+                viewerId, postIds);
+    }
+
+    private LongHashSet loadPostIdSet(String sql, Long viewerId, List<Long> postIds) {
+        if (viewerId == null || postIds.isEmpty()) {
+            return new LongHashSet(0);
+        }
+        List<Number> rows = entityManager.createNativeQuery(sql)
+                .setParameter("viewerId", viewerId)
+                .setParameter("postIds", postIds)
+                .getResultList();
+        LongHashSet ids = new LongHashSet(rows.size());
+        for (Number id : rows) {
+            ids.add(id.longValue());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.backend.storage;
+
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+
+// Kho lưu dữ liệu nhị phân (ảnh/file bài viết) ngoài MySQL; MySQL chỉ giữ metadata và storage_key.
+// Key được tính từ nội dung (content-addressed) nên cùng một nội dung chỉ lưu một lần
+public interface BlobStore {
+
+    // Ghi dữ liệu theo kiểu stream (upload lớn): nội dung do writer đẩy vào, không cần giữ cả blob trên heap
+    @FunctionalInterface
+    interface BlobWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    // Lưu dữ liệu, trả về key (SHA-256 hex của dữ liệu); đã tồn tại thì không ghi lại nhưng cập nhật thời điểm ghi
+    String put(byte[] data) throws IOException;
+
+    // Giống put(byte[]) nhưng hash được tính trong lúc ghi ra file tạm; trùng nội dung thì bỏ file tạm
+    String put(BlobWriter writer) throws IOException;
+
+    byte[] get(String key) throws IOException;
+
+    // Đọc dạng stream; Resource trỏ thẳng tới file (nếu có) để Spring hỗ trợ Range và không nạp cả blob vào heap
+    Resource getResource(String key) throws IOException;
+
+    boolean exists(String key);
+
+    void delete(String key) throws IOException;
+
+    // Chỉ xóa nếu blob không được put (kể cả put trùng nội dung) kể từ cutoff; trả về true nếu đã xóa
+    boolean deleteIfUnchangedSince(String key, Instant cutoff) throws IOException;
+}
@@ -0,0 +1,179 @@
+package com.example.backend.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+
+// Lưu blob trên đĩa cục bộ: <root>/ab/cd/abcd...(64 ký tự hex SHA-256).
+// Chia 2 cấp thư mục để mỗi thư mục không chứa quá nhiều file
+@Component
+@ConditionalOnProperty(name = "blob.store.type", havingValue = "local", matchIfMissing = true)
+public class LocalBlobStore implements BlobStore {
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final Path root;
+    private final Path tmpDir;
+    private final Object[] locks = new Object[64];
+
+    public LocalBlobStore(@Value("${blob.store.root:uploads/blobs}") String root) throws IOException {
+        this.root = Paths.get(root).toAbsolutePath().normalize();
+        this.tmpDir = this.root.resolve("tmp");
+        Files.createDirectories(tmpDir);
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @Override
+    public String put(byte[] data) throws IOException {
+        String key = sha256Hex(data);
+        Path target = pathOf(key);
+        if (touch(key, target)) {
+            return key;
+        }
+        Files.createDirectories(target.getParent());
+        // Ghi ra file tạm rồi đổi tên: người đọc không bao giờ thấy file ghi dở
+        Path tmp = Files.createTempFile(tmpDir, key, ".part");
+        try {
+            Files.write(tmp, data);
+            moveIntoPlace(tmp, target);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return key;
+    }
+
+    @Override
+    public String put(BlobWriter writer) throws IOException {
+        Path tmp = Files.createTempFile(tmpDir, "upload", ".part");
+        try {
+            MessageDigest digest = newSha256();
+            try (OutputStream out = new DigestOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp), WRITE_BUFFER_SIZE), digest)) {
+                writer.writeTo(out);
+            }
+            String key = HexFormat.of().formatHex(digest.digest());
+            Path target = pathOf(key);
+            if (!touch(key, target)) {
+                Files.createDirectories(target.getParent());
+                moveIntoPlace(tmp, target);
+            }
+            return key;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Override
+    public byte[] get(String key) throws IOException {
+        Path path = pathOf(key);
+        if (!Files.exists(path)) {
+            throw new FileNotFoundException("Không tìm thấy blob " + key);
+        }
+        return Files.readAllBytes(path);
+    }
+
+    @Override
+    public Resource getResource(String key) throws IOException {
+        Path path = pathOf(key);
+        if (!Files.exists(path)) {
+            throw new FileNotFoundException("Không tìm thấy blob " + key);
+        }
+        return new FileSystemResource(path);
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.exists(pathOf(key));
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(pathOf(key));
+    }
+
+    @Override
+    public boolean deleteIfUnchangedSince(String key, Instant cutoff) throws IOException {
+        Path path = pathOf(key);
+        synchronized (lockFor(key)) {
+            try {
+                if (Files.getLastModifiedTime(path).toInstant().isAfter(cutoff)) {
+                    return false;
+                }
+            } catch (NoSuchFileException ex) {
+                return false;
+            }
+            return Files.deleteIfExists(path);
+        }
+    }
+
+    // Upload trùng nội dung: cập nhật mtime để BlobRefService không xóa blob trong lúc upload chưa commit.
+    // false nếu blob chưa có (hoặc vừa bị xóa) => caller ghi mới
+    private boolean touch(String key, Path target) throws IOException {
+        synchronized (lockFor(key)) {
+            try {
+                Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+                return true;
+            } catch (NoSuchFileException ex) {
+                return false;
+            }
+        }
+    }
+
+    // Khóa phân dải theo key: kiểm tra mtime + xóa không xen giữa với touch của upload cùng nội dung
+    private Object lockFor(String key) {
+        return locks[(key.hashCode() & 0x7fffffff) % locks.length];
+    }
+
+    private void moveIntoPlace(Path tmp, Path target) throws IOException {
+        try {
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException ex) {
+            // Request khác vừa lưu cùng nội dung
+        } catch (AtomicMoveNotSupportedException ex) {
+            if (!Files.exists(target)) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    private Path pathOf(String key) {
+        if (key == null || !key.matches("[0-9a-f]{64}")) {
+            throw new IllegalArgumentException("Storage key không hợp lệ");
+        }
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+
+    static String sha256Hex(byte[] data) {
+        return HexFormat.of().formatHex(newSha256().digest(data));
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
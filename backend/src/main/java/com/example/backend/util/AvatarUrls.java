@@ -0,0 +1,29 @@
+package com.example.backend.util;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+// users.avatar giữ key file ("<sha256>.jpg" hoặc tên file avatar cũ) hoặc URL ngoài (ảnh Google/Facebook).
+// Mọi DTO/dòng trả về client phải đi qua đây để client luôn nhận được URL dùng thẳng trong <img src>
+public final class AvatarUrls {
+
+    public static final int LIST_SIZE = 64;
+    public static final int PROFILE_SIZE = 256;
+
+    private static final String AVATAR_PATH = "/api/users/avatar/";
+
+    private AvatarUrls() {
+    }
+
+    public static String of(Object stored, int size) {
+        if (stored == null) {
+            return null;
+        }
+        String value = stored.toString();
+        // URL tuyệt đối, đường dẫn hay data URI đã dùng được trực tiếp; key thì không bao giờ chứa '/' hay ':'
+        if (value.isBlank() || value.indexOf('/') >= 0 || value.indexOf(':') >= 0) {
+            return value;
+        }
+        return AVATAR_PATH + URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20") + "?size=" + size;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.backend.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Mã hóa/giải mã con trỏ phân trang (keyset) thành chuỗi mờ cho client, ví dụ (created_at, id)
+public final class CursorCodec {
+
+    private CursorCodec() {
+    }
+
+    public static String encode(long... parts) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) sb.append(':');
+            sb.append(parts[i]);
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(sb.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // Trả về null nếu cursor rỗng (trang đầu); ném IllegalArgumentException nếu cursor sai định dạng
+    public static long[] decode(String cursor, int expectedParts) {
+        long[] parts = decode(cursor);
+        if (parts != null && parts.length != expectedParts) {
+            throw new IllegalArgumentException("Cursor không hợp lệ");
+        }
+        return parts;
+    }
+
+    // Không kiểm tra số phần: dùng khi một endpoint phát ra nhiều loại cursor (phân biệt theo số phần)
+    public static long[] decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.US_ASCII);
+            String[] tokens = raw.split(":");
+            long[] parts = new long[tokens.length];
+            for (int i = 0; i < tokens.length; i++) {
+                parts[i] = Long.parseLong(tokens[i]);
+            }
+            return parts;
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Cursor không hợp lệ", ex);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.backend.util;
+
+// ETag mạnh cho nội dung bất biến (ảnh/file đính kèm, avatar): giá trị là hash nội dung đã lưu lúc upload
+public final class ETags {
+
+    private ETags() {
+    }
+
+    public static String strong(String value) {
+        return "\"" + value + "\"";
+    }
+
+    // So khớp header If-None-Match (có thể là danh sách, "*" hoặc dạng W/"...") với ETag của tài nguyên
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank() || etag == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.backend.util;
+
+// Tập hợp long nguyên thủy (open addressing, dò tuyến tính) - tránh boxing Long khi tra cứu số lượng lớn id
+public class LongHashSet {
+
+    private static final long EMPTY = 0L;
+
+    private long[] keys;
+    private int size;
+    private boolean containsZero;
+
+    public LongHashSet() {
+        this(16);
+    }
+
+    public LongHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2) - 1) << 1;
+        keys = new long[capacity];
+    }
+
+    public boolean add(long value) {
+        if (value == EMPTY) {
+            if (containsZero) return false;
+            containsZero = true;
+            size++;
+            return true;
+        }
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length << 1);
+        }
+        int mask = keys.length - 1;
+        int idx = mix(value) & mask;
+        while (keys[idx] != EMPTY) {
+            if (keys[idx] == value) return false;
+            idx = (idx + 1) & mask;
+        }
+        keys[idx] = value;
+        size++;
+        return true;
+    }
+
+    public boolean contains(long value) {
+        if (value == EMPTY) return containsZero;
+        int mask = keys.length - 1;
+        int idx = mix(value) & mask;
+        while (keys[idx] != EMPTY) {
+            if (keys[idx] == value) return true;
+            idx = (idx + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private void resize(int newCapacity) {
+        long[] old = keys;
+        keys = new long[newCapacity];
+        int mask = newCapacity - 1;
+        for (long value : old) {
+            if (value == EMPTY) continue;
+            int idx = mix(value) & mask;
+            while (keys[idx] != EMPTY) {
+                idx = (idx + 1) & mask;
+            }
+            keys[idx] = value;
+        }
+    }
+
+    // Trộn bit để id tăng dần không dồn cụm vào cùng vùng bảng băm
+    private static int mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
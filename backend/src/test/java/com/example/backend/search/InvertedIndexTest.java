@@ -0,0 +1,194 @@
+package com.example.backend.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InvertedIndexTest {
+
+	private static List<String> terms(String text) {
+		return text.isEmpty() ? List.of() : List.of(text.split(" "));
+	}
+
+	private static InvertedIndex.Hits search(InvertedIndex index, String required, int topK) {
+		return index.search(terms(required), topK);
+	}
+
+	@Test
+	void everyRequiredTermMustMatch() {
+		InvertedIndex index = new InvertedIndex();
+		index.add(1L, terms("java spring"), List.of());
+		index.add(2L, terms("java"), List.of());
+		index.add(3L, terms("spring"), terms("boot java"));
+
+		InvertedIndex.Hits hits = search(index, "java spring", 10);
+
+		assertEquals(Set.of(1L, 3L), new HashSet<>(hits.postIds()));
+		assertEquals(2, hits.total());
+		assertEquals(0, search(index, "java kotlin", 10).total());
+		assertEquals(0, search(index, "", 10).total());
+	}
+
+	// Term hiếm dẫn đầu phải nhảy (advance) qua các doc chỉ chứa term phổ biến
+	@Test
+	void rareTermLeadsAndSkipsCommonPostings() {
+		InvertedIndex index = new InvertedIndex();
+		List<Long> expected = new ArrayList<>();
+		for (long id = 1; id <= 1000; id++) {
+			boolean rare = id % 100 == 0;
+			index.add(id, List.of(), rare ? terms("common rare") : terms("common"));
+			if (rare) {
+				expected.add(id);
+			}
+		}
+
+		InvertedIndex.Hits hits = search(index, "common rare", 100);
+
+		assertEquals(10, hits.total());
+		assertEquals(new HashSet<>(expected), new HashSet<>(hits.postIds()));
+	}
+
+	@Test
+	void removedAndReplacedPostsAreNotReturned() {
+		InvertedIndex index = new InvertedIndex();
+		index.add(1L, terms("linux"), List.of());
+		index.add(2L, terms("linux"), List.of());
+		index.add(3L, terms("linux"), List.of());
+
+		index.remove(2L);
+		// Sửa bài: nội dung cũ bị đánh dấu xóa, nội dung mới thay thế
+		index.add(3L, terms("windows"), List.of());
+
+		assertEquals(List.of(1L), search(index, "linux", 10).postIds());
+		assertEquals(List.of(3L), search(index, "windows", 10).postIds());
+		assertEquals(2, index.size());
+		index.remove(99L);
+		assertEquals(2, index.size());
+	}
+
+	@Test
+	void compactionRemapsSurvivingDocs() {
+		InvertedIndex index = new InvertedIndex();
+		for (long id = 1; id <= 3000; id++) {
+			index.add(id, List.of(), id % 2 == 0 ? terms("even all") : terms("odd all"));
+		}
+		// Xóa 2500 bài (> 1000 và > 1/4 số doc) => nén lại postings
+		for (long id = 1; id <= 2500; id++) {
+			index.remove(id);
+		}
+		index.add(5000L, terms("even"), terms("all"));
+
+		InvertedIndex.Hits even = search(index, "even", 1000);
+		assertEquals(251, even.total());
+		assertTrue(even.postIds().contains(5000L));
+		assertTrue(even.postIds().stream().allMatch(id -> id == 5000L || (id > 2500 && id % 2 == 0)));
+		assertEquals(250, search(index, "odd", 1000).total());
+		assertEquals(501, search(index, "all", 0).total());
+		assertEquals(501, index.size());
+	}
+
+	@Test
+	void equalScoresPreferNewerPosts() {
+		InvertedIndex index = new InvertedIndex();
+		index.add(7L, terms("docker"), List.of());
+		index.add(3L, terms("docker"), List.of());
+		index.add(12L, terms("docker"), List.of());
+
+		assertEquals(List.of(12L, 7L, 3L), search(index, "docker", 10).postIds());
+	}
+
+	@Test
+	void titleMatchesOutrankContentMatches() {
+		InvertedIndex index = new InvertedIndex();
+		index.add(1L, terms("other"), terms("mysql"));
+		index.add(2L, terms("mysql"), terms("other"));
+
+		assertEquals(List.of(2L, 1L), search(index, "mysql", 10).postIds());
+	}
+
+	@Test
+	void optionalTermsOnlyBoost() {
+		InvertedIndex index = new InvertedIndex();
+		index.add(1L, terms("bao mat bảo"), List.of());
+		index.add(2L, terms("bao mat"), List.of());
+
+		InvertedIndex.Hits hits = index.search(terms("bao"), terms("bảo"), 10);
+
+		assertEquals(List.of(1L, 2L), hits.postIds());
+		assertEquals(2, hits.total());
+	}
+
+	@Test
+	void totalCountsAllMatchesBeyondTopK() {
+		InvertedIndex index = new InvertedIndex();
+		for (long id = 1; id <= 50; id++) {
+			index.add(id, terms("cv"), List.of());
+		}
+
+		InvertedIndex.Hits top = search(index, "cv", 5);
+		assertEquals(5, top.postIds().size());
+		assertEquals(50, top.total());
+
+		InvertedIndex.Hits countOnly = search(index, "cv", 0);
+		assertTrue(countOnly.postIds().isEmpty());
+		assertEquals(50, countOnly.total());
+	}
+
+	@Test
+	void hugeTopKDoesNotAllocateHugeHeap() {
+		InvertedIndex index = new InvertedIndex();
+		index.add(1L, terms("cv"), List.of());
+
+		assertDoesNotThrow(() -> search(index, "cv", Integer.MAX_VALUE));
+		assertEquals(List.of(1L), search(index, "cv", Integer.MAX_VALUE).postIds());
+	}
+
+	// So với mô hình ngây thơ qua nhiều lần thêm/sửa/xóa ngẫu nhiên (đi qua cả nhánh compact)
+	@Test
+	void matchesNaiveModelUnderRandomChanges() {
+		Random random = new Random(42);
+		String[] vocabulary = {"a", "b", "c", "d", "e", "f"};
+		InvertedIndex index = new InvertedIndex();
+		Map<Long, Set<String>> model = new HashMap<>();
+		for (int step = 0; step < 20_000; step++) {
+			long postId = 1 + random.nextInt(1500);
+			if (random.nextInt(4) == 0) {
+				index.remove(postId);
+				model.remove(postId);
+			} else {
+				List<String> content = new ArrayList<>();
+				for (String term : vocabulary) {
+					if (random.nextInt(3) == 0) {
+						content.add(term);
+					}
+				}
+				index.add(postId, List.of(), content);
+				model.put(postId, new HashSet<>(content));
+			}
+			if (step % 500 == 0) {
+				String first = vocabulary[random.nextInt(vocabulary.length)];
+				String second = vocabulary[random.nextInt(vocabulary.length)];
+				Set<Long> expected = new HashSet<>();
+				model.forEach((id, content) -> {
+					if (content.contains(first) && content.contains(second)) {
+						expected.add(id);
+					}
+				});
+				InvertedIndex.Hits hits = index.search(List.of(first, second), Integer.MAX_VALUE);
+				assertEquals(expected.size(), hits.total());
+				assertEquals(expected, new HashSet<>(hits.postIds()));
+			}
+		}
+		assertEquals(model.size(), index.size());
+	}
+}
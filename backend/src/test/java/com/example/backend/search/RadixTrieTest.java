@@ -0,0 +1,123 @@
+package com.example.backend.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RadixTrieTest {
+
+	private static RadixTrie.Entry<String> entry(String key, long weight) {
+		return new RadixTrie.Entry<>(key, weight, key);
+	}
+
+	private static List<String> keys(List<RadixTrie.Entry<String>> entries) {
+		return entries.stream().map(RadixTrie.Entry::key).toList();
+	}
+
+	private static RadixTrie<String> sample() {
+		return RadixTrie.build(List.of(
+				entry("spring", 5),
+				entry("spring boot", 40),
+				entry("spring security", 20),
+				entry("sql", 30),
+				entry("linux", 10)), 10);
+	}
+
+	@Test
+	void lookupReturnsPrefixMatchesByWeight() {
+		RadixTrie<String> trie = sample();
+
+		assertEquals(List.of("spring boot", "sql", "spring security", "spring"), keys(trie.lookup("s", 10)));
+		assertEquals(List.of("spring boot", "spring security", "spring"), keys(trie.lookup("spring", 10)));
+		assertEquals(List.of("spring boot", "spring security"), keys(trie.lookup("spring ", 10)));
+	}
+
+	@Test
+	void lookupStopsInsideEdgeLabel() {
+		RadixTrie<String> trie = sample();
+
+		assertEquals(List.of("spring security"), keys(trie.lookup("spring sec", 10)));
+		assertEquals(List.of("linux"), keys(trie.lookup("lin", 10)));
+	}
+
+	@Test
+	void unknownPrefixReturnsNothing() {
+		RadixTrie<String> trie = sample();
+
+		assertTrue(trie.lookup("spring x", 10).isEmpty());
+		assertTrue(trie.lookup("java", 10).isEmpty());
+		assertTrue(trie.lookup("linux kernel", 10).isEmpty());
+	}
+
+	@Test
+	void limitAndTopKBoundResults() {
+		RadixTrie<String> trie = RadixTrie.build(List.of(entry("a1", 1), entry("a2", 2), entry("a3", 3), entry("a4", 4)), 3);
+
+		assertEquals(List.of("a4", "a3"), keys(trie.lookup("a", 2)));
+		assertEquals(List.of("a4", "a3", "a2"), keys(trie.lookup("a", 10)));
+		assertEquals(List.of("a4", "a3", "a2"), keys(trie.lookup("", 10)));
+	}
+
+	@Test
+	void duplicateKeysKeepHeavierEntryAndEmptyKeysAreSkipped() {
+		RadixTrie<String> trie = RadixTrie.build(List.of(
+				new RadixTrie.Entry<>("cv", 1, "light"),
+				new RadixTrie.Entry<>("cv", 9, "heavy"),
+				new RadixTrie.Entry<>("", 100, "empty")), 10);
+
+		assertEquals(1, trie.size());
+		assertEquals("heavy", trie.lookup("c", 10).get(0).value());
+	}
+
+	@Test
+	void emptyTrieReturnsNothing() {
+		RadixTrie<String> trie = RadixTrie.build(List.of(), 10);
+
+		assertEquals(0, trie.size());
+		assertTrue(trie.lookup("a", 10).isEmpty());
+	}
+
+	@Test
+	void matchesBruteForceOnRandomKeys() {
+		Random random = new Random(7);
+		String alphabet = "ab c";
+		List<RadixTrie.Entry<String>> entries = new ArrayList<>();
+		Map<String, Long> best = new HashMap<>();
+		for (int i = 0; i < 5000; i++) {
+			StringBuilder key = new StringBuilder();
+			int length = 1 + random.nextInt(8);
+			for (int j = 0; j < length; j++) {
+				key.append(alphabet.charAt(random.nextInt(alphabet.length())));
+			}
+			long weight = random.nextInt(1_000_000);
+			entries.add(entry(key.toString(), weight));
+			best.merge(key.toString(), weight, Math::max);
+		}
+		RadixTrie<String> trie = RadixTrie.build(entries, 8);
+
+		for (int i = 0; i < 500; i++) {
+			StringBuilder prefix = new StringBuilder();
+			int length = random.nextInt(5);
+			for (int j = 0; j < length; j++) {
+				prefix.append(alphabet.charAt(random.nextInt(alphabet.length())));
+			}
+			String p = prefix.toString();
+			List<Long> expected = best.entrySet().stream()
+					.filter(e -> e.getKey().startsWith(p))
+					.map(Map.Entry::getValue)
+					.sorted(Comparator.reverseOrder())
+					.limit(8)
+					.toList();
+			List<Long> actual = trie.lookup(p, 8).stream().map(RadixTrie.Entry::weight).toList();
+			assertEquals(expected, actual, "prefix '" + p + "'");
+		}
+	}
+}
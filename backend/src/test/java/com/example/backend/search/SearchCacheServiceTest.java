@@ -0,0 +1,114 @@
+package com.example.backend.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SearchCacheServiceTest {
+
+	private SearchCacheService cache;
+
+	@BeforeEach
+	void setUp() {
+		cache = new SearchCacheService();
+		ReflectionTestUtils.setField(cache, "enabled", true);
+		ReflectionTestUtils.setField(cache, "maxEntries", 100);
+		ReflectionTestUtils.setField(cache, "ttlSeconds", 300L);
+	}
+
+	private void fill(String keyword, List<Long> postIds, long readGeneration) {
+		cache.put(SearchCacheService.key(keyword), keyword, postIds, postIds.size(), readGeneration);
+	}
+
+	private boolean cached(String keyword) {
+		return cache.get(SearchCacheService.key(keyword)) != null;
+	}
+
+	// Bài viết mới khớp từ khóa đang nạp => kết quả đọc trước đó đã cũ
+	@Test
+	void fillRacingWithMatchingPostIsRejected() {
+		long readGeneration = cache.currentGeneration();
+		cache.evictMatching(9L, "Hướng dẫn Spring Boot");
+		fill("spring boot", List.of(1L, 2L), readGeneration);
+
+		assertNull(cache.get(SearchCacheService.key("spring boot")));
+	}
+
+	// Sửa bài không liên quan không chặn việc nạp từ khóa khác
+	@Test
+	void unrelatedEvictionDoesNotBlockFill() {
+		long readGeneration = cache.currentGeneration();
+		cache.evictMatching(9L, "Công thức nấu phở");
+		cache.evictPost(7L);
+		fill("spring boot", List.of(1L, 2L), readGeneration);
+
+		assertNotNull(cache.get(SearchCacheService.key("spring boot")));
+		assertEquals(List.of(1L, 2L), cache.get(SearchCacheService.key("spring boot")).postIds());
+	}
+
+	// Bài nằm trong kết quả đang nạp bị xóa => từ chối
+	@Test
+	void fillContainingDeletedPostIsRejected() {
+		long readGeneration = cache.currentGeneration();
+		cache.evictPost(2L);
+		fill("spring boot", List.of(1L, 2L), readGeneration);
+		fill("java", List.of(3L), readGeneration);
+
+		assertNull(cache.get(SearchCacheService.key("spring boot")));
+		assertNotNull(cache.get(SearchCacheService.key("java")));
+	}
+
+	@Test
+	void totalIsNotAddedAfterMatchingEviction() {
+		long readGeneration = cache.currentGeneration();
+		fill("java", List.of(3L), readGeneration);
+		cache.evictPost(3L);
+		fill("java", List.of(4L), cache.currentGeneration());
+		cache.putTotal(SearchCacheService.key("java"), 42, readGeneration);
+
+		assertEquals(1, cache.get(SearchCacheService.key("java")).total());
+	}
+
+	// Quá MAX_TRACKED_INVALIDATIONS lần xóa: không còn biết điều kiện cũ => kết quả đọc trước đó bị từ chối
+	@Test
+	void forgottenInvalidationsRejectOldReads() {
+		long readGeneration = cache.currentGeneration();
+		for (int i = 0; i <= SearchCacheService.MAX_TRACKED_INVALIDATIONS; i++) {
+			cache.evictPost(1000L + i);
+		}
+		fill("java", List.of(3L), readGeneration);
+		fill("spring", List.of(4L), cache.currentGeneration());
+
+		assertNull(cache.get(SearchCacheService.key("java")));
+		assertNotNull(cache.get(SearchCacheService.key("spring")));
+	}
+
+	// Chỉ xóa sau commit: transaction rollback giữ nguyên cache và không chặn lượt nạp đang chạy
+	@Test
+	void rolledBackWriteDoesNotEvict() {
+		fill("java", List.of(3L), cache.currentGeneration());
+		long readGeneration = cache.currentGeneration();
+
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			cache.evictPost(3L);
+			for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+				synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+			}
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+		fill("spring", List.of(3L), readGeneration);
+
+		assertNotNull(cache.get(SearchCacheService.key("java")));
+		assertNotNull(cache.get(SearchCacheService.key("spring")));
+	}
+}
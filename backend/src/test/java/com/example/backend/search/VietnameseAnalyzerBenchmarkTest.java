@@ -0,0 +1,110 @@
+package com.example.backend.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// Đo thông lượng (MB/s) của bộ phân tích trên một kho văn bản tiếng Việt sinh ngẫu nhiên.
+// Chỉ chạy khi bật: mvn test -Dbenchmark=true [-Dbenchmark.analyzer.mb=64]
+class VietnameseAnalyzerBenchmarkTest {
+
+	private static final String[] WORDS = (
+			"hướng dẫn cài đặt cấu hình bảo mật mạng máy tính lập trình java spring boot cơ sở dữ liệu "
+			+ "mysql truy vấn chỉ mục tìm kiếm tiếng việt người dùng bài viết bình luận đề cương môn học "
+			+ "kỳ thi sinh viên giảng viên thực tập tuyển dụng kinh nghiệm phỏng vấn định dạng tài liệu "
+			+ "và là của có các những cho được trong với một này đã thì để khi như từ nên vì đang rất "
+			+ "Docker Ubuntu Linux React TypeScript API HTTP 2024 v1.2 Đà Nẵng Hà Nội Thành phố Hồ Chí Minh")
+			.split(" ");
+	private static final int DOC_BYTES = 2 * 1024;
+	private static final int WARMUP_ROUNDS = 2;
+	private static final int MEASURED_ROUNDS = 3;
+
+	@Test
+	void indexTermsThroughput() {
+		assumeTrue(Boolean.getBoolean("benchmark"), "Bật bằng -Dbenchmark=true");
+		List<String> corpus = corpus(Integer.getInteger("benchmark.analyzer.mb", 32));
+		long corpusBytes = 0;
+		for (String doc : corpus) {
+			corpusBytes += doc.getBytes(StandardCharsets.UTF_8).length;
+		}
+
+		for (int i = 0; i < WARMUP_ROUNDS; i++) {
+			runIndexTerms(corpus);
+		}
+		double best = 0;
+		long sink = 0;
+		for (int i = 0; i < MEASURED_ROUNDS; i++) {
+			long start = System.nanoTime();
+			sink += runIndexTerms(corpus);
+			double seconds = (System.nanoTime() - start) / 1e9;
+			best = Math.max(best, corpusBytes / 1048576.0 / seconds);
+		}
+		System.out.printf("VietnameseAnalyzer.indexTerms: %.1f MB/s trên %.1f MB (%d term)%n",
+				best, corpusBytes / 1048576.0, sink / MEASURED_ROUNDS);
+		assertTrue(best > 0);
+	}
+
+	@Test
+	void foldThroughput() {
+		assumeTrue(Boolean.getBoolean("benchmark"), "Bật bằng -Dbenchmark=true");
+		List<String> corpus = corpus(Integer.getInteger("benchmark.analyzer.mb", 32));
+		long corpusBytes = 0;
+		for (String doc : corpus) {
+			corpusBytes += doc.getBytes(StandardCharsets.UTF_8).length;
+		}
+
+		for (int i = 0; i < WARMUP_ROUNDS; i++) {
+			runFold(corpus);
+		}
+		double best = 0;
+		for (int i = 0; i < MEASURED_ROUNDS; i++) {
+			long start = System.nanoTime();
+			runFold(corpus);
+			double seconds = (System.nanoTime() - start) / 1e9;
+			best = Math.max(best, corpusBytes / 1048576.0 / seconds);
+		}
+		System.out.printf("VietnameseAnalyzer.fold: %.1f MB/s trên %.1f MB%n", best, corpusBytes / 1048576.0);
+		assertTrue(best > 0);
+	}
+
+	private static long runIndexTerms(List<String> corpus) {
+		long terms = 0;
+		for (String doc : corpus) {
+			terms += VietnameseAnalyzer.indexTerms(doc).size();
+		}
+		return terms;
+	}
+
+	private static long runFold(List<String> corpus) {
+		long chars = 0;
+		for (String doc : corpus) {
+			chars += VietnameseAnalyzer.fold(doc).length();
+		}
+		return chars;
+	}
+
+	// Các "bài viết" ~2 KB ghép từ danh sách từ, seed cố định để các lần chạy so sánh được với nhau
+	private static List<String> corpus(int megabytes) {
+		Random random = new Random(42);
+		List<String> docs = new ArrayList<>();
+		long total = 0;
+		long target = megabytes * 1048576L;
+		while (total < target) {
+			StringBuilder doc = new StringBuilder(DOC_BYTES);
+			while (doc.length() < DOC_BYTES) {
+				doc.append(WORDS[random.nextInt(WORDS.length)]);
+				doc.append(random.nextInt(12) == 0 ? ". " : " ");
+			}
+			String text = doc.toString();
+			docs.add(text);
+			total += text.getBytes(StandardCharsets.UTF_8).length;
+		}
+		return docs;
+	}
+}
@@ -0,0 +1,110 @@
+package com.example.backend.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.text.Normalizer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VietnameseAnalyzerTest {
+
+	@Test
+	void foldRemovesDiacriticsAndKeepsCase() {
+		assertEquals("De cuong Bao mat", VietnameseAnalyzer.fold("Đề cương Bảo mật"));
+		assertEquals("Tieng Viet", VietnameseAnalyzer.fold("Tiếng Việt"));
+		assertNull(VietnameseAnalyzer.fold(null));
+	}
+
+	@Test
+	void foldHandlesDecomposedInput() {
+		String decomposed = Normalizer.normalize("Nguyễn Đức Hưng", Normalizer.Form.NFD);
+
+		assertEquals("Nguyen Duc Hung", VietnameseAnalyzer.fold(decomposed));
+	}
+
+	@Test
+	void foldReturnsAsciiInputUnchanged() {
+		String ascii = "spring boot 3";
+
+		assertSame(ascii, VietnameseAnalyzer.fold(ascii));
+	}
+
+	@Test
+	void tokenizeSplitsSyllablesLowercaseNfc() {
+		assertEquals(List.of("xin", "chào", "thế", "giới", "2024"), VietnameseAnalyzer.tokenize("Xin chào, THẾ GIỚI! 2024"));
+		assertEquals(List.of("việt"), VietnameseAnalyzer.tokenize(Normalizer.normalize("Việt", Normalizer.Form.NFD)));
+		assertTrue(VietnameseAnalyzer.tokenize("  ...  ").isEmpty());
+		assertTrue(VietnameseAnalyzer.tokenize(null).isEmpty());
+	}
+
+	@Test
+	void indexTermsContainOriginalFoldedAndPrefixes() {
+		List<String> terms = VietnameseAnalyzer.indexTerms("Bảo mật và mạng");
+
+		assertTrue(terms.containsAll(List.of("bảo", "bao", "^ba", "^bao", "mật", "mat", "^ma", "^mat", "mạng", "mang", "^man", "^mang")));
+		assertFalse(terms.contains("và"));
+		assertFalse(terms.contains("^b"));
+	}
+
+	// Hư từ chỉ bỏ dạng có dấu; dạng bỏ dấu vẫn vào chỉ mục vì truy vấn không dấu không phân biệt được "đang"/"dạng"
+	@Test
+	void stopwordsKeepFoldedFormInIndex() {
+		List<String> terms = VietnameseAnalyzer.indexTerms("Tôi đang học");
+
+		assertFalse(terms.contains("đang"));
+		assertTrue(terms.containsAll(List.of("dang", "^da", "^dang")));
+	}
+
+	@Test
+	void prefixGramsAreCappedAtFifteenChars() {
+		List<String> terms = VietnameseAnalyzer.indexTerms("internationalization");
+
+		assertTrue(terms.contains("^internationaliz"));
+		assertFalse(terms.contains("^internationaliza"));
+	}
+
+	@Test
+	void lastQueryTokenMatchesByPrefix() {
+		VietnameseAnalyzer.Query query = VietnameseAnalyzer.analyzeQuery("Bảo mật");
+
+		assertEquals(List.of("bao", "^mat"), query.required());
+		assertEquals(List.of("bảo", "mat", "mật"), query.optional());
+	}
+
+	@Test
+	void singleCharLastTokenMatchesExactly() {
+		assertEquals(List.of("lap", "c"), VietnameseAnalyzer.analyzeQuery("lap c").required());
+	}
+
+	@Test
+	void unaccentedQueryKeepsWordsThatFoldLikeStopwords() {
+		assertEquals(List.of("dinh", "^dang"), VietnameseAnalyzer.analyzeQuery("dinh dang").required());
+		assertEquals(List.of("de", "^hoc"), VietnameseAnalyzer.analyzeQuery("de hoc").required());
+		assertEquals(List.of("bao", "^mat"), VietnameseAnalyzer.analyzeQuery("bảo và mật").required());
+	}
+
+	@Test
+	void stopwordOnlyQueryIsEmpty() {
+		assertTrue(VietnameseAnalyzer.analyzeQuery("và của").isEmpty());
+		assertTrue(VietnameseAnalyzer.analyzeQuery("!!!").isEmpty());
+	}
+
+	// Truy vấn phải tìm thấy đúng các term mà indexTerms sinh ra cho cùng văn bản
+	@Test
+	void queryTermsAreSubsetOfIndexTerms() {
+		String text = "Hướng dẫn cài đặt Docker trên Ubuntu";
+		List<String> indexed = VietnameseAnalyzer.indexTerms(text);
+
+		assertTrue(indexed.containsAll(VietnameseAnalyzer.analyzeQuery("huong dan cai dat").required()));
+		assertTrue(indexed.containsAll(VietnameseAnalyzer.analyzeQuery("Hướng dẫn cài đặ").required()));
+		assertTrue(indexed.containsAll(VietnameseAnalyzer.analyzeQuery("docker ubu").required()));
+		assertTrue(indexed.containsAll(VietnameseAnalyzer.analyzeQuery("docker tren ubuntu").required()));
+		assertTrue(VietnameseAnalyzer.indexTerms("Định dạng ổ cứng")
+				.containsAll(VietnameseAnalyzer.analyzeQuery("dinh dang").required()));
+	}
+}
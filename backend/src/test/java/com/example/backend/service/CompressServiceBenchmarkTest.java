@@ -0,0 +1,150 @@
+package com.example.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// Đo số byte heap cấp phát trên mỗi MB dữ liệu và thông lượng nén + giải nén:
+// codec dùng pool hiện tại so với cách cũ (Deflater/Inflater mới mỗi lần, không end(), nới mảng theo khối 4 KB).
+// Chỉ chạy khi bật: mvn test -Dbenchmark=true [-Dbenchmark.compress.mb=64]
+class CompressServiceBenchmarkTest {
+
+	private static final int PAYLOAD_BYTES = 512 * 1024;
+	private static final int WARMUP_ROUNDS = 2;
+	private static final int MEASURED_ROUNDS = 3;
+
+	private interface Codec {
+		long roundTrip(byte[] data) throws IOException;
+	}
+
+	@Test
+	void allocationPerMegabyte() throws IOException {
+		assumeTrue(Boolean.getBoolean("benchmark"), "Bật bằng -Dbenchmark=true");
+		byte[][] payloads = payloads(Integer.getInteger("benchmark.compress.mb", 64));
+
+		run("legacy byte[]", payloads, CompressServiceBenchmarkTest::legacyRoundTrip);
+		run("pooled byte[]", payloads, data -> {
+			byte[] compressed = CompressService.compress(data, CompressionPolicy.Codec.DEFLATE_FAST);
+			return CompressService.decompress(compressed, data.length).length;
+		});
+		run("pooled stream", payloads, CompressServiceBenchmarkTest::pooledStreamRoundTrip);
+	}
+
+	@Test
+	void pooledCodecRoundTripsPayloads() throws IOException {
+		assumeTrue(Boolean.getBoolean("benchmark"), "Bật bằng -Dbenchmark=true");
+		for (byte[] data : payloads(4)) {
+			byte[] compressed = CompressService.compress(data, CompressionPolicy.Codec.DEFLATE_FAST);
+			assertArrayEquals(data, CompressService.decompress(compressed, data.length));
+			assertArrayEquals(data, CompressService.inflatingStream(new ByteArrayInputStream(compressed)).readAllBytes());
+		}
+	}
+
+	private static void run(String name, byte[][] payloads, Codec codec) throws IOException {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		double megabytes = (double) payloads.length * PAYLOAD_BYTES / 1048576.0;
+		for (int i = 0; i < WARMUP_ROUNDS; i++) {
+			roundTripAll(payloads, codec);
+		}
+		double bestMbPerSecond = 0;
+		long minAllocated = Long.MAX_VALUE;
+		for (int i = 0; i < MEASURED_ROUNDS; i++) {
+			long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+			long start = System.nanoTime();
+			long total = roundTripAll(payloads, codec);
+			double seconds = (System.nanoTime() - start) / 1e9;
+			long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+			assertTrue(total == (long) payloads.length * PAYLOAD_BYTES);
+			bestMbPerSecond = Math.max(bestMbPerSecond, megabytes / seconds);
+			minAllocated = Math.min(minAllocated, allocated);
+		}
+		System.out.printf("%s: %.1f MB/s, %.0f KB cấp phát/MB%n", name, bestMbPerSecond, minAllocated / 1024.0 / megabytes);
+	}
+
+	private static long roundTripAll(byte[][] payloads, Codec codec) throws IOException {
+		long total = 0;
+		for (byte[] data : payloads) {
+			total += codec.roundTrip(data);
+		}
+		return total;
+	}
+
+	private static long pooledStreamRoundTrip(byte[] data) throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 2);
+		try (OutputStream out = CompressService.deflatingStream(compressed, CompressionPolicy.Codec.DEFLATE_FAST)) {
+			out.write(data);
+		}
+		long length = 0;
+		byte[] buffer = new byte[8 * 1024];
+		try (InputStream in = CompressService.inflatingStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+			int read;
+			while ((read = in.read(buffer)) > 0) {
+				length += read;
+			}
+		}
+		return length;
+	}
+
+	// Cách làm trước khi có pool: mỗi lần tạo Deflater/Inflater mới và không end()
+	private static long legacyRoundTrip(byte[] data) {
+		Deflater deflater = new Deflater();
+		deflater.setLevel(Deflater.BEST_SPEED);
+		deflater.setInput(data);
+		deflater.finish();
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length);
+		byte[] tmp = new byte[4 * 1024];
+		while (!deflater.finished()) {
+			int size = deflater.deflate(tmp);
+			compressed.write(tmp, 0, size);
+		}
+		byte[] packed = compressed.toByteArray();
+
+		Inflater inflater = new Inflater();
+		inflater.setInput(packed);
+		ByteArrayOutputStream output = new ByteArrayOutputStream(packed.length);
+		try {
+			while (!inflater.finished()) {
+				int count = inflater.inflate(tmp);
+				output.write(tmp, 0, count);
+			}
+		} catch (Exception ignored) {
+		}
+		return output.toByteArray().length;
+	}
+
+	// Dữ liệu nén được một phần (văn bản lặp từ + nhiễu), seed cố định
+	private static byte[][] payloads(int megabytes) {
+		Random random = new Random(7);
+		String[] words = "bài viết hướng dẫn cấu hình spring boot mysql docker ảnh tài liệu đề cương".split(" ");
+		int count = Math.max(1, megabytes * 1048576 / PAYLOAD_BYTES);
+		byte[][] payloads = new byte[count][];
+		for (int i = 0; i < count; i++) {
+			byte[] data = new byte[PAYLOAD_BYTES];
+			int pos = 0;
+			while (pos < data.length) {
+				byte[] word = (words[random.nextInt(words.length)] + " ").getBytes(StandardCharsets.UTF_8);
+				if (random.nextInt(8) == 0) {
+					random.nextBytes(word);
+				}
+				int length = Math.min(word.length, data.length - pos);
+				System.arraycopy(word, 0, data, pos, length);
+				pos += length;
+			}
+			payloads[i] = data;
+		}
+		return payloads;
+	}
+}
@@ -0,0 +1,197 @@
+package com.example.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompressServiceTest {
+
+	// Văn bản lặp lại xen byte ngẫu nhiên: nén được nhưng mức nén nhanh/tốt nhất cho kết quả khác nhau
+	private static byte[] sample(int size, long seed) {
+		Random random = new Random(seed);
+		byte[] words = "bài viết hướng dẫn cấu hình spring boot với mysql ".getBytes(StandardCharsets.UTF_8);
+		byte[] data = new byte[size];
+		for (int i = 0; i < size; i++) {
+			data[i] = random.nextInt(8) == 0 ? (byte) random.nextInt(256) : words[i % words.length];
+		}
+		return data;
+	}
+
+	private static byte[] freshDeflate(byte[] data, int level) {
+		Deflater deflater = new Deflater(level);
+		try {
+			deflater.setInput(data);
+			deflater.finish();
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			while (!deflater.finished()) {
+				out.write(buffer, 0, deflater.deflate(buffer));
+			}
+			return out.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	@Test
+	void byteArrayRoundTrip() throws IOException {
+		for (int size : new int[]{0, 1, 100, 64 * 1024, 300_000}) {
+			byte[] data = sample(size, size);
+
+			assertArrayEquals(data, CompressService.decompress(CompressService.compress(data)));
+			assertArrayEquals(data, CompressService.decompress(
+					CompressService.compress(data, CompressionPolicy.Codec.DEFLATE_FAST), data.length));
+			assertArrayEquals(data, CompressService.decompress(
+					CompressService.compress(data, CompressionPolicy.Codec.DEFLATE_BEST), data.length));
+		}
+	}
+
+	@Test
+	void storeReturnsInputUnchanged() {
+		byte[] data = sample(1000, 1);
+
+		assertSame(data, CompressService.compress(data, CompressionPolicy.Codec.STORE));
+	}
+
+	// Dữ liệu ngẫu nhiên không nén được vượt cận trên ước lượng ban đầu => mảng đầu ra phải nới ra
+	@Test
+	void incompressibleDataRoundTrips() throws IOException {
+		byte[] data = new byte[200_000];
+		new Random(7).nextBytes(data);
+
+		byte[] compressed = CompressService.compress(data, CompressionPolicy.Codec.DEFLATE_BEST);
+
+		assertArrayEquals(data, CompressService.decompress(compressed, data.length));
+	}
+
+	@Test
+	void streamRoundTrip() throws IOException {
+		byte[] data = sample(500_000, 3);
+		for (CompressionPolicy.Codec codec : new CompressionPolicy.Codec[]{
+				CompressionPolicy.Codec.DEFLATE_FAST, CompressionPolicy.Codec.DEFLATE_BEST}) {
+			ByteArrayOutputStream sink = new ByteArrayOutputStream();
+			try (OutputStream out = CompressService.deflatingStream(sink, codec)) {
+				// Ghi nhiều đoạn nhỏ như khi chép từ request
+				for (int from = 0; from < data.length; from += 4096) {
+					out.write(data, from, Math.min(4096, data.length - from));
+				}
+			}
+			byte[] compressed = sink.toByteArray();
+
+			try (InputStream in = CompressService.inflatingStream(new ByteArrayInputStream(compressed))) {
+				assertArrayEquals(data, in.readAllBytes());
+			}
+			// Hai đường byte[] và stream dùng chung định dạng
+			assertArrayEquals(data, CompressService.decompress(compressed, data.length));
+		}
+	}
+
+	@Test
+	void closingStreamsTwiceIsHarmless() throws IOException {
+		ByteArrayOutputStream sink = new ByteArrayOutputStream();
+		OutputStream out = CompressService.deflatingStream(sink, CompressionPolicy.Codec.DEFLATE_FAST);
+		out.write(sample(1000, 4));
+		out.close();
+		out.close();
+		InputStream in = CompressService.inflatingStream(new ByteArrayInputStream(sink.toByteArray()));
+		in.readAllBytes();
+		in.close();
+		in.close();
+
+		byte[] data = sample(2000, 5);
+		assertArrayEquals(data, CompressService.decompress(CompressService.compress(data)));
+	}
+
+	// Deflater trong pool được setLevel lại mỗi lần mượn: kết quả phải giống hệt Deflater mới tạo ở đúng mức nén
+	@Test
+	void pooledDeflaterHonoursLevelSwitch() throws IOException {
+		byte[] data = sample(200_000, 6);
+		byte[] expectedFast = freshDeflate(data, Deflater.BEST_SPEED);
+		byte[] expectedBest = freshDeflate(data, Deflater.BEST_COMPRESSION);
+		assertTrue(expectedFast.length != expectedBest.length);
+
+		for (int i = 0; i < 20; i++) {
+			byte[] fast = CompressService.compress(data, CompressionPolicy.Codec.DEFLATE_FAST);
+			byte[] best = CompressService.compress(data, CompressionPolicy.Codec.DEFLATE_BEST);
+
+			assertArrayEquals(expectedFast, fast);
+			assertArrayEquals(expectedBest, best);
+			assertArrayEquals(data, CompressService.decompress(best, data.length));
+		}
+		ByteArrayOutputStream sink = new ByteArrayOutputStream();
+		try (OutputStream out = CompressService.deflatingStream(sink, CompressionPolicy.Codec.DEFLATE_FAST)) {
+			out.write(data);
+		}
+		assertArrayEquals(data, CompressService.decompress(sink.toByteArray(), data.length));
+		assertArrayEquals(expectedBest, CompressService.compress(data, CompressionPolicy.Codec.DEFLATE_BEST));
+	}
+
+	// content_length đã lưu chỉ là gợi ý cấp phát: sai lệch không được làm hỏng kết quả
+	@Test
+	void expectedLengthIsOnlyAHint() throws IOException {
+		byte[] data = sample(100_000, 8);
+		byte[] compressed = CompressService.compress(data);
+
+		assertArrayEquals(data, CompressService.decompress(compressed, data.length));
+		assertArrayEquals(data, CompressService.decompress(compressed, 1));
+		assertArrayEquals(data, CompressService.decompress(compressed, data.length / 3));
+		assertArrayEquals(data, CompressService.decompress(compressed, data.length * 4L));
+		assertArrayEquals(data, CompressService.decompress(compressed, 0));
+		assertArrayEquals(data, CompressService.decompress(compressed, Long.MAX_VALUE));
+	}
+
+	@Test
+	void truncatedInputIsRejected() throws IOException {
+		byte[] data = sample(100_000, 9);
+		byte[] compressed = CompressService.compress(data);
+		byte[] truncated = Arrays.copyOf(compressed, compressed.length / 2);
+
+		assertThrows(ZipException.class, () -> CompressService.decompress(truncated, data.length));
+		assertThrows(ZipException.class, () -> CompressService.decompress(new byte[0]));
+		assertThrows(IOException.class, () -> {
+			try (InputStream in = CompressService.inflatingStream(new ByteArrayInputStream(truncated))) {
+				in.readAllBytes();
+			}
+		});
+		// Inflater lỗi đã được reset trước khi trả về pool
+		assertArrayEquals(data, CompressService.decompress(compressed, data.length));
+	}
+
+	@Test
+	void corruptInputIsRejected() throws IOException {
+		byte[] data = sample(100_000, 10);
+		byte[] compressed = CompressService.compress(data);
+		byte[] badHeader = compressed.clone();
+		badHeader[0] = 0x00;
+		byte[] badBody = compressed.clone();
+		for (int i = 10; i < 40; i++) {
+			badBody[i] = (byte) 0xff;
+		}
+		byte[] notDeflate = "không phải dữ liệu nén".getBytes(StandardCharsets.UTF_8);
+
+		assertThrows(ZipException.class, () -> CompressService.decompress(badHeader, data.length));
+		assertThrows(ZipException.class, () -> CompressService.decompress(badBody, data.length));
+		assertThrows(ZipException.class, () -> CompressService.decompress(notDeflate));
+		assertThrows(IOException.class, () -> {
+			try (InputStream in = CompressService.inflatingStream(new ByteArrayInputStream(badHeader))) {
+				in.readAllBytes();
+			}
+		});
+		assertEquals(data.length, CompressService.decompress(compressed, data.length).length);
+	}
+}
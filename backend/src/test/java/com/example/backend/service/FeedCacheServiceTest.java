@@ -0,0 +1,189 @@
+package com.example.backend.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class FeedCacheServiceTest {
+
+	private FeedCacheService cache;
+
+	@BeforeEach
+	void setUp() {
+		cache = new FeedCacheService();
+		ReflectionTestUtils.setField(cache, "enabled", true);
+		ReflectionTestUtils.setField(cache, "maxPages", 3);
+		ReflectionTestUtils.setField(cache, "maxPageSize", 50);
+		ReflectionTestUtils.setField(cache, "maxBytes", 16L * 1024 * 1024);
+	}
+
+	private static List<Map<String, Object>> page(long... postIds) {
+		List<Map<String, Object>> posts = new ArrayList<>();
+		for (long postId : postIds) {
+			Map<String, Object> post = new HashMap<>();
+			post.put("id", postId);
+			post.put("title", "Bài viết " + postId);
+			posts.add(post);
+		}
+		return posts;
+	}
+
+	private static String key(String categoryPath) {
+		return FeedCacheService.offsetKey(categoryPath, 10, 0);
+	}
+
+	private void fill(String categoryPath, long readGeneration, long... postIds) {
+		cache.put(key(categoryPath), categoryPath, page(postIds), null, readGeneration);
+	}
+
+	@Test
+	void fillWithoutEvictionIsCached() {
+		long readGeneration = cache.currentGeneration("/java");
+		fill("/java", readGeneration, 1, 2);
+
+		FeedCacheService.CachedPage cached = cache.get(key("/java"));
+		assertNotNull(cached);
+		assertEquals(2, cached.items().size());
+		assertEquals(1L, cached.items().get(0).get("id"));
+	}
+
+	// Trang đọc trước khi category bị xóa cache (vd: có bài mới) đã cũ => không ghi vào cache
+	@Test
+	void fillRacingWithCategoryEvictionIsRejected() {
+		long readGeneration = cache.currentGeneration("/java");
+		cache.evictCategories("/java"::equals);
+		fill("/java", readGeneration, 1, 2);
+
+		assertNull(cache.get(key("/java")));
+
+		fill("/java", cache.currentGeneration("/java"), 3, 1, 2);
+		assertNotNull(cache.get(key("/java")));
+	}
+
+	// Bài viết trong trang bị sửa/like sau lúc đọc => từ chối, kể cả khi bài đó chưa nằm trong trang cache nào
+	@Test
+	void fillRacingWithPostEvictionIsRejected() {
+		long readGeneration = cache.currentGeneration("/java");
+		cache.evictPost(2L);
+		fill("/java", readGeneration, 1, 2);
+
+		assertNull(cache.get(key("/java")));
+	}
+
+	// Xóa cache của category/bài viết khác không chặn trang đang nạp
+	@Test
+	void evictionElsewhereDoesNotBlockFill() {
+		long readGeneration = cache.currentGeneration("/java");
+		cache.currentGeneration("/python");
+		cache.evictCategories("/python"::equals);
+		cache.evictPost(99L);
+		fill("/java", readGeneration, 1, 2);
+
+		assertNotNull(cache.get(key("/java")));
+	}
+
+	@Test
+	void categoryEvictionRemovesOnlyThatCategory() {
+		fill("/java", cache.currentGeneration("/java"), 1);
+		fill("/python", cache.currentGeneration("/python"), 2);
+
+		cache.evictCategories("/java"::equals);
+
+		assertNull(cache.get(key("/java")));
+		assertNotNull(cache.get(key("/python")));
+	}
+
+	// Bài viết thay đổi => xóa mọi category đang có trang chứa bài đó
+	@Test
+	void postEvictionRemovesCategoriesContainingPost() {
+		fill("/java", cache.currentGeneration("/java"), 1, 2);
+		fill("/popular", cache.currentGeneration("/popular"), 2, 3);
+		fill("/python", cache.currentGeneration("/python"), 4);
+
+		cache.evictPost(2L);
+
+		assertNull(cache.get(key("/java")));
+		assertNull(cache.get(key("/popular")));
+		assertNotNull(cache.get(key("/python")));
+	}
+
+	// Quá MAX_TRACKED_INVALIDATIONS bài bị xóa cache: thời điểm cũ bị quên => lần đọc trước mốc đó bị từ chối
+	@Test
+	void forgottenPostInvalidationsRejectOlderReads() {
+		long oldRead = cache.currentGeneration("/java");
+		for (long postId = 1; postId <= FeedCacheService.MAX_TRACKED_INVALIDATIONS + 1; postId++) {
+			cache.evictPost(1_000_000L + postId);
+		}
+		fill("/java", oldRead, 1, 2);
+		assertNull(cache.get(key("/java")));
+
+		fill("/java", cache.currentGeneration("/java"), 1, 2);
+		assertNotNull(cache.get(key("/java")));
+	}
+
+	// Quá nhiều category được theo dõi: xóa sạch bảng và đặt mốc quên => lần đọc cũ bị từ chối
+	@Test
+	void forgottenCategoriesRejectOlderReads() {
+		long oldRead = cache.currentGeneration("/java");
+		cache.evictCategories("/other"::equals);
+		for (int i = 0; i < FeedCacheService.MAX_TRACKED_INVALIDATIONS; i++) {
+			cache.currentGeneration("/category-" + i);
+		}
+		fill("/java", oldRead, 1);
+		assertNull(cache.get(key("/java")));
+
+		fill("/java", cache.currentGeneration("/java"), 1);
+		assertNotNull(cache.get(key("/java")));
+	}
+
+	// Bản sao: caller gắn cờ người xem không làm bẩn dữ liệu dùng chung
+	@Test
+	void cachedPagesAreCopied() {
+		fill("/java", cache.currentGeneration("/java"), 1);
+
+		cache.get(key("/java")).items().get(0).put("is_liked", true);
+
+		assertNull(cache.get(key("/java")).items().get(0).get("is_liked"));
+	}
+
+	// Giới hạn theo tổng dung lượng ước tính, bỏ trang lâu không dùng nhất trước
+	@Test
+	void lruByteBudget() {
+		long pageBytes = ReflectionTestUtils.invokeMethod(cache, "estimateBytes", page(1, 2));
+		ReflectionTestUtils.setField(cache, "maxBytes", pageBytes * 2 + pageBytes / 2);
+
+		fill("/a", cache.currentGeneration("/a"), 1, 2);
+		fill("/b", cache.currentGeneration("/b"), 1, 2);
+		// Đọc /a => /b trở thành trang lâu không dùng nhất
+		assertNotNull(cache.get(key("/a")));
+		fill("/c", cache.currentGeneration("/c"), 1, 2);
+
+		assertNotNull(cache.get(key("/a")));
+		assertNull(cache.get(key("/b")));
+		assertNotNull(cache.get(key("/c")));
+		assertEquals(pageBytes * 2, (long) ReflectionTestUtils.getField(cache, "totalBytes"));
+
+		// Thay trang cùng khóa không tính dung lượng hai lần
+		fill("/c", cache.currentGeneration("/c"), 1, 2);
+		assertEquals(pageBytes * 2, (long) ReflectionTestUtils.getField(cache, "totalBytes"));
+
+		// Trang lớn hơn cả giới hạn không được cache và không đẩy trang khác ra
+		long[] many = new long[50];
+		for (int i = 0; i < many.length; i++) {
+			many[i] = i + 1;
+		}
+		fill("/d", cache.currentGeneration("/d"), many);
+		assertNull(cache.get(key("/d")));
+		assertNotNull(cache.get(key("/a")));
+		assertNotNull(cache.get(key("/c")));
+	}
+}
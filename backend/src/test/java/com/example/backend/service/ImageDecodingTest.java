@@ -0,0 +1,157 @@
+package com.example.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ImageDecodingTest {
+
+	private static final int RED = 0xFF0000;
+	private static final int GREEN = 0x00FF00;
+	private static final int BLUE = 0x0000FF;
+	private static final int WHITE = 0xFFFFFF;
+
+	// Ảnh 3x2: hàng trên đỏ, xanh lá, xanh lá; hàng dưới xanh dương, trắng, trắng
+	private static BufferedImage sample() {
+		BufferedImage image = new BufferedImage(3, 2, BufferedImage.TYPE_INT_RGB);
+		image.setRGB(0, 0, RED);
+		image.setRGB(1, 0, GREEN);
+		image.setRGB(2, 0, GREEN);
+		image.setRGB(0, 1, BLUE);
+		image.setRGB(1, 1, WHITE);
+		image.setRGB(2, 1, WHITE);
+		return image;
+	}
+
+	private static int rgb(BufferedImage image, int x, int y) {
+		return image.getRGB(x, y) & 0xFFFFFF;
+	}
+
+	@Test
+	void orientationSixRotatesClockwise() {
+		BufferedImage rotated = ImageDecoding.applyOrientation(sample(), 6);
+
+		assertEquals(2, rotated.getWidth());
+		assertEquals(3, rotated.getHeight());
+		assertEquals(BLUE, rgb(rotated, 0, 0));
+		assertEquals(RED, rgb(rotated, 1, 0));
+		assertEquals(WHITE, rgb(rotated, 0, 2));
+		assertEquals(GREEN, rgb(rotated, 1, 2));
+	}
+
+	@Test
+	void orientationEightRotatesCounterClockwise() {
+		BufferedImage rotated = ImageDecoding.applyOrientation(sample(), 8);
+
+		assertEquals(2, rotated.getWidth());
+		assertEquals(3, rotated.getHeight());
+		assertEquals(GREEN, rgb(rotated, 0, 0));
+		assertEquals(RED, rgb(rotated, 0, 2));
+		assertEquals(BLUE, rgb(rotated, 1, 2));
+	}
+
+	@Test
+	void orientationThreeAndMirrors() {
+		BufferedImage upsideDown = ImageDecoding.applyOrientation(sample(), 3);
+		assertEquals(WHITE, rgb(upsideDown, 0, 0));
+		assertEquals(RED, rgb(upsideDown, 2, 1));
+
+		BufferedImage mirrored = ImageDecoding.applyOrientation(sample(), 2);
+		assertEquals(GREEN, rgb(mirrored, 0, 0));
+		assertEquals(RED, rgb(mirrored, 2, 0));
+
+		BufferedImage transposed = ImageDecoding.applyOrientation(sample(), 5);
+		assertEquals(RED, rgb(transposed, 0, 0));
+		assertEquals(BLUE, rgb(transposed, 1, 0));
+		assertEquals(GREEN, rgb(transposed, 0, 2));
+	}
+
+	@Test
+	void exifOrientationIsReadFromBothByteOrders() throws IOException {
+		byte[] jpeg = jpeg(4, 2);
+
+		assertEquals(1, ImageDecoding.exifOrientation(jpeg));
+		assertEquals(6, ImageDecoding.exifOrientation(withExifOrientation(jpeg, 6, ByteOrder.BIG_ENDIAN)));
+		assertEquals(8, ImageDecoding.exifOrientation(withExifOrientation(jpeg, 8, ByteOrder.LITTLE_ENDIAN)));
+		assertEquals(1, ImageDecoding.exifOrientation(new byte[]{1, 2, 3}));
+	}
+
+	@Test
+	void decodeAppliesExifOrientation() throws IOException {
+		BufferedImage decoded = ImageDecoding.decode(withExifOrientation(jpeg(40, 20), 6, ByteOrder.BIG_ENDIAN));
+
+		assertEquals(20, decoded.getWidth());
+		assertEquals(40, decoded.getHeight());
+	}
+
+	@Test
+	void decodeRejectsHugeDeclaredDimensions() throws IOException {
+		byte[] bomb = pngWithDeclaredSize(100_000, 100_000);
+
+		assertThrows(IllegalArgumentException.class, () -> ImageDecoding.decode(bomb));
+	}
+
+	@Test
+	void decodeReturnsNullForUnknownFormat() throws IOException {
+		assertNull(ImageDecoding.decode("not an image".getBytes()));
+	}
+
+	private static byte[] jpeg(int width, int height) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "jpeg", out);
+		return out.toByteArray();
+	}
+
+	// Chèn segment APP1 "Exif" với IFD0 chỉ chứa thẻ Orientation ngay sau SOI
+	private static byte[] withExifOrientation(byte[] jpeg, int orientation, ByteOrder order) {
+		ByteBuffer tiff = ByteBuffer.allocate(26).order(order);
+		tiff.put(order == ByteOrder.LITTLE_ENDIAN ? new byte[]{'I', 'I'} : new byte[]{'M', 'M'});
+		tiff.putShort((short) 42);
+		tiff.putInt(8);
+		tiff.putShort((short) 1);
+		tiff.putShort((short) 0x0112);
+		tiff.putShort((short) 3);
+		tiff.putInt(1);
+		tiff.putShort((short) orientation);
+		tiff.putShort((short) 0);
+		tiff.putInt(0);
+		byte[] exifHeader = {'E', 'x', 'i', 'f', 0, 0};
+		int length = 2 + exifHeader.length + tiff.capacity();
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(jpeg, 0, 2);
+		out.write(0xFF);
+		out.write(0xE1);
+		out.write(length >> 8);
+		out.write(length & 0xFF);
+		out.write(exifHeader, 0, exifHeader.length);
+		out.write(tiff.array(), 0, tiff.capacity());
+		out.write(jpeg, 2, jpeg.length - 2);
+		return out.toByteArray();
+	}
+
+	// PNG 1x1 hợp lệ nhưng header IHDR khai báo kích thước khác (CRC tính lại)
+	private static byte[] pngWithDeclaredSize(int width, int height) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB), "png", out);
+		byte[] png = out.toByteArray();
+		// Chữ ký 8 byte, rồi chunk IHDR: độ dài (4) + "IHDR" (4) + dữ liệu (13) + CRC (4)
+		ByteBuffer buffer = ByteBuffer.wrap(png);
+		buffer.putInt(16, width);
+		buffer.putInt(20, height);
+		CRC32 crc = new CRC32();
+		crc.update(png, 12, 17);
+		buffer.putInt(29, (int) crc.getValue());
+		return png;
+	}
+}
@@ -0,0 +1,156 @@
+package com.example.backend.service;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LikeBufferServiceTest {
+
+	private static final LikeBufferService.Target COMMENT = LikeBufferService.Target.COMMENT;
+
+	private LikeBufferService buffer;
+	private FakeTransactionManager transactionManager;
+
+	@BeforeEach
+	void setUp() {
+		buffer = new LikeBufferService();
+		transactionManager = new FakeTransactionManager();
+		ReflectionTestUtils.setField(buffer, "enabled", true);
+		ReflectionTestUtils.setField(buffer, "flushIntervalMs", 300L);
+		ReflectionTestUtils.setField(buffer, "maxPending", 100);
+		ReflectionTestUtils.setField(buffer, "transactionManager", transactionManager);
+	}
+
+	// DB lỗi: lô không bị bỏ mà quay lại bộ đệm, kể cả sau nhiều lần lỗi liên tiếp
+	@Test
+	void failedFlushRequeuesBatch() {
+		transactionManager.failure = new IllegalStateException("db down");
+		buffer.record(COMMENT, 1L, 10L, true);
+		buffer.record(COMMENT, 2L, 10L, false);
+
+		for (int attempt = 0; attempt < 8; attempt++) {
+			buffer.flushOnShutdown();
+		}
+
+		assertEquals(8, transactionManager.attempts);
+		assertEquals(Boolean.TRUE, buffer.pendingState(COMMENT, 1L, 10L));
+		assertEquals(Boolean.FALSE, buffer.pendingState(COMMENT, 2L, 10L));
+	}
+
+	// Trạng thái ghi trong lúc flush mới hơn lô in-flight => không bị lô lỗi ghi đè khi requeue
+	@Test
+	void newerStateWinsOverRequeuedBatch() {
+		buffer.record(COMMENT, 1L, 10L, true);
+		transactionManager.duringTransaction = () -> {
+			assertEquals(Boolean.TRUE, buffer.pendingState(COMMENT, 1L, 10L));
+			buffer.record(COMMENT, 1L, 10L, false);
+		};
+		transactionManager.failure = new IllegalStateException("db down");
+
+		buffer.flush();
+
+		assertEquals(Boolean.FALSE, buffer.pendingState(COMMENT, 1L, 10L));
+	}
+
+	// Bộ đệm đầy: cặp mới bị từ chối (caller ghi đồng bộ), cặp đã chờ vẫn được cập nhật
+	@Test
+	void fullBufferRejectsOnlyNewKeys() {
+		ReflectionTestUtils.setField(buffer, "maxPending", 2);
+
+		assertTrue(buffer.record(COMMENT, 1L, 10L, true));
+		assertTrue(buffer.record(COMMENT, 2L, 10L, true));
+		assertFalse(buffer.record(COMMENT, 3L, 10L, true));
+		assertTrue(buffer.record(COMMENT, 1L, 10L, false));
+
+		assertEquals(Boolean.FALSE, buffer.pendingState(COMMENT, 1L, 10L));
+		assertNull(buffer.pendingState(COMMENT, 3L, 10L));
+	}
+
+	// Cặp đang nằm trong lô in-flight vẫn được nhận khi đầy, để không có lượt ghi đồng bộ chen giữa
+	@Test
+	void inFlightKeyAcceptedWhenFull() {
+		ReflectionTestUtils.setField(buffer, "maxPending", 1);
+		buffer.record(COMMENT, 1L, 10L, true);
+		transactionManager.duringTransaction = () -> {
+			assertTrue(buffer.record(COMMENT, 2L, 10L, true));
+			assertFalse(buffer.record(COMMENT, 3L, 10L, true));
+			assertTrue(buffer.record(COMMENT, 1L, 10L, false));
+		};
+		transactionManager.failure = new IllegalStateException("db down");
+
+		buffer.flush();
+
+		assertEquals(Boolean.FALSE, buffer.pendingState(COMMENT, 1L, 10L));
+		assertEquals(Boolean.TRUE, buffer.pendingState(COMMENT, 2L, 10L));
+		assertNull(buffer.pendingState(COMMENT, 3L, 10L));
+		// Sau khi requeue bộ đệm vẫn đầy
+		assertFalse(buffer.record(COMMENT, 4L, 10L, true));
+	}
+
+	// Sau khi DB hồi phục, lô được ghi và bộ đệm nhận lại cặp mới
+	@Test
+	void successfulFlushClearsBuffer() {
+		EntityManager entityManager = mock(EntityManager.class);
+		Query query = mock(Query.class);
+		when(entityManager.createNativeQuery(anyString())).thenReturn(query);
+		when(query.setParameter(anyString(), any())).thenReturn(query);
+		when(query.executeUpdate()).thenReturn(1);
+		ReflectionTestUtils.setField(buffer, "entityManager", entityManager);
+		ReflectionTestUtils.setField(buffer, "maxPending", 1);
+
+		buffer.record(COMMENT, 1L, 10L, true);
+		transactionManager.failure = new IllegalStateException("db down");
+		buffer.flush();
+		assertFalse(buffer.record(COMMENT, 2L, 10L, true));
+
+		transactionManager.failure = null;
+		buffer.flushOnShutdown();
+
+		assertEquals(1, transactionManager.commits);
+		assertNull(buffer.pendingState(COMMENT, 1L, 10L));
+		assertTrue(buffer.record(COMMENT, 2L, 10L, true));
+	}
+
+	private static class FakeTransactionManager implements PlatformTransactionManager {
+		RuntimeException failure;
+		Runnable duringTransaction;
+		int attempts;
+		int commits;
+
+		@Override
+		public TransactionStatus getTransaction(TransactionDefinition definition) {
+			attempts++;
+			if (duringTransaction != null) {
+				duringTransaction.run();
+			}
+			if (failure != null) {
+				throw failure;
+			}
+			return new SimpleTransactionStatus();
+		}
+
+		@Override
+		public void commit(TransactionStatus status) {
+			commits++;
+		}
+
+		@Override
+		public void rollback(TransactionStatus status) {
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package com.example.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// So sánh thời gian tải chi tiết bài viết trên MySQL thật: 2 truy vấn hiện tại (POST_DETAIL_SQL + POST_ATTACHMENTS_SQL)
+// với 7 truy vấn tuần tự trước đây (existsById, bài viết, tác giả, ảnh, file, like, save của người xem).
+// Chỉ chạy khi có DB: mvn test -Dbenchmark=true -Dbenchmark.jdbc.url=jdbc:mysql://localhost:3306/prj_forum
+//   [-Dbenchmark.jdbc.user=root -Dbenchmark.jdbc.password=... -Dbenchmark.post-id=... -Dbenchmark.viewer-id=1]
+class PostDetailQueryBenchmarkTest {
+
+	private static final Pattern NAMED_PARAMETER = Pattern.compile(":(\\w+)");
+	private static final int WARMUP_ITERATIONS = 200;
+	private static final int MEASURED_ITERATIONS = 2000;
+
+	private static final List<String> LEGACY_STATEMENTS = List.of(
+			"SELECT 1 FROM posts WHERE id = :postId",
+			"SELECT id, title, content, author_id, created_at, updated_at FROM posts p WHERE id = :postId",
+			"SELECT id, name, avatar FROM users WHERE id = (SELECT author_id FROM posts WHERE id = :postId)",
+			"SELECT id, image_name, image_type FROM posts_image WHERE post_id = :postId ORDER BY id ASC",
+			"SELECT id, file_name, file_type FROM posts_file WHERE post_id = :postId ORDER BY id ASC",
+			"SELECT post_id FROM post_likes WHERE liker_id = :viewerId AND post_id IN (:postId)",
+			"SELECT post_id FROM post_saves WHERE user_id = :viewerId AND post_id IN (:postId)");
+
+	private static final List<String> CURRENT_STATEMENTS = List.of(
+			PostService.POST_DETAIL_SQL,
+			PostService.POST_ATTACHMENTS_SQL);
+
+	@Test
+	void twoQueryLoadVersusLegacySevenQueries() throws SQLException {
+		String url = System.getProperty("benchmark.jdbc.url");
+		assumeTrue(Boolean.getBoolean("benchmark") && url != null, "Cần -Dbenchmark=true và -Dbenchmark.jdbc.url");
+		try (Connection connection = DriverManager.getConnection(url,
+				System.getProperty("benchmark.jdbc.user", "root"), System.getProperty("benchmark.jdbc.password", ""))) {
+			long postId = Long.getLong("benchmark.post-id", latestPostId(connection));
+			long viewerId = Long.getLong("benchmark.viewer-id", 1L);
+			Map<String, Long> parameters = Map.of("postId", postId, "viewerId", viewerId);
+			List<PreparedStatement> legacy = prepare(connection, LEGACY_STATEMENTS, parameters);
+			List<PreparedStatement> current = prepare(connection, CURRENT_STATEMENTS, parameters);
+
+			measure(legacy, WARMUP_ITERATIONS);
+			measure(current, WARMUP_ITERATIONS);
+			long[] legacyNanos = measure(legacy, MEASURED_ITERATIONS);
+			long[] currentNanos = measure(current, MEASURED_ITERATIONS);
+
+			report("legacy (" + legacy.size() + " truy vấn)", legacyNanos);
+			report("hiện tại (" + current.size() + " truy vấn)", currentNanos);
+			assertTrue(currentNanos.length == MEASURED_ITERATIONS);
+
+			for (PreparedStatement statement : legacy) {
+				statement.close();
+			}
+			for (PreparedStatement statement : current) {
+				statement.close();
+			}
+		}
+	}
+
+	private static long latestPostId(Connection connection) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement("SELECT MAX(id) FROM posts");
+			 ResultSet rs = statement.executeQuery()) {
+			assumeTrue(rs.next() && rs.getLong(1) > 0, "Bảng posts trống");
+			return rs.getLong(1);
+		}
+	}
+
+	// Đổi tham số dạng :name (như native query của EntityManager) sang ? của JDBC
+	private static List<PreparedStatement> prepare(Connection connection, List<String> sqls, Map<String, Long> parameters)
+			throws SQLException {
+		List<PreparedStatement> statements = new ArrayList<>();
+		for (String sql : sqls) {
+			List<String> names = new ArrayList<>();
+			Matcher matcher = NAMED_PARAMETER.matcher(sql);
+			StringBuilder jdbcSql = new StringBuilder();
+			while (matcher.find()) {
+				names.add(matcher.group(1));
+				matcher.appendReplacement(jdbcSql, "?");
+			}
+			matcher.appendTail(jdbcSql);
+			PreparedStatement statement = connection.prepareStatement(jdbcSql.toString());
+			for (int i = 0; i < names.size(); i++) {
+				statement.setLong(i + 1, parameters.get(names.get(i)));
+			}
+			statements.add(statement);
+		}
+		return statements;
+	}
+
+	// Thời gian mỗi lượt xem chi tiết: chạy tuần tự mọi câu và đọc hết kết quả
+	private static long[] measure(List<PreparedStatement> statements, int iterations) throws SQLException {
+		long[] nanos = new long[iterations];
+		for (int i = 0; i < iterations; i++) {
+			long start = System.nanoTime();
+			for (PreparedStatement statement : statements) {
+				try (ResultSet rs = statement.executeQuery()) {
+					int columns = rs.getMetaData().getColumnCount();
+					while (rs.next()) {
+						for (int c = 1; c <= columns; c++) {
+							rs.getObject(c);
+						}
+					}
+				}
+			}
+			nanos[i] = System.nanoTime() - start;
+		}
+		return nanos;
+	}
+
+	private static void report(String name, long[] nanos) {
+		long[] sorted = nanos.clone();
+		Arrays.sort(sorted);
+		double mean = Arrays.stream(sorted).average().orElse(0) / 1e6;
+		System.out.printf("getPostDetail %s: trung bình %.3f ms, p50 %.3f ms, p99 %.3f ms%n", name, mean,
+				sorted[sorted.length / 2] / 1e6, sorted[(int) (sorted.length * 0.99)] / 1e6);
+	}
+}
@@ -0,0 +1,168 @@
+package com.example.backend.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocalBlobStoreTest {
+
+	// SHA-256("abc") theo FIPS 180-2
+	private static final String ABC_SHA256 = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+	private static final byte[] ABC = "abc".getBytes(StandardCharsets.US_ASCII);
+
+	@TempDir
+	Path root;
+
+	private LocalBlobStore store;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		store = new LocalBlobStore(root.toString());
+	}
+
+	private Path pathOf(String key) {
+		return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+	}
+
+	private long partFiles() throws IOException {
+		try (Stream<Path> files = Files.list(root.resolve("tmp"))) {
+			return files.count();
+		}
+	}
+
+	@Test
+	void keyIsSha256HexAndPathIsSharded() throws IOException {
+		String key = store.put(ABC);
+
+		assertEquals(ABC_SHA256, key);
+		assertTrue(Files.isRegularFile(root.resolve("ba").resolve("78").resolve(ABC_SHA256)));
+		assertArrayEquals(ABC, store.get(key));
+		assertTrue(store.exists(key));
+		try (InputStream in = store.getResource(key).getInputStream()) {
+			assertArrayEquals(ABC, in.readAllBytes());
+		}
+		assertEquals(0, partFiles());
+	}
+
+	// Cùng nội dung chỉ lưu một file; lần put sau "chạm" lại mtime để sweep không xóa blob đang được upload
+	@Test
+	void duplicatePutDedupsAndTouchesMtime() throws IOException {
+		String key = store.put(ABC);
+		Path path = pathOf(key);
+		Instant old = Instant.now().minus(2, ChronoUnit.HOURS);
+		Files.setLastModifiedTime(path, FileTime.from(old));
+
+		assertEquals(key, store.put(ABC));
+
+		assertTrue(Files.getLastModifiedTime(path).toInstant().isAfter(old.plus(1, ChronoUnit.HOURS)));
+		try (Stream<Path> files = Files.list(path.getParent())) {
+			assertEquals(1, files.count());
+		}
+		assertEquals(0, partFiles());
+	}
+
+	// Ghi dạng stream: hash tính trong lúc ghi, trùng với put(byte[]) cho cùng nội dung
+	@Test
+	void streamingPutHashesWhileWriting() throws IOException {
+		byte[] data = new byte[300_000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (i * 31);
+		}
+
+		String key = store.put(out -> {
+			for (int from = 0; from < data.length; from += 1000) {
+				out.write(data, from, Math.min(1000, data.length - from));
+			}
+		});
+
+		assertEquals(LocalBlobStore.sha256Hex(data), key);
+		assertArrayEquals(data, store.get(key));
+		assertEquals(ABC_SHA256, store.put(out -> out.write(ABC)));
+
+		Files.setLastModifiedTime(pathOf(key), FileTime.from(Instant.now().minus(2, ChronoUnit.HOURS)));
+		assertEquals(key, store.put(out -> out.write(data)));
+		assertTrue(Files.getLastModifiedTime(pathOf(key)).toInstant().isAfter(Instant.now().minus(1, ChronoUnit.HOURS)));
+		assertEquals(0, partFiles());
+	}
+
+	// Writer lỗi giữa chừng: không để lại file tạm hay blob ghi dở
+	@Test
+	void failedWriterLeavesNothingBehind() throws IOException {
+		assertThrows(IOException.class, () -> store.put(out -> {
+			out.write(ABC);
+			throw new IOException("client ngắt kết nối");
+		}));
+
+		assertEquals(0, partFiles());
+		assertFalse(store.exists(ABC_SHA256));
+	}
+
+	@Test
+	void deleteIfUnchangedSinceHonoursCutoff() throws IOException {
+		String key = store.put(ABC);
+		Path path = pathOf(key);
+		Instant written = Instant.now().minus(2, ChronoUnit.HOURS);
+		Files.setLastModifiedTime(path, FileTime.from(written));
+
+		// Blob được ghi/chạm sau cutoff => giữ lại
+		assertFalse(store.deleteIfUnchangedSince(key, written.minus(1, ChronoUnit.MINUTES)));
+		assertTrue(store.exists(key));
+
+		assertTrue(store.deleteIfUnchangedSince(key, written.plus(1, ChronoUnit.MINUTES)));
+		assertFalse(store.exists(key));
+		// Đã bị xóa thì không báo xóa lần nữa
+		assertFalse(store.deleteIfUnchangedSince(key, Instant.now()));
+		assertThrows(FileNotFoundException.class, () -> store.get(key));
+	}
+
+	// Upload trùng nội dung chạm lại mtime => sweep với cutoff cũ không xóa
+	@Test
+	void touchedBlobSurvivesSweep() throws IOException {
+		String key = store.put(ABC);
+		Files.setLastModifiedTime(pathOf(key), FileTime.from(Instant.now().minus(2, ChronoUnit.HOURS)));
+		Instant cutoff = Instant.now().minus(1, ChronoUnit.HOURS);
+
+		store.put(ABC);
+
+		assertFalse(store.deleteIfUnchangedSince(key, cutoff));
+		assertTrue(store.exists(key));
+	}
+
+	// Key lấy từ DB/URL: chỉ chấp nhận đúng 64 ký tự hex thường => không thể trỏ ra ngoài thư mục gốc
+	@Test
+	void rejectsKeysThatAreNot64Hex() {
+		String[] invalid = {
+				null,
+				"",
+				ABC_SHA256.substring(1),
+				ABC_SHA256 + "0",
+				ABC_SHA256.toUpperCase(),
+				"../" + ABC_SHA256.substring(3),
+				ABC_SHA256.substring(0, 63) + "g",
+				ABC_SHA256.substring(0, 62) + "/x",
+		};
+		for (String key : invalid) {
+			assertThrows(IllegalArgumentException.class, () -> store.get(key));
+			assertThrows(IllegalArgumentException.class, () -> store.exists(key));
+			assertThrows(IllegalArgumentException.class, () -> store.delete(key));
+			assertThrows(IllegalArgumentException.class, () -> store.deleteIfUnchangedSince(key, Instant.now()));
+		}
+	}
+}
@@ -0,0 +1,29 @@
+package com.example.backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AvatarUrlsTest {
+
+	@Test
+	void keyBecomesAvatarEndpointUrl() {
+		assertEquals("/api/users/avatar/abc123.jpg?size=64", AvatarUrls.of("abc123.jpg", AvatarUrls.LIST_SIZE));
+		assertEquals("/api/users/avatar/abc123.png?size=256", AvatarUrls.of("abc123.png", AvatarUrls.PROFILE_SIZE));
+	}
+
+	@Test
+	void legacyFileNameIsEncoded() {
+		assertEquals("/api/users/avatar/avatar_7_1700000000000_%E1%BA%A3nh%20m%E1%BB%9Bi.png?size=64",
+				AvatarUrls.of("avatar_7_1700000000000_ảnh mới.png", 64));
+	}
+
+	@Test
+	void externalUrlsAndEmptyValuesAreKept() {
+		assertEquals("https://lh3.googleusercontent.com/a/x", AvatarUrls.of("https://lh3.googleusercontent.com/a/x", 64));
+		assertEquals("/default-avatar.png", AvatarUrls.of("/default-avatar.png", 64));
+		assertEquals("", AvatarUrls.of("", 64));
+		assertNull(AvatarUrls.of(null, 64));
+	}
+}
@@ -0,0 +1,58 @@
+package com.example.backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CursorCodecTest {
+
+	@Test
+	void roundTrip() {
+		long[] parts = {1_718_000_000_000L, 12345L};
+
+		String cursor = CursorCodec.encode(parts);
+
+		assertArrayEquals(parts, CursorCodec.decode(cursor, 2));
+		assertArrayEquals(new long[]{-5L, 0L, Long.MAX_VALUE}, CursorCodec.decode(CursorCodec.encode(-5L, 0L, Long.MAX_VALUE), 3));
+	}
+
+	// Endpoint phát nhiều loại cursor phân biệt theo số phần
+	@Test
+	void decodeWithoutExpectedParts() {
+		assertArrayEquals(new long[]{40L}, CursorCodec.decode(CursorCodec.encode(40L)));
+		assertArrayEquals(new long[]{7L, 8L}, CursorCodec.decode(CursorCodec.encode(7L, 8L)));
+		assertNull(CursorCodec.decode(""));
+		assertThrows(IllegalArgumentException.class, () -> CursorCodec.decode("%%%"));
+	}
+
+	@Test
+	void cursorIsUrlSafe() {
+		String cursor = CursorCodec.encode(Long.MAX_VALUE, Long.MIN_VALUE);
+
+		assertFalse(cursor.contains("+") || cursor.contains("/") || cursor.contains("="));
+	}
+
+	@Test
+	void emptyCursorMeansFirstPage() {
+		assertNull(CursorCodec.decode(null, 2));
+		assertNull(CursorCodec.decode("", 2));
+		assertNull(CursorCodec.decode("   ", 2));
+	}
+
+	@Test
+	void malformedCursorIsRejected() {
+		String wrongParts = CursorCodec.encode(1L, 2L, 3L);
+		String notNumbers = Base64.getUrlEncoder().withoutPadding()
+				.encodeToString("abc:def".getBytes(StandardCharsets.US_ASCII));
+
+		assertThrows(IllegalArgumentException.class, () -> CursorCodec.decode(wrongParts, 2));
+		assertThrows(IllegalArgumentException.class, () -> CursorCodec.decode(notNumbers, 2));
+		assertThrows(IllegalArgumentException.class, () -> CursorCodec.decode("%%%", 2));
+	}
+}
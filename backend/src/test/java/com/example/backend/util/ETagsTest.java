@@ -0,0 +1,34 @@
+package com.example.backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ETagsTest {
+
+	private static final String ETAG = ETags.strong("abc123");
+
+	@Test
+	void strongQuotesValue() {
+		assertEquals("\"abc123\"", ETAG);
+	}
+
+	@Test
+	void matchesExactWeakListAndWildcard() {
+		assertTrue(ETags.matches("\"abc123\"", ETAG));
+		assertTrue(ETags.matches("W/\"abc123\"", ETAG));
+		assertTrue(ETags.matches("\"other\", \"abc123\"", ETAG));
+		assertTrue(ETags.matches("*", ETAG));
+	}
+
+	@Test
+	void doesNotMatchOtherOrMissingTags() {
+		assertFalse(ETags.matches("\"other\"", ETAG));
+		assertFalse(ETags.matches("abc123", ETAG));
+		assertFalse(ETags.matches(null, ETAG));
+		assertFalse(ETags.matches("  ", ETAG));
+		assertFalse(ETags.matches("\"abc123\"", null));
+	}
+}
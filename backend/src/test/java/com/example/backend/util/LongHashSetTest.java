@@ -0,0 +1,72 @@
+package com.example.backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LongHashSetTest {
+
+	@Test
+	void addReportsDuplicates() {
+		LongHashSet set = new LongHashSet();
+
+		assertTrue(set.isEmpty());
+		assertTrue(set.add(42L));
+		assertFalse(set.add(42L));
+		assertTrue(set.contains(42L));
+		assertFalse(set.contains(43L));
+		assertEquals(1, set.size());
+	}
+
+	// 0 là giá trị đánh dấu ô trống trong bảng => được lưu riêng
+	@Test
+	void zeroAndNegativeValues() {
+		LongHashSet set = new LongHashSet(2);
+
+		assertFalse(set.contains(0L));
+		assertTrue(set.add(0L));
+		assertFalse(set.add(0L));
+		assertTrue(set.add(-1L));
+		assertTrue(set.add(Long.MIN_VALUE));
+
+		assertTrue(set.contains(0L));
+		assertTrue(set.contains(-1L));
+		assertTrue(set.contains(Long.MIN_VALUE));
+		assertEquals(3, set.size());
+	}
+
+	@Test
+	void growsPastInitialCapacity() {
+		LongHashSet set = new LongHashSet(4);
+		for (long id = 1; id <= 10_000; id++) {
+			set.add(id * 1024);
+		}
+
+		assertEquals(10_000, set.size());
+		for (long id = 1; id <= 10_000; id++) {
+			assertTrue(set.contains(id * 1024));
+			assertFalse(set.contains(id * 1024 + 1));
+		}
+	}
+
+	@Test
+	void matchesHashSetOnRandomValues() {
+		Random random = new Random(1);
+		LongHashSet set = new LongHashSet();
+		Set<Long> expected = new HashSet<>();
+		for (int i = 0; i < 20_000; i++) {
+			long value = random.nextInt(5_000) - 2_500;
+			assertEquals(expected.add(value), set.add(value));
+		}
+		assertEquals(expected.size(), set.size());
+		for (long value = -3_000; value <= 3_000; value++) {
+			assertEquals(expected.contains(value), set.contains(value));
+		}
+	}
+}
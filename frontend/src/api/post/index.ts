@@ -103,6 +103,13 @@ export async function searchPosts(keyword: string, limit: number = 10, offset: n
   });
 }
 
+// Gợi ý khi đang gõ ô tìm kiếm (tag, từ khóa phổ biến, tiêu đề bài viết)
+export async function suggestPosts(q: string, limit: number = 8) {
+  return axios.get("/api/posts/suggest", {
+    params: { q, limit },
+  });
+}
+
 // API lấy tổng số bài viết cho home/popular
 export async function countPostsHomePopular() {
   return axios.get("/api/posts/count/home-popular");
@@ -1,33 +1,116 @@
-import React, { useState } from 'react';
+import React, { useEffect, useState } from 'react';
 import { Search } from 'lucide-react';
 import { useNavigate } from 'react-router-dom';
+import { suggestPosts } from '../api/post';
+import PostModal from './PostModal';
+
+interface Suggestion {
+  text: string;
+  type: 'parent_tag' | 'child_tag' | 'query' | 'post';
+  post_id: number | null;
+}
+
+const TYPE_LABELS: Record<Suggestion['type'], string> = {
+  parent_tag: 'Chủ đề',
+  child_tag: 'Thẻ',
+  query: 'Tìm kiếm',
+  post: 'Bài viết',
+};
 
 const SearchBar: React.FC = () => {
   const [value, setValue] = useState('');
+  const [suggestions, setSuggestions] = useState<Suggestion[]>([]);
+  const [open, setOpen] = useState(false);
+  const [postModalId, setPostModalId] = useState<number | null>(null);
   const navigate = useNavigate();
 
+  // Chờ người dùng ngừng gõ 150ms rồi mới gọi API; bỏ kết quả của lần gõ cũ
+  useEffect(() => {
+    const q = value.trim();
+    if (!q) {
+      setSuggestions([]);
+      return;
+    }
+    let cancelled = false;
+    const timer = setTimeout(async () => {
+      try {
+        const res = await suggestPosts(q);
+        if (!cancelled) setSuggestions(res.data?.data || []);
+      } catch {
+        if (!cancelled) setSuggestions([]);
+      }
+    }, 150);
+    return () => {
+      cancelled = true;
+      clearTimeout(timer);
+    };
+  }, [value]);
+
+  const goToSearch = (keyword: string) => {
+    setOpen(false);
+    navigate(`/search?keyword=${encodeURIComponent(keyword)}`);
+  };
+
+  // Gợi ý bài viết mở thẳng bài viết đó; tag/từ khóa thì chuyển sang trang tìm kiếm
+  const selectSuggestion = (s: Suggestion) => {
+    if (s.type === 'post' && s.post_id != null) {
+      setOpen(false);
+      setPostModalId(s.post_id);
+      return;
+    }
+    setValue(s.text);
+    goToSearch(s.text);
+  };
+
   const handleSearch = (e: React.FormEvent) => {
     e.preventDefault();
     if (value.trim()) {
-      navigate(`/search?keyword=${encodeURIComponent(value.trim())}`);
+      goToSearch(value.trim());
     }
   };
 
   return (
-    <form
-      className="flex items-center bg-[rgba(255,255,255,0.25)] rounded-full px-4 py-2 mx-8 max-w-md border border-white/20 backdrop-blur-sm"
-      onSubmit={handleSearch}
-    >
-      <Search className="text-gray-400 mr-2" />
-      <input
-        type="text"
-        placeholder="Tìm kiếm bài viết..."
-        className="bg-transparent outline-none text-gray-700 flex-1 placeholder:text-gray-400"
-        value={value}
-        onChange={e => setValue(e.target.value)}
-      />
-    </form>
+    <>
+      <form
+        className="relative flex items-center bg-[rgba(255,255,255,0.25)] rounded-full px-4 py-2 mx-8 max-w-md border border-white/20 backdrop-blur-sm"
+        onSubmit={handleSearch}
+      >
+        <Search className="text-gray-400 mr-2" />
+        <input
+          type="text"
+          placeholder="Tìm kiếm bài viết..."
+          className="bg-transparent outline-none text-gray-700 flex-1 placeholder:text-gray-400"
+          value={value}
+          onChange={e => {
+            setValue(e.target.value);
+            setOpen(true);
+          }}
+          onFocus={() => setOpen(true)}
+          onBlur={() => setTimeout(() => setOpen(false), 150)}
+        />
+        {open && suggestions.length > 0 && (
+          <ul className="absolute left-0 right-0 top-full mt-2 bg-white rounded-xl shadow-lg border border-gray-100 py-1 z-50">
+            {suggestions.map(s => (
+              <li
+                key={`${s.type}-${s.post_id ?? ''}-${s.text}`}
+                className="flex items-center justify-between px-4 py-2 cursor-pointer hover:bg-gray-50"
+                onMouseDown={e => {
+                  e.preventDefault();
+                  selectSuggestion(s);
+                }}
+              >
+                <span className="text-gray-700 truncate">{s.text}</span>
+                <span className="text-xs text-gray-400 ml-2 shrink-0">{TYPE_LABELS[s.type]}</span>
+              </li>
+            ))}
+          </ul>
+        )}
+      </form>
+      {postModalId && (
+        <PostModal postId={postModalId} open={!!postModalId} onClose={() => setPostModalId(null)} />
+      )}
+    </>
   );
 };
 
-export default SearchBar;
\ No newline at end of file
+export default SearchBar;